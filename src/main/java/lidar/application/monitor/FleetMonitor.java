@@ -0,0 +1,243 @@
+package lidar.application.monitor;
+
+import lidar.client.domain.LIDAR;
+import lidar.infrastructure.ConnectionLiveness;
+import lidar.infrastructure.HistoryRepo;
+import lidar.infrastructure.MemoryHistoryRepo;
+import lidar.infrastructure.OpcUaConnector;
+import lidar.infrastructure.ReconnectManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Monitors many LIDAR units from one process. Every device keeps its own LIDAR
+ * state and history, while all of them share one bounded scheduler; network I/O
+ * already runs on Milo's shared stack executor. Each device has a ReconnectManager
+ * on that scheduler, as in single-device mode: session reactivation first, then
+ * rebuilds with jittered exponential backoff. First connects are staggered so
+ * the fleet does not hit every server at the same instant.
+ */
+public class FleetMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(FleetMonitor.class);
+
+    private static final long RECONNECT_INITIAL_DELAY_MS = 250;
+    private static final long RECONNECT_MAX_DELAY_MS = 10000;
+    private static final long REACTIVATION_WINDOW_MS = 2000;
+
+    public static class Device {
+        private final String name;
+        private final String endpointUrl;
+        private final int index;
+        private final OpcUaConnector connector;
+        private final LIDAR lidar = new LIDAR();
+        private final HistoryRepo history;
+        private final AtomicBoolean connected = new AtomicBoolean(false);
+        private ReconnectManager reconnectManager;
+        // Started on the first connect; they keep running across reconnects
+        private PollingMonitor pollingMonitor;
+        private SubscriptionMonitor subMonitor;
+
+        Device(String name, String endpointUrl, int index, OpcUaConnector connector, HistoryRepo history) {
+            this.name = name;
+            this.endpointUrl = endpointUrl;
+            this.index = index;
+            this.connector = connector;
+            this.history = history;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getEndpointUrl() {
+            return endpointUrl;
+        }
+
+        public OpcUaConnector getConnector() {
+            return connector;
+        }
+
+        public LIDAR getLidar() {
+            return lidar;
+        }
+
+        public HistoryRepo getHistory() {
+            return history;
+        }
+
+        public boolean isConnected() {
+            return connected.get();
+        }
+    }
+
+    private final Map<String, String> attrMap;
+    private final Double pollingRate;
+    private final long staggerMs;
+    private final long idleTimeoutMs;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Device> devices = new LinkedHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    /**
+     * @param endpoints   device name to OPC UA endpoint URL, in start order
+     * @param pollingRate polling interval in seconds, or null for subscriptions
+     * @param threads     size of the scheduler shared by all devices
+     * @param staggerMs   delay between consecutive device connects
+     * @param idleTimeoutMs quiet time after which a device's heartbeat is probed
+     */
+    public FleetMonitor(Map<String, String> endpoints, Map<String, String> attrMap,
+            boolean isSecure, String certPath, String keyPath,
+            Double pollingRate, int threads, long staggerMs, long idleTimeoutMs) {
+        this.attrMap = attrMap;
+        this.pollingRate = pollingRate;
+        this.staggerMs = Math.max(0, staggerMs);
+        this.idleTimeoutMs = idleTimeoutMs;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "fleet-scheduler-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        int index = 0;
+        for (Map.Entry<String, String> endpoint : endpoints.entrySet()) {
+            OpcUaConnector connector = new OpcUaConnector(endpoint.getValue(), isSecure, certPath, keyPath);
+            devices.put(endpoint.getKey(), new Device(endpoint.getKey(), endpoint.getValue(), index++,
+                    connector, new MemoryHistoryRepo(10, LIDAR::attrType)));
+        }
+    }
+
+    public void start() {
+        running.set(true);
+        for (Device device : devices.values()) {
+            scheduler.schedule(() -> start(device), device.index * staggerMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void stop() {
+        running.set(false);
+        for (Device device : devices.values()) {
+            release(device);
+        }
+        scheduler.shutdownNow();
+    }
+
+    public Map<String, Device> getDevices() {
+        return Collections.unmodifiableMap(devices);
+    }
+
+    public List<Device> getConnectedDevices() {
+        List<Device> connected = new ArrayList<>();
+        for (Device device : devices.values()) {
+            if (device.isConnected()) {
+                connected.add(device);
+            }
+        }
+        return connected;
+    }
+
+    private synchronized void start(Device device) {
+        if (!running.get())
+            return;
+
+        OpcUaConnector connector = device.connector;
+        connector.registerNodes(attrMap.values());
+
+        ReconnectManager reconnectManager = new ReconnectManager(connector, RECONNECT_INITIAL_DELAY_MS,
+                RECONNECT_MAX_DELAY_MS, REACTIVATION_WINDOW_MS, scheduler);
+        reconnectManager.addListener(new ReconnectManager.Listener() {
+            @Override
+            public void onConnected(boolean sessionReactivated) {
+                device.connected.set(true);
+                logger.info("[{}] {} {}", device.name,
+                        sessionReactivated ? "Session reactivated on" : "Connected to", device.endpointUrl);
+                startMonitor(device);
+            }
+
+            @Override
+            public void onDisconnected() {
+                device.connected.set(false);
+                logger.warn("[{}] Connection lost, reconnecting", device.name);
+            }
+        });
+        device.reconnectManager = reconnectManager;
+
+        // Liveness comes from the device's own poll/publish traffic; the heartbeat
+        // is read only after a quiet period and must keep advancing
+        ConnectionLiveness liveness = connector.getLiveness();
+        liveness.setHeartbeatTimeout(idleTimeoutMs);
+        int heartbeatId = LIDAR.attrId("heartbeat");
+        device.lidar.addListener(changes -> {
+            if (changes.getLidar().isSet(heartbeatId)) {
+                liveness.heartbeat(changes.getLidar().getLong(heartbeatId));
+            }
+        }, "heartbeat");
+        liveness.start(scheduler, idleTimeoutMs,
+                () -> connector.readNodeAsync(attrMap.get("heartbeat")).thenApply(dv -> {
+                    Object value = dv.getValue().getValue();
+                    if (value instanceof Number) {
+                        liveness.heartbeat(((Number) value).longValue());
+                    }
+                    return dv;
+                }), reconnectManager::connectionLost);
+        reconnectManager.setSessionCheck(liveness::verify);
+        reconnectManager.start();
+    }
+
+    // Runs on the device's reconnect task, never concurrently for one device
+    private void startMonitor(Device device) {
+        if (!running.get() || device.pollingMonitor != null || device.subMonitor != null)
+            return;
+
+        try {
+            if (pollingRate != null) {
+                device.pollingMonitor = new PollingMonitor(device.connector, attrMap, device.lidar,
+                        device.history, pollingRate, scheduler);
+                device.pollingMonitor.start();
+            } else {
+                // Later reconnects restore the subscription in OpcUaConnector.reconnect()
+                SubscriptionMonitor subMonitor = new SubscriptionMonitor(device.connector, attrMap, device.lidar,
+                        device.history, 500.0);
+                subMonitor.start();
+                device.subMonitor = subMonitor;
+            }
+        } catch (Exception e) {
+            logger.warn("[{}] Could not start monitoring: {}", device.name, e.getMessage());
+            device.reconnectManager.connectionLost();
+        }
+    }
+
+    private synchronized void release(Device device) {
+        device.connected.set(false);
+        if (device.reconnectManager != null) {
+            device.reconnectManager.stop();
+            device.reconnectManager = null;
+        }
+        device.connector.getLiveness().stop();
+        if (device.pollingMonitor != null) {
+            device.pollingMonitor.stop();
+            device.pollingMonitor = null;
+        }
+        if (device.subMonitor != null) {
+            device.subMonitor.stop();
+            device.subMonitor = null;
+        }
+        try {
+            device.connector.disconnect();
+        } catch (Exception e) {
+            // Ignore
+        }
+    }
+}
@@ -2,14 +2,17 @@ package lidar.application.monitor;
 
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import lidar.client.domain.LIDAR;
-import lidar.infrastructure.MemoryHistoryRepo;
+import lidar.infrastructure.HistoryRepo;
 import lidar.infrastructure.OpcUaConnector;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -17,56 +20,142 @@ public class PollingMonitor {
     private final OpcUaConnector connector;
     private final Map<String, String> attrMap;
     private final LIDAR lidar;
-    private final MemoryHistoryRepo history;
+    private final HistoryRepo history;
     private final double intervalSeconds;
+    private final List<String> attrNames;
+    private final int[] attrIds;
+    // History name of each attribute's profile frames, null if it is not a profile
+    private final String[] profileNames;
+    private final ProfileRecorder profiles;
+    private final List<String> nodeIds;
     private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean pollInFlight = new AtomicBoolean(false);
+    private final ScheduledExecutorService sharedScheduler;
     private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> pollTask;
 
     public PollingMonitor(OpcUaConnector connector, Map<String, String> attrMap,
-            LIDAR lidar, MemoryHistoryRepo history, double intervalSeconds) {
+            LIDAR lidar, HistoryRepo history, double intervalSeconds) {
+        this(connector, attrMap, lidar, history, intervalSeconds, null);
+    }
+
+    /**
+     * Polls on the given scheduler, e.g. the one FleetMonitor shares between
+     * devices; stop() cancels the poll task and leaves the scheduler running.
+     */
+    public PollingMonitor(OpcUaConnector connector, Map<String, String> attrMap,
+            LIDAR lidar, HistoryRepo history, double intervalSeconds,
+            ScheduledExecutorService sharedScheduler) {
         this.connector = connector;
         this.attrMap = attrMap;
         this.lidar = lidar;
         this.history = history;
         this.intervalSeconds = Math.max(0.001, intervalSeconds);
+        this.sharedScheduler = sharedScheduler;
+        this.profiles = new ProfileRecorder(lidar, history);
+
+        // Fixed order of the read request, computed once instead of on every tick
+        List<String> names = new ArrayList<>(attrMap.size());
+        List<String> nodes = new ArrayList<>(attrMap.size());
+        for (Map.Entry<String, String> entry : attrMap.entrySet()) {
+            names.add(entry.getKey());
+            nodes.add(entry.getValue());
+        }
+        this.attrNames = List.copyOf(names);
+        this.nodeIds = List.copyOf(nodes);
+        this.attrIds = new int[names.size()];
+        this.profileNames = new String[names.size()];
+        for (int i = 0; i < attrIds.length; i++) {
+            attrIds[i] = LIDAR.attrId(names.get(i));
+            profileNames[i] = ProfileRecorder.historyName(names.get(i), attrIds[i]);
+        }
+    }
+
+    /**
+     * Also records every range profile as a double[] frame under
+     * attribute + RangeProfile.HISTORY_SUFFIX. Off by default: a frame holds
+     * thousands of bins, so bound those series, e.g. with
+     * MemoryHistoryRepo.setMaxSamples. Set it before start().
+     */
+    public void setProfileHistory(boolean profileHistory) {
+        profiles.setEnabled(profileHistory);
     }
 
     public void start() {
         running.set(true);
-        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler = sharedScheduler != null ? sharedScheduler : Executors.newSingleThreadScheduledExecutor();
+
+        pollTask = scheduler.scheduleAtFixedRate(this::poll, 0, (long) (intervalSeconds * 1000),
+                TimeUnit.MILLISECONDS);
+    }
 
-        scheduler.scheduleAtFixedRate(() -> {
-            if (!running.get())
-                return;
+    // The read is asynchronous so the scheduler thread is never held for the round
+    // trip; a tick is skipped while the previous read is still outstanding
+    private void poll() {
+        if (!running.get() || !pollInFlight.compareAndSet(false, true))
+            return;
 
+        CompletableFuture<List<DataValue>> read;
+        try {
+            read = connector.readNodesAsync(nodeIds);
+        } catch (Exception e) {
+            // An exception escaping the task would cancel the schedule for good;
+            // the next tick retries once the reconnection system is done
+            pollInFlight.set(false);
+            return;
+        }
+        read.whenComplete((values, error) -> {
             try {
-                List<String> nodeIds = List.copyOf(attrMap.values());
-                List<DataValue> values = connector.readNodes(nodeIds);
+                if (error != null || !running.get())
+                    return;
+
                 Instant ts = Instant.now();
+                int n = Math.min(values.size(), attrNames.size());
 
-                int i = 0;
-                for (Map.Entry<String, String> entry : attrMap.entrySet()) {
-                    if (i < values.size()) {
+                // One read is one cycle, so readers of the LIDAR see all of it or none
+                Instant sourceTime = null;
+                lidar.beginCycle();
+                try {
+                    for (int i = 0; i < n; i++) {
                         DataValue dv = values.get(i);
-                        if (dv.getValue().isNotNull()) {
-                            Object val = dv.getValue().getValue();
-                            String attr = entry.getKey();
-                            lidar.setAttr(attr, val);
-                            history.append(attr, val, ts);
+                        if (dv.getValue().isNotNull() && attrIds[i] >= 0) {
+                            lidar.setAttr(attrIds[i], dv.getValue().getValue());
+                        }
+                        if (dv.getSourceTime() != null) {
+                            Instant t = dv.getSourceTime().getJavaInstant();
+                            if (sourceTime == null || t.isAfter(sourceTime)) {
+                                sourceTime = t;
+                            }
+                        }
+                    }
+                } finally {
+                    lidar.endCycle(sourceTime != null ? sourceTime : ts);
+                }
+
+                for (int i = 0; i < n; i++) {
+                    DataValue dv = values.get(i);
+                    if (dv.getValue().isNotNull()) {
+                        Object val = dv.getValue().getValue();
+                        if (!profiles.record(profileNames[i], attrIds[i], val, ts)) {
+                            history.append(attrNames.get(i), val, ts);
                         }
                     }
-                    i++;
                 }
             } catch (Exception e) {
                 // Silence connection errors - the reconnection system will handle them
                 // Do not show errors to keep output clean
+            } finally {
+                pollInFlight.set(false);
             }
-        }, 0, (long) (intervalSeconds * 1000), TimeUnit.MILLISECONDS);
+        });
     }
 
     public void stop() {
         running.set(false);
-        if (scheduler != null) {
+        if (pollTask != null) {
+            pollTask.cancel(false);
+        }
+        if (scheduler != null && scheduler != sharedScheduler) {
             scheduler.shutdown();
         }
     }
@@ -0,0 +1,51 @@
+package lidar.application.monitor;
+
+import lidar.client.domain.LIDAR;
+import lidar.client.domain.RangeProfile;
+import lidar.infrastructure.HistoryRepo;
+
+import java.time.Instant;
+
+/**
+ * Writes range profile frames of a monitor's attributes to history as double[]
+ * series of their own, once the cycle that carried them has been applied to the
+ * LIDAR. Frames are thousands of bins each, so recording is off until enabled.
+ */
+final class ProfileRecorder {
+    private final LIDAR lidar;
+    private final HistoryRepo history;
+    private volatile boolean enabled;
+
+    ProfileRecorder(LIDAR lidar, HistoryRepo history) {
+        this.lidar = lidar;
+        this.history = history;
+    }
+
+    /**
+     * History name of the frames of an attribute, or null if it is not a profile.
+     */
+    static String historyName(String attr, int attrId) {
+        return attrId >= 0 && LIDAR.isProfile(attrId) ? attr + RangeProfile.HISTORY_SUFFIX : null;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns false if the value is not a profile frame, so the caller records it
+     * as a plain value instead.
+     */
+    boolean record(String historyName, int attrId, Object value, Instant timestamp) {
+        if (historyName == null || !RangeProfile.isProfileValue(value))
+            return false;
+        if (enabled) {
+            // Copied from the buffer the cycle already decoded into
+            double[] frame = lidar.copyProfile(attrId);
+            if (frame != null) {
+                history.append(historyName, frame, timestamp);
+            }
+        }
+        return true;
+    }
+}
\ No newline at end of file
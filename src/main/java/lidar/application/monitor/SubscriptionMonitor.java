@@ -1,83 +1,121 @@
 package lidar.application.monitor;
 
-import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
-
 import lidar.client.domain.LIDAR;
 import lidar.infrastructure.OpcUaConnector;
-import lidar.infrastructure.MemoryHistoryRepo;
+import lidar.infrastructure.HistoryRepo;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 
 import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SubscriptionMonitor {
     private final OpcUaConnector connector;
     private final Map<String, String> attrMap;
     private final LIDAR lidar;
-    private final MemoryHistoryRepo history;
+    private final HistoryRepo history;
     private final double periodMs;
     private final AtomicBoolean running = new AtomicBoolean(false);
-    private ScheduledExecutorService scheduler;
+    private final ProfileRecorder profiles;
 
     public SubscriptionMonitor(OpcUaConnector connector, Map<String, String> attrMap,
-            LIDAR lidar, MemoryHistoryRepo history, double periodMs) {
+            LIDAR lidar, HistoryRepo history, double periodMs) {
         this.connector = connector;
         this.attrMap = attrMap;
         this.lidar = lidar;
         this.history = history;
         this.periodMs = periodMs;
+        this.profiles = new ProfileRecorder(lidar, history);
+    }
+
+    /**
+     * Records range profile frames as PollingMonitor.setProfileHistory does.
+     */
+    public void setProfileHistory(boolean profileHistory) {
+        profiles.setEnabled(profileHistory);
     }
 
     public void start() throws Exception {
         running.set(true);
 
-        // Create subscription (configuration)
         connector.createSubscription(periodMs);
 
-        // Use polling as alternative to real subscriptions
-        scheduler = Executors.newSingleThreadScheduledExecutor();
-        List<String> nodeIds = List.copyOf(attrMap.values());
+        // Node id -> index into the attribute name and id arrays, resolved once
+        Map<String, Integer> nodeToIndex = new HashMap<>();
+        String[] attrNames = new String[attrMap.size()];
+        int[] attrIds = new int[attrMap.size()];
+        String[] profileNames = new String[attrMap.size()];
+        for (Map.Entry<String, String> entry : attrMap.entrySet()) {
+            int index = nodeToIndex.size();
+            nodeToIndex.put(entry.getValue(), index);
+            attrNames[index] = entry.getKey();
+            attrIds[index] = LIDAR.attrId(entry.getKey());
+            profileNames[index] = ProfileRecorder.historyName(entry.getKey(), attrIds[index]);
+        }
 
-        scheduler.scheduleAtFixedRate(() -> {
+        // Values are pushed by the server; each publish notification is one cycle,
+        // so readers and change listeners see it as a whole
+        connector.subscribeToNodesBatched(List.copyOf(nodeToIndex.keySet()), (nodeIds, values) -> {
             if (!running.get())
                 return;
 
+            int n = nodeIds.size();
+            int[] indices = new int[n];
+            Instant now = Instant.now();
+            Instant cycleTime = null;
+            lidar.beginCycle();
             try {
-                List<DataValue> values = connector.readNodes(nodeIds);
-                Instant ts = Instant.now();
-
-                int i = 0;
-                for (Map.Entry<String, String> entry : attrMap.entrySet()) {
-                    if (i < values.size()) {
-                        DataValue dv = values.get(i);
-                        if (dv.getValue().isNotNull()) {
-                            Object val = dv.getValue().getValue();
-                            String attr = entry.getKey();
-                            try {
-                                lidar.setAttr(attr, val);
-                                history.append(attr, val, ts);
-                            } catch (Exception e) {
-                                // Silence type conversion errors - do not show in terminal
-                            }
+                for (int i = 0; i < n; i++) {
+                    Integer index = nodeToIndex.get(nodeIds.get(i));
+                    DataValue dv = values.get(i);
+                    if (index == null || dv.getValue().isNull()) {
+                        indices[i] = -1;
+                        continue;
+                    }
+                    indices[i] = index;
+                    if (attrIds[index] >= 0) {
+                        try {
+                            lidar.setAttr(attrIds[index], dv.getValue().getValue());
+                        } catch (Exception e) {
+                            // Silence type conversion errors - do not show in terminal
                         }
                     }
-                    i++;
+                    Instant ts = sourceTime(dv, now);
+                    if (cycleTime == null || ts.isAfter(cycleTime)) {
+                        cycleTime = ts;
+                    }
+                }
+            } finally {
+                lidar.endCycle(cycleTime != null ? cycleTime : now);
+            }
+
+            for (int i = 0; i < n; i++) {
+                int index = indices[i];
+                if (index < 0)
+                    continue;
+                DataValue dv = values.get(i);
+                Object val = dv.getValue().getValue();
+                Instant ts = sourceTime(dv, now);
+                try {
+                    // Range profiles get a series of frames of their own
+                    if (!profiles.record(profileNames[index], attrIds[index], val, ts)) {
+                        history.append(attrNames[index], val, ts);
+                    }
+                } catch (Exception e) {
+                    // Silence type conversion errors - do not show in terminal
                 }
-            } catch (Exception e) {
-                // Silence connection errors - the reconnection system will handle them
-                // Do not show errors to keep output clean
             }
-        }, 0, (long) periodMs, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private static Instant sourceTime(DataValue dv, Instant fallback) {
+        return dv.getSourceTime() != null ? dv.getSourceTime().getJavaInstant() : fallback;
     }
 
     public void stop() {
         running.set(false);
-        if (scheduler != null) {
-            scheduler.shutdown();
-        }
+        connector.deleteSubscription();
     }
 }
\ No newline at end of file
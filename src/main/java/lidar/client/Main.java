@@ -1,15 +1,31 @@
 package lidar.client;
 
+import lidar.application.monitor.FleetMonitor;
 import lidar.application.monitor.PollingMonitor;
 import lidar.application.monitor.SubscriptionMonitor;
 import lidar.client.domain.LIDAR;
+import lidar.client.domain.LIDARCursor;
+import lidar.client.domain.RangeProfile;
 import lidar.client.domain.dto.LIDARGetters;
 import lidar.client.domain.dto.LIDARSetters;
+import lidar.infrastructure.ChangeOnlyHistoryRepo;
+import lidar.infrastructure.ConnectionLiveness;
+import lidar.infrastructure.Deadband;
+import lidar.infrastructure.HistoryBudget;
+import lidar.infrastructure.HistoryRepo;
+import lidar.infrastructure.MappedHistoryRepo;
 import lidar.infrastructure.MemoryHistoryRepo;
 import lidar.infrastructure.OpcUaConnector;
+import lidar.infrastructure.ReconnectManager;
+import lidar.infrastructure.RollupTier;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.concurrent.BlockingQueue;
@@ -164,6 +180,15 @@ public class Main {
             "==============================================\n" +
             "Option: ";
 
+    private static final String FLEET_MENU = "================= LIDAR FLEET =================\n" +
+            "1) Show device status\n" +
+            "q) Exit\n" +
+            "==============================================\n" +
+            "Option: ";
+
+    // Attributes whose transitions are printed as they happen
+    private static final String[] EVENT_ATTRS = { "error_number", "pointing_status", "device_status" };
+
     private static final AtomicBoolean verboseMode = new AtomicBoolean(false);
     private static final AtomicBoolean inBackground = new AtomicBoolean(false);
     private static final AtomicBoolean shouldExit = new AtomicBoolean(false);
@@ -175,7 +200,17 @@ public class Main {
     public static void main(String[] args) {
         if (args.length < 1) {
             System.err.println(
-                    "Usage: java -jar lidar-java-client-1.0.0-jar-with-dependencies.jar <opc_url> [--RATE <seconds>]");
+                    "Usage: java -jar lidar-java-client-1.0.0-jar-with-dependencies.jar <opc_url> [--RATE <seconds>]\n"
+                            + "       java -jar lidar-java-client-1.0.0-jar-with-dependencies.jar --fleet <file> [--RATE <seconds>] [--threads <n>]\n"
+                            + "Options: --idle <seconds>  quiet time before the connection is probed\n"
+                            + "         --heartbeat-timeout <seconds>  heartbeat must advance within this (0 = off)\n"
+                            + "         --history-dir <dir> [--history-days <n>]  keep history on disk (default 7 days)\n"
+                            + "         --compress-history  keep in-memory history as compressed blocks\n"
+                            + "         --history-mb <n>  cap in-memory history, evicting the oldest samples first\n"
+                            + "         --rollups  keep 1 s rollups for 24 h and 1 min rollups for 30 days\n"
+                            + "                    (about 8 MB per numeric attribute, not with --history-mb)\n"
+                            + "         --profile-frames <n>  keep the newest n range profiles per channel in memory\n"
+                            + "         --deadband <n|n%>  record values only when they change by more than this");
             System.exit(1);
         }
 
@@ -185,9 +220,20 @@ public class Main {
         boolean isSecure = false;
         String certPath = "client-cert.der";
         String keyPath = "client-key.pem";
-
-        // Parse --RATE
-        for (int i = 1; i < args.length; i++) {
+        String fleetFile = null;
+        int fleetThreads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        Double idleTimeout = null;
+        Double heartbeatTimeout = null;
+        String historyDir = null;
+        double historyDays = 7;
+        boolean compressHistory = false;
+        String deadband = null;
+        Double historyMb = null;
+        boolean rollups = false;
+        int profileFrames = 0;
+
+        // Parse --RATE (in fleet mode there is no leading URL)
+        for (int i = opcUrl.startsWith("--") ? 0 : 1; i < args.length; i++) {
             String arg = args[i];
 
             if (arg.equals("--RATE") && i + 1 < args.length) {
@@ -201,8 +247,51 @@ public class Main {
             } else if (arg.equals("--key") && i + 1 < args.length) {
                 keyPath = args[i + 1];
                 i++;
+            } else if (arg.equals("--fleet") && i + 1 < args.length) {
+                fleetFile = args[i + 1];
+                i++;
+            } else if (arg.equals("--threads") && i + 1 < args.length) {
+                fleetThreads = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (arg.equals("--idle") && i + 1 < args.length) {
+                idleTimeout = Double.parseDouble(args[i + 1]);
+                i++;
+            } else if (arg.equals("--heartbeat-timeout") && i + 1 < args.length) {
+                heartbeatTimeout = Double.parseDouble(args[i + 1]);
+                i++;
+            } else if (arg.equals("--history-dir") && i + 1 < args.length) {
+                historyDir = args[i + 1];
+                i++;
+            } else if (arg.equals("--history-days") && i + 1 < args.length) {
+                historyDays = Double.parseDouble(args[i + 1]);
+                i++;
+            } else if (arg.equals("--compress-history")) {
+                compressHistory = true;
+            } else if (arg.equals("--rollups")) {
+                rollups = true;
+            } else if (arg.equals("--history-mb") && i + 1 < args.length) {
+                historyMb = Double.parseDouble(args[i + 1]);
+                i++;
+            } else if (arg.equals("--profile-frames") && i + 1 < args.length) {
+                profileFrames = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (arg.equals("--deadband") && i + 1 < args.length) {
+                deadband = args[i + 1];
+                i++;
             }
         }
+        // Without traffic for this long the heartbeat is probed; about three missed updates
+        if (idleTimeout == null) {
+            idleTimeout = pollingRate != null ? Math.max(1.0, 3 * pollingRate) : 3.0;
+        }
+        long idleTimeoutMs = (long) (idleTimeout * 1000);
+        // The heartbeat counter is expected to move at least once per idle timeout
+        long heartbeatTimeoutMs = heartbeatTimeout != null ? (long) (heartbeatTimeout * 1000) : idleTimeoutMs;
+        if (rollups && historyMb != null) {
+            // Rollups are not evicted, so the cap would not hold
+            System.err.println("[ERROR] --rollups cannot be combined with --history-mb");
+            return;
+        }
         if (isSecure) {
             System.out.println("[CONFIG] Security Enabled: Sign & Encrypt (Basic256Sha256)");
             System.out.println("[CONFIG] Cert Path: " + Paths.get(certPath).toAbsolutePath());
@@ -233,76 +322,253 @@ public class Main {
         inputThread.setDaemon(true);
         inputThread.start();
 
+        if (fleetFile != null) {
+            runFleet(fleetFile, isSecure, certPath, keyPath, pollingRate, fleetThreads, idleTimeoutMs);
+            return;
+        }
+
+        OpcUaConnector connector = new OpcUaConnector(opcUrl, isSecure, certPath, keyPath);
+        LIDAR lidar = new LIDAR();
+        // Status transitions are pushed at the end of the cycle they happen in
+        lidar.addListener(changes -> {
+            if (inBackground.get())
+                return;
+            for (String attr : EVENT_ATTRS) {
+                int id = LIDAR.attrId(attr);
+                if (changes.isChanged(id) && changes.wasSet(id)) {
+                    System.out.println("[EVENT] " + attr + ": " + changes.getPreviousValue(id) + " -> "
+                            + changes.getLidar().getValue(id));
+                }
+            }
+        }, EVENT_ATTRS);
+        HistoryRepo history;
+        if (historyDir != null) {
+            try {
+                history = new MappedHistoryRepo(Paths.get(historyDir),
+                        Duration.ofMinutes((long) (historyDays * 24 * 60)), LIDAR::attrType);
+                System.out.println("[CONFIG] History on disk: " + Paths.get(historyDir).toAbsolutePath()
+                        + " (" + historyDays + " days)");
+            } catch (IOException e) {
+                System.err.println("[ERROR] Cannot open history directory " + historyDir + ": " + e.getMessage());
+                return;
+            }
+        } else {
+            MemoryHistoryRepo memoryHistory = new MemoryHistoryRepo(10, LIDAR::attrType, compressHistory);
+            if (historyMb != null) {
+                memoryHistory.setBudget(new HistoryBudget((long) (historyMb * 1024 * 1024)));
+                System.out.println("[CONFIG] History memory budget: " + historyMb + " MiB");
+            }
+            if (rollups) {
+                memoryHistory.setRollupTiers(RollupTier.DEFAULTS);
+                System.out.println("[CONFIG] History rollups: " + RollupTier.DEFAULTS);
+            }
+            if (profileFrames > 0) {
+                for (String attr : ATTR_MAP.keySet()) {
+                    int id = LIDAR.attrId(attr);
+                    if (id >= 0 && LIDAR.isProfile(id)) {
+                        memoryHistory.setMaxSamples(attr + RangeProfile.HISTORY_SUFFIX, profileFrames);
+                    }
+                }
+                System.out.println("[CONFIG] Range profile history: " + profileFrames + " frames per channel");
+            }
+            history = memoryHistory;
+        }
+        if (deadband != null) {
+            // The band applies to floating point channels; everything else is
+            // recorded on any change
+            Deadband band = deadband.endsWith("%")
+                    ? Deadband.percent(Double.parseDouble(deadband.substring(0, deadband.length() - 1)))
+                    : Deadband.absolute(Double.parseDouble(deadband));
+            history = new ChangeOnlyHistoryRepo(history,
+                    attr -> LIDAR.attrType(attr) == Double.class ? band : Deadband.EXACT);
+            System.out.println("[CONFIG] History records changes only (deadband " + band + ")");
+        }
+        connector.registerNodes(ATTR_MAP.values());
+
+        // Session reactivation first, full reconnect with backoff only if that fails.
+        // LIDAR state, history and monitors survive reconnects.
+        ReconnectManager reconnectManager = new ReconnectManager(connector, 250, 10000);
+        reconnectManager.addListener(new ReconnectManager.Listener() {
+            @Override
+            public void onConnected(boolean sessionReactivated) {
+                System.out.println("[CONNECTION] " + (sessionReactivated ? "Session reactivated on: "
+                        : "Successfully connected to: ") + opcUrl);
+            }
+
+            @Override
+            public void onDisconnected() {
+                System.out.println("\n[RECONNECTION] Connection lost. Reconnecting...");
+                System.out.println("[RECONEXIÓN] URL: " + opcUrl);
+            }
+        });
+        reconnectManager.start();
+
+        ScheduledExecutorService livenessScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "liveness");
+            t.setDaemon(true);
+            return t;
+        });
+        ConnectionLiveness liveness = connector.getLiveness();
+        liveness.setHeartbeatTimeout(heartbeatTimeoutMs);
+        // Every heartbeat change from polls or notifications, and the probe's own read
+        int heartbeatId = LIDAR.attrId("heartbeat");
+        lidar.addListener(changes -> {
+            if (changes.getLidar().isSet(heartbeatId)) {
+                liveness.heartbeat(changes.getLidar().getLong(heartbeatId));
+            }
+        }, "heartbeat");
+        liveness.start(livenessScheduler, idleTimeoutMs,
+                () -> connector.readNodeAsync(ATTR_MAP.get("heartbeat")).thenApply(dv -> {
+                    Object value = dv.getValue().getValue();
+                    if (value instanceof Number) {
+                        liveness.heartbeat(((Number) value).longValue());
+                    }
+                    return dv;
+                }), () -> connectionLost.set(true));
+        // A session that answers but whose heartbeat is frozen is rebuilt
+        reconnectManager.setSessionCheck(liveness::verify);
+
+        PollingMonitor pollingMonitor = null;
+        SubscriptionMonitor subMonitor = null;
+        // Only the in-memory history keeps profile frames
+        boolean recordProfiles = profileFrames > 0 && historyDir == null;
+
         // Main reconnection loop
         while (!shouldExit.get()) {
+            try {
+                if (!reconnectManager.awaitConnected(1, TimeUnit.SECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException ie) {
+                break;
+            }
             connectionLost.set(false); // Reset lost connection flag
-            OpcUaConnector connector = new OpcUaConnector(opcUrl, isSecure, certPath, keyPath);
-            LIDAR lidar = new LIDAR();
-            MemoryHistoryRepo history = new MemoryHistoryRepo(10);
-            PollingMonitor pollingMonitor = null;
-            SubscriptionMonitor subMonitor = null;
 
             try {
-                connector.connect();
-                System.out.println("[CONNECTION] Successfully connected to: " + opcUrl);
-
-                // Start monitoring
+                // Start monitoring once; they keep running across reconnects
                 if (pollingRate != null) {
-                    System.out.println("[Mode] POLLING @ " + pollingRate + " seconds");
-                    pollingMonitor = new PollingMonitor(connector, ATTR_MAP, lidar, history, pollingRate);
-                    pollingMonitor.start();
-                    runMenu(connector, lidar, pollingMonitor, null, opcUrl, pollingRate);
-                } else {
+                    if (pollingMonitor == null) {
+                        System.out.println("[Mode] POLLING @ " + pollingRate + " seconds");
+                        pollingMonitor = new PollingMonitor(connector, ATTR_MAP, lidar, history, pollingRate);
+                        pollingMonitor.setProfileHistory(recordProfiles);
+                        pollingMonitor.start();
+                    }
+                } else if (subMonitor == null) {
                     System.out.println("[Mode] OPC UA SUBSCRIPTION (period_ms=500)");
                     subMonitor = new SubscriptionMonitor(connector, ATTR_MAP, lidar, history, 500.0);
+                    subMonitor.setProfileHistory(recordProfiles);
                     subMonitor.start();
-                    runMenu(connector, lidar, null, subMonitor, opcUrl, pollingRate);
                 }
+                runMenu(connector, lidar, pollingMonitor, subMonitor, opcUrl, pollingRate);
             } catch (Exception e) {
-
-                // Stop monitors if they exist
-                if (pollingMonitor != null) {
-                    pollingMonitor.stop();
-                }
-                if (subMonitor != null) {
-                    subMonitor.stop();
-                }
-
-                // Attempt to disconnect
-                try {
-                    connector.disconnect();
-                } catch (Exception ex) {
-                }
-
-                // If we shouldn't exit, try to reconnect
                 if (!shouldExit.get()) {
-                    System.out.println("\n[RECONNECTION] Connection lost. Attempting to reconnect in 10 seconds...");
-                    System.out.println("[RECONEXIÓN] URL: " + opcUrl);
+                    reconnectManager.connectionLost();
+                }
+            }
+        }
 
-                    try {
-                        Thread.sleep(10000); // Wait 10 seconds
-                    } catch (InterruptedException ie) {
-                        break;
-                    }
+        if (pollingMonitor != null) {
+            pollingMonitor.stop();
+        }
+        if (subMonitor != null) {
+            subMonitor.stop();
+        }
+        connector.getLiveness().stop();
+        livenessScheduler.shutdownNow();
+        reconnectManager.stop();
+        try {
+            connector.disconnect();
+        } catch (Exception ex) {
+        }
+        if (history instanceof Closeable) {
+            try {
+                ((Closeable) history).close();
+            } catch (IOException e) {
+                System.err.println("[ERROR] Cannot close history: " + e.getMessage());
+            }
+        }
+    }
 
-                    System.out.println("[RECONNECTION] Attempting to reconnect now...\n");
-                }
+    /**
+     * Fleet file format: one device per line as "name opc_url" (or only the URL,
+     * then the URL is used as name). Empty lines and lines starting with # are ignored.
+     */
+    private static Map<String, String> loadFleet(String fleetFile) throws IOException {
+        Map<String, String> endpoints = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(Paths.get(fleetFile))) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length >= 2) {
+                endpoints.put(parts[0], parts[1]);
+            } else {
+                endpoints.put(parts[0], parts[0]);
             }
         }
+        return endpoints;
     }
 
-    private static boolean checkConnection(OpcUaConnector connector) {
+    private static void runFleet(String fleetFile, boolean isSecure, String certPath, String keyPath,
+            Double pollingRate, int threads, long idleTimeoutMs) {
+        Map<String, String> endpoints;
         try {
-            if (connector != null && connector.getClient() != null) {
-                connector.readNode(ATTR_MAP.get("heartbeat"));
-                return true;
+            endpoints = loadFleet(fleetFile);
+        } catch (IOException e) {
+            System.err.println("[ERROR] Cannot read fleet file " + fleetFile + ": " + e.getMessage());
+            return;
+        }
+        if (endpoints.isEmpty()) {
+            System.err.println("[ERROR] Fleet file " + fleetFile + " lists no devices");
+            return;
+        }
+
+        System.out.println("[Mode] FLEET: " + endpoints.size() + " devices, " + threads + " scheduler threads, "
+                + (pollingRate != null ? "POLLING @ " + pollingRate + " seconds" : "OPC UA SUBSCRIPTION"));
+        FleetMonitor fleet = new FleetMonitor(endpoints, ATTR_MAP, isSecure, certPath, keyPath,
+                pollingRate, threads, 250, idleTimeoutMs);
+        fleet.start();
+
+        while (!shouldExit.get()) {
+            System.out.print(FLEET_MENU);
+            String choice;
+            try {
+                choice = commandQueue.take().trim().toLowerCase();
+            } catch (InterruptedException e) {
+                break;
             }
-        } catch (Exception e) {
-            // Connection lost
-            if (!connectionLost.get()) {
-                connectionLost.set(true);
+
+            switch (choice) {
+                case "1":
+                    for (FleetMonitor.Device device : fleet.getDevices().values()) {
+                        LIDAR lidar = device.getLidar();
+                        System.out.println(device.getName() + " [" + device.getEndpointUrl() + "] "
+                                + (device.isConnected() ? "CONNECTED" : "DISCONNECTED")
+                                + " heartbeat=" + lidar.getHeartbeat()
+                                + " status=" + lidar.getDeviceStatus());
+                    }
+                    break;
+                case "q":
+                case "quit":
+                case "exit":
+                    shouldExit.set(true);
+                    break;
+                default:
+                    System.out.println("Invalid option.");
             }
         }
+
+        fleet.stop();
+        System.out.println("Exiting...");
+    }
+
+    // Answered from the traffic already seen, without an extra read
+    private static boolean checkConnection(OpcUaConnector connector) {
+        if (connector != null && connector.getClient() != null && connector.getLiveness().isAlive()) {
+            return true;
+        }
+        connectionLost.set(true);
         return false;
     }
 
@@ -327,20 +593,17 @@ public class Main {
 
         final Thread[] verboseThreadRef = new Thread[1];
         Thread verboseThread = new Thread(() -> {
+            // Refilled on every refresh instead of building a map of all values
+            LIDARCursor cursor = new LIDARCursor();
             while (!inBackground.get() && !connectionLost.get()) {
                 if (verboseMode.get() && !connectionLost.get()) {
-                    System.out.println("\n=== VERBOSITY ===");
-                    Map<String, Object> values = lidar.getAllValues();
+                    lidar.read(cursor);
+                    System.out.println("\n=== VERBOSITY === cycle " + cursor.getCycle() + " @ " + cursor.getSourceTime());
 
                     // --- MODIFICACIÓN INICIO ---
-                    if (values.isEmpty()) {
-                        System.out.println("ADVERTENCIA: El objeto LIDAR no tiene valores mapeados.");
-                    } else {
-                        for (Map.Entry<String, Object> entry : values.entrySet()) {
-                            String valString = (entry.getValue() == null) ? "NULL (Sin datos)"
-                                    : entry.getValue().toString();
-                            System.out.println(entry.getKey() + ": " + valString);
-                        }
+                    while (cursor.next()) {
+                        String valString = cursor.isSet() ? String.valueOf(cursor.getValue()) : "NULL (Sin datos)";
+                        System.out.println(cursor.getName() + ": " + valString);
                     }
                     System.out.println("==================");
                     System.out.println("To exit verbosity press 1\n");
@@ -356,27 +619,14 @@ public class Main {
         verboseThreadRef[0] = verboseThread;
         verboseThread.start();
 
-        // Thread to monitor connection and detect disconnections (every 2 seconds)
+        // Watch the passive liveness state; no requests are sent from here
         ScheduledExecutorService connectionMonitor = Executors.newSingleThreadScheduledExecutor();
         connectionMonitor.scheduleAtFixedRate(() -> {
-            try {
-                // Attempt to read a node to verify connection
-                if (connector != null && connector.getClient() != null) {
-                    connector.readNode(ATTR_MAP.get("heartbeat"));
-                }
-            } catch (Exception e) {
+            if (!connector.getLiveness().isAlive()) {
                 if (!connectionLost.get()) {
                     System.out.println("\n[DISCONNECTION] Connection loss detected.");
                     System.out.println("[DESCONEXIÓN] URL: " + opcUrl);
 
-                    // Stop monitors
-                    if (pollingMonitor != null) {
-                        pollingMonitor.stop();
-                    }
-                    if (subMonitor != null) {
-                        subMonitor.stop();
-                    }
-
                     // Disable verbosity and stop verbosity thread
                     verboseMode.set(false);
                     if (verboseThreadRef[0] != null) {
@@ -387,7 +637,7 @@ public class Main {
                     connectionMonitor.shutdown();
                 }
             }
-        }, 2, 2, TimeUnit.SECONDS);
+        }, 500, 500, TimeUnit.MILLISECONDS);
 
         boolean menuShown = false;
 
@@ -509,12 +759,6 @@ public class Main {
                         case "q":
                         case "quit":
                         case "exit":
-                            if (pollingMonitor != null) {
-                                pollingMonitor.stop();
-                            }
-                            if (subMonitor != null) {
-                                subMonitor.stop();
-                            }
                             connectionMonitor.shutdown();
                             shouldExit.set(true);
                             System.out.println("Exiting...");
@@ -1,1142 +1,1139 @@
 package lidar.client.domain;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class LIDAR {
+    private static final Logger logger = LoggerFactory.getLogger(LIDAR.class);
+
+    // ==========================================
+    // ATTRIBUTE IDS
+    // ==========================================
+    // Filled in declaration order by the id constants below; ids never change
+    private static final List<String> NAMES = new ArrayList<>();
+    private static final List<Class<?>> TYPES = new ArrayList<>();
+
+    private static int attr(String name, Class<?> type) {
+        NAMES.add(name);
+        TYPES.add(type);
+        return NAMES.size() - 1;
+    }
 
     // ==========================================
     // General System Information
     // ==========================================
-    private Integer state;
-    private Integer status;
-    private String appName;
-    private Integer opcuaPort;
-    private Integer webPort;
-    private String appStartTime;
-    private String serialNumber;
-    private String tableFileName;
-    private String prosysSdkVersion;
-    private Integer currentSessionNumber;
-    private String sessionsName; // Defined as String[100] in table, usually maps to String in Java
-    private Integer randomGeneratorCode;
-    private Boolean verboseStatus;
-    private Integer updateTime;
-    private String isotstamp;
-    private Integer heartbeat;
+    private static final int STATE = attr("state", Integer.class);
+    private static final int STATUS = attr("status", Integer.class);
+    private static final int APP_NAME = attr("app_name", String.class);
+    private static final int OPCUA_PORT = attr("opcua_port", Integer.class);
+    private static final int WEB_PORT = attr("web_port", Integer.class);
+    private static final int APP_START_TIME = attr("app_start_time", String.class);
+    private static final int SERIAL_NUMBER = attr("serial_number", String.class);
+    private static final int TABLE_FILE_NAME = attr("table_file_name", String.class);
+    private static final int PROSYS_SDK_VERSION = attr("prosys_sdk_version", String.class);
+    private static final int CURRENT_SESSION_NUMBER = attr("current_session_number", Integer.class);
+    private static final int SESSIONS_NAME = attr("sessions_name", String.class); // Defined as String[100] in table, usually maps to String in Java
+    private static final int RANDOM_GENERATOR_CODE = attr("random_generator_code", Integer.class);
+    private static final int VERBOSE_STATUS = attr("verbose_status", Boolean.class);
+    private static final int UPDATE_TIME = attr("update_time", Integer.class);
+    private static final int ISOTSTAMP = attr("isotstamp", String.class);
+    private static final int HEARTBEAT = attr("heartbeat", Integer.class);
 
     // ==========================================
     // Errors
     // ==========================================
-    private Integer errorNumber;
-    private String errorInformation;
-    private String errorRecovering; // Changed to String as per table
-    private Integer errorNumberRecovered;
-    private Boolean errorNumberOutofrange;
+    private static final int ERROR_NUMBER = attr("error_number", Integer.class);
+    private static final int ERROR_INFORMATION = attr("error_information", String.class);
+    private static final int ERROR_RECOVERING = attr("error_recovering", String.class); // Changed to String as per table
+    private static final int ERROR_NUMBER_RECOVERED = attr("error_number_recovered", Integer.class);
+    private static final int ERROR_NUMBER_OUTOFRANGE = attr("error_number_outofrange", Boolean.class);
 
     // ==========================================
     // LIDAR Measurements & Channels
     // ==========================================
-    private Double elasticChannel355Nm;
-    private Double elasticChannel532Nm;
-    private Double elasticChannel1064Nm;
-    private Double ramanChannelN2387Nm;
-    private Double ramanChannelH2o;
-    private Double ramanRangeSignalCounts;
-    private Double statisticalErrorPerBin;
-    private Double integrationTime;
-    private Double coPolar355Nm;
-    private Double crossPolar355Nm;
-    private Double coPolar532Nm;
-    private Double crossPolar532Nm;
-    private Double depolarisationRatioProfile;
-    private Double backscatterCoefficientBetaZ;
-    private Double extinctionCoefficientAlphaZ;
-    private Double aerosolOpticalDepth;
-    private Double lidarRatioSZ;
-    private Double humidityProfileH2o;
-    private Double pblHeight;
-    private Double cloudBaseHeight;
-    private Double snrPerBin;
+    private static final int ELASTIC_CHANNEL_355_NM = attr("elastic_channel_355_nm", Double.class);
+    private static final int ELASTIC_CHANNEL_532_NM = attr("elastic_channel_532_nm", Double.class);
+    private static final int ELASTIC_CHANNEL_1064_NM = attr("elastic_channel_1064_nm", Double.class);
+    private static final int RAMAN_CHANNEL_N2_387_NM = attr("raman_channel_n2_387_nm", Double.class);
+    private static final int RAMAN_CHANNEL_H2O = attr("raman_channel_h2o", Double.class);
+    private static final int RAMAN_RANGE_SIGNAL_COUNTS = attr("raman_range_signal_counts", Double.class);
+    private static final int STATISTICAL_ERROR_PER_BIN = attr("statistical_error_per_bin", Double.class);
+    private static final int INTEGRATION_TIME = attr("integration_time", Double.class);
+    private static final int CO_POLAR_355_NM = attr("co_polar_355_nm", Double.class);
+    private static final int CROSS_POLAR_355_NM = attr("cross_polar_355_nm", Double.class);
+    private static final int CO_POLAR_532_NM = attr("co_polar_532_nm", Double.class);
+    private static final int CROSS_POLAR_532_NM = attr("cross_polar_532_nm", Double.class);
+    private static final int DEPOLARISATION_RATIO_PROFILE = attr("depolarisation_ratio_profile", Double.class);
+    private static final int BACKSCATTER_COEFFICIENT_BETA_Z = attr("backscatter_coefficient_beta_z", Double.class);
+    private static final int EXTINCTION_COEFFICIENT_ALPHA_Z = attr("extinction_coefficient_alpha_z", Double.class);
+    private static final int AEROSOL_OPTICAL_DEPTH = attr("aerosol_optical_depth", Double.class);
+    private static final int LIDAR_RATIO_S_Z = attr("lidar_ratio_s_z", Double.class);
+    private static final int HUMIDITY_PROFILE_H2O = attr("humidity_profile_h2o", Double.class);
+    private static final int PBL_HEIGHT = attr("pbl_height", Double.class);
+    private static final int CLOUD_BASE_HEIGHT = attr("cloud_base_height", Double.class);
+    private static final int SNR_PER_BIN = attr("snr_per_bin", Double.class);
 
     // ==========================================
     // Data Processing & Status
     // ==========================================
-    private String timestampUtc;
-    private Double integrationAccumulationTime;
-    private Double numberOfAccumulatedPulses;
-    private Double verticalResolutionBinSize;
-    private Double temporalResolution;
-    private Double globalSnr;
-    private String qualityFlags;
-    private Double internalTemperatures;
-    private Double laserReadingsEnergyVoltagePrf;
-    private Double aodTimeSeries;
-    private Double averagedIntervalProfiles;
-    private String netcdfAsciiGridFiles;
-    private String rangeTimeImages;
-    private String ashCloudAutomaticDetection;
+    private static final int TIMESTAMP_UTC = attr("timestamp_utc", String.class);
+    private static final int INTEGRATION_ACCUMULATION_TIME = attr("integration_accumulation_time", Double.class);
+    private static final int NUMBER_OF_ACCUMULATED_PULSES = attr("number_of_accumulated_pulses", Double.class);
+    private static final int VERTICAL_RESOLUTION_BIN_SIZE = attr("vertical_resolution_bin_size", Double.class);
+    private static final int TEMPORAL_RESOLUTION = attr("temporal_resolution", Double.class);
+    private static final int GLOBAL_SNR = attr("global_snr", Double.class);
+    private static final int QUALITY_FLAGS = attr("quality_flags", String.class);
+    private static final int INTERNAL_TEMPERATURES = attr("internal_temperatures", Double.class);
+    private static final int LASER_READINGS_ENERGY_VOLTAGE_PRF = attr("laser_readings_energy_voltage_prf", Double.class);
+    private static final int AOD_TIME_SERIES = attr("aod_time_series", Double.class);
+    private static final int AVERAGED_INTERVAL_PROFILES = attr("averaged_interval_profiles", Double.class);
+    private static final int NETCDF_ASCII_GRID_FILES = attr("netcdf_ascii_grid_files", String.class);
+    private static final int RANGE_TIME_IMAGES = attr("range_time_images", String.class);
+    private static final int ASH_CLOUD_AUTOMATIC_DETECTION = attr("ash_cloud_automatic_detection", String.class);
 
     // ==========================================
     // Motion & Control
     // ==========================================
-    private String motorised2AxisMount;
-    private String threeDScanningCapability;
-    private Double azimuthRange0360Deg;
-    private Double elevationRangeMinus590Deg;
-    private Double pointingAccuracy;
-    private Double angularSpeedConfigurable;
+    private static final int MOTORISED_2_AXIS_MOUNT = attr("motorised_2_axis_mount", String.class);
+    private static final int THREE_D_SCANNING_CAPABILITY = attr("three_d_scanning_capability", String.class);
+    private static final int AZIMUTH_RANGE_0_360_DEG = attr("azimuth_range_0_360_deg", Double.class);
+    private static final int ELEVATION_RANGE_MINUS_5_90_DEG = attr("elevation_range_minus_5_90_deg", Double.class);
+    private static final int POINTING_ACCURACY = attr("pointing_accuracy", Double.class);
+    private static final int ANGULAR_SPEED_CONFIGURABLE = attr("angular_speed_configurable", Double.class);
 
     // Modes
-    private String modeStareFixed;
-    private String modeRasterScan;
-    private String modeConeScan;
-    private String modeVolumeScan;
+    private static final int MODE_STARE_FIXED = attr("mode_stare_fixed", String.class);
+    private static final int MODE_RASTER_SCAN = attr("mode_raster_scan", String.class);
+    private static final int MODE_CONE_SCAN = attr("mode_cone_scan", String.class);
+    private static final int MODE_VOLUME_SCAN = attr("mode_volume_scan", String.class);
 
-    private Double angularStepPerBin;
-    private Double integrationTimePerPosition;
-    private String ethernetApiGuiControl;
+    private static final int ANGULAR_STEP_PER_BIN = attr("angular_step_per_bin", Double.class);
+    private static final int INTEGRATION_TIME_PER_POSITION = attr("integration_time_per_position", Double.class);
+    private static final int ETHERNET_API_GUI_CONTROL = attr("ethernet_api_gui_control", String.class);
 
     // Commands (Cmd)
-    private String cmdSetAz;
-    private String cmdSetEl;
-    private String cmdHome;
-    private String cmdPark;
-    private String cmdStartScan;
+    private static final int CMD_SET_AZ = attr("cmd_set_az", String.class);
+    private static final int CMD_SET_EL = attr("cmd_set_el", String.class);
+    private static final int CMD_HOME = attr("cmd_home", String.class);
+    private static final int CMD_PARK = attr("cmd_park", String.class);
+    private static final int CMD_START_SCAN = attr("cmd_start_scan", String.class);
 
     // ==========================================
     // Telemetry & Positioning
     // ==========================================
-    private String telemetryStatusPositionEncoder;
-    private Double commandLatency;
-    private String encoderPositionConfirmation;
-    private String directPointingCommands;
-    private Double pointingTolerance;
-    private String pointingVerification;
-    private String measurementStrategyByPointing;
+    private static final int TELEMETRY_STATUS_POSITION_ENCODER = attr("telemetry_status_position_encoder", String.class);
+    private static final int COMMAND_LATENCY = attr("command_latency", Double.class);
+    private static final int ENCODER_POSITION_CONFIRMATION = attr("encoder_position_confirmation", String.class);
+    private static final int DIRECT_POINTING_COMMANDS = attr("direct_pointing_commands", String.class);
+    private static final int POINTING_TOLERANCE = attr("pointing_tolerance", Double.class);
+    private static final int POINTING_VERIFICATION = attr("pointing_verification", String.class);
+    private static final int MEASUREMENT_STRATEGY_BY_POINTING = attr("measurement_strategy_by_pointing", String.class);
 
     // ==========================================
     // Safety & Flags
     // ==========================================
-    private String positionQualityFlags;
-    private String safetyInterlocks;
-    private String noGoZones;
-    private String humanPresenceLockout;
-    private String dayNightModes;
+    private static final int POSITION_QUALITY_FLAGS = attr("position_quality_flags", String.class);
+    private static final int SAFETY_INTERLOCKS = attr("safety_interlocks", String.class);
+    private static final int NO_GO_ZONES = attr("no_go_zones", String.class);
+    private static final int HUMAN_PRESENCE_LOCKOUT = attr("human_presence_lockout", String.class);
+    private static final int DAY_NIGHT_MODES = attr("day_night_modes", String.class);
 
     // ==========================================
     // Detailed Measurements
     // ==========================================
-    private String measurementTimeUtc;
-    private Double integrationSeconds;
-    private Double laserWavelengthNm;
-    private String channelId;
-    private Double rangeM;
-    private Double signalCounts;
-    private Double signalError;
-    private Double backscatterCoefMSr;
-    private Double extinctionCoefKm1;
-    private Double depolarizationRatio;
-    private Double waterVapourMixingRatioGPerKg;
-    private Double cloudBaseHeightM;
-    private Double pblHeightM;
+    private static final int MEASUREMENT_TIME_UTC = attr("measurement_time_utc", String.class);
+    private static final int INTEGRATION_SECONDS = attr("integration_seconds", Double.class);
+    private static final int LASER_WAVELENGTH_NM = attr("laser_wavelength_nm", Double.class);
+    private static final int CHANNEL_ID = attr("channel_id", String.class);
+    private static final int RANGE_M = attr("range_m", Double.class);
+    private static final int SIGNAL_COUNTS = attr("signal_counts", Double.class);
+    private static final int SIGNAL_ERROR = attr("signal_error", Double.class);
+    private static final int BACKSCATTER_COEF_M_SR = attr("backscatter_coef_m_sr", Double.class);
+    private static final int EXTINCTION_COEF_KM_1 = attr("extinction_coef_km_1", Double.class);
+    private static final int DEPOLARIZATION_RATIO = attr("depolarization_ratio", Double.class);
+    private static final int WATER_VAPOUR_MIXING_RATIO_G_PER_KG = attr("water_vapour_mixing_ratio_g_per_kg", Double.class);
+    private static final int CLOUD_BASE_HEIGHT_M = attr("cloud_base_height_m", Double.class);
+    private static final int PBL_HEIGHT_M = attr("pbl_height_m", Double.class);
 
     // ==========================================
     // Pointing Status
     // ==========================================
-    private Double pointingAzDeg;
-    private Double pointingElDeg;
-    private Double pointingTargetAzDeg;
-    private Double pointingTargetElDeg;
-    private String pointingStatus;
-    private Double pointingAccuracyDeg;
+    private static final int POINTING_AZ_DEG = attr("pointing_az_deg", Double.class);
+    private static final int POINTING_EL_DEG = attr("pointing_el_deg", Double.class);
+    private static final int POINTING_TARGET_AZ_DEG = attr("pointing_target_az_deg", Double.class);
+    private static final int POINTING_TARGET_EL_DEG = attr("pointing_target_el_deg", Double.class);
+    private static final int POINTING_STATUS = attr("pointing_status", String.class);
+    private static final int POINTING_ACCURACY_DEG = attr("pointing_accuracy_deg", Double.class);
 
     // ==========================================
     // Device Info
     // ==========================================
-    private String scanMode;
-    private String deviceStatus;
-    private String fileFormatVersion;
+    private static final int SCAN_MODE = attr("scan_mode", String.class);
+    private static final int DEVICE_STATUS = attr("device_status", String.class);
+    private static final int FILE_FORMAT_VERSION = attr("file_format_version", String.class);
 
     // ==========================================
-    // HELPERS
+    // ATTRIBUTE TABLE
     // ==========================================
-    private static Boolean convertToBoolean(Object value) {
-        if (value == null)
-            return null;
-        if (value instanceof Boolean)
-            return (Boolean) value;
-        if (value instanceof String) {
-            String str = ((String) value).trim().toLowerCase();
-            return str.equals("true") || str.equals("1") || str.equals("yes");
+    // Column an attribute is stored in: Integer and Boolean (as 0/1) share longs
+    static final byte KIND_DOUBLE = 0;
+    static final byte KIND_INTEGER = 1;
+    static final byte KIND_BOOLEAN = 2;
+    static final byte KIND_STRING = 3;
+
+    // Indexed by attribute id
+    private static final String[] ATTR_NAMES = NAMES.toArray(new String[0]);
+    private static final Class<?>[] ATTR_TYPES = TYPES.toArray(new Class<?>[0]);
+    private static final byte[] KINDS = new byte[ATTR_TYPES.length];
+    private static final Map<String, Integer> ATTR_IDS = new HashMap<>();
+
+    // Channels that are per-range-bin profiles in the instrument; an array value
+    // is kept as a RangeProfile, a scalar one as before
+    private static final int[] PROFILE_ATTRS = {
+            ELASTIC_CHANNEL_355_NM, ELASTIC_CHANNEL_532_NM, ELASTIC_CHANNEL_1064_NM,
+            RAMAN_CHANNEL_N2_387_NM, RAMAN_CHANNEL_H2O, STATISTICAL_ERROR_PER_BIN,
+            CO_POLAR_355_NM, CROSS_POLAR_355_NM, CO_POLAR_532_NM, CROSS_POLAR_532_NM,
+            DEPOLARISATION_RATIO_PROFILE, BACKSCATTER_COEFFICIENT_BETA_Z, EXTINCTION_COEFFICIENT_ALPHA_Z,
+            HUMIDITY_PROFILE_H2O, SNR_PER_BIN };
+    private static final boolean[] PROFILES = new boolean[ATTR_TYPES.length];
+
+    static {
+        for (int id : PROFILE_ATTRS) {
+            PROFILES[id] = true;
         }
-        if (value instanceof Number) {
-            return ((Number) value).intValue() != 0;
+        for (int id = 0; id < ATTR_NAMES.length; id++) {
+            Class<?> type = ATTR_TYPES[id];
+            KINDS[id] = type == Double.class ? KIND_DOUBLE
+                    : type == Integer.class ? KIND_INTEGER
+                    : type == Boolean.class ? KIND_BOOLEAN
+                    : KIND_STRING;
+            ATTR_IDS.put(ATTR_NAMES[id], id);
         }
-        return null;
     }
 
-    private Integer convertToInteger(Object value) {
-        if (value == null)
-            return null;
-        if (value instanceof Integer)
-            return (Integer) value;
-        if (value instanceof Number)
-            return ((Number) value).intValue();
-        if (value instanceof String) {
-            try {
-                return Integer.parseInt((String) value);
-            } catch (Exception e) {
-                return null;
+    // ==========================================
+    // STATE
+    // ==========================================
+    // One slot per attribute id in the column of its kind, so updates store
+    // primitives instead of allocating boxes; present has a bit per set attribute
+    private final double[] doubles = new double[ATTR_NAMES.length];
+    private final long[] longs = new long[ATTR_NAMES.length];
+    private final Object[] objects = new Object[ATTR_NAMES.length];
+    private final long[] present = new long[(ATTR_NAMES.length + 63) >>> 6];
+    // Decode buffer per profile attribute, created on its first array value;
+    // profilePresent has a bit per attribute whose latest value was an array
+    private final RangeProfile[] profiles = new RangeProfile[ATTR_NAMES.length];
+    private final long[] profilePresent = new long[present.length];
+
+    // Seqlock over the columns: odd while a cycle is being written, so the number
+    // of complete cycles is seq / 2
+    private volatile long seq;
+    private Instant sourceTime;
+
+    // Writer only: what changed in the current cycle, handed to listeners at its end
+    private final LIDARChangeSet changes = new LIDARChangeSet(this);
+    private final List<Registration> listeners = new CopyOnWriteArrayList<>();
+
+    private static final class Registration {
+        final LIDARChangeListener listener;
+        final long[] mask;
+
+        Registration(LIDARChangeListener listener, long[] mask) {
+            this.listener = listener;
+            this.mask = mask;
+        }
+    }
+
+    /**
+     * Number of attributes; ids run from 0 to attrCount() - 1.
+     */
+    public static int attrCount() {
+        return ATTR_NAMES.length;
+    }
+
+    /**
+     * Stable id of an attribute name, or -1 if LIDAR has no such attribute.
+     * Resolve ids once (e.g. when a monitor is built) and use setAttr(int, Object)
+     * on the ingestion path.
+     */
+    public static int attrId(String name) {
+        Integer id = ATTR_IDS.get(name);
+        return id != null ? id : -1;
+    }
+
+    public static String attrName(int id) {
+        return ATTR_NAMES[id];
+    }
+
+    /**
+     * Declared type of an attribute name (Integer, Double, Boolean or
+     * String), or null if LIDAR has no such attribute.
+     */
+    public static Class<?> attrType(String name) {
+        int id = attrId(name);
+        return id >= 0 ? ATTR_TYPES[id] : null;
+    }
+
+    public static Class<?> attrType(int id) {
+        return ATTR_TYPES[id];
+    }
+
+    /**
+     * Whether an attribute accepts array values as a range profile; see
+     * readProfile.
+     */
+    public static boolean isProfile(int id) {
+        return PROFILES[id];
+    }
+
+    // ==========================================
+    // CYCLES
+    // ==========================================
+    /**
+     * Starts an update cycle, e.g. one poll. The writer (one thread at a time)
+     * calls setAttr for the cycle's values and then endCycle; snapshot() never
+     * returns a frame with only part of a cycle applied, and never blocks the
+     * writer. Keep the cycle short: readers wait for it to end.
+     */
+    public void beginCycle() {
+        seq = seq + 1;
+        // Column writes must not become visible before seq turns odd
+        VarHandle.storeStoreFence();
+    }
+
+    /**
+     * Publishes the values set since beginCycle as one frame.
+     *
+     * @param sourceTime when the values were sampled at the source
+     */
+    public void endCycle(Instant sourceTime) {
+        this.sourceTime = sourceTime;
+        seq = seq + 1;
+        if (!changes.isEmpty()) {
+            notifyListeners();
+        }
+    }
+
+    private void notifyListeners() {
+        changes.publish(seq >>> 1, sourceTime);
+        try {
+            for (Registration registration : listeners) {
+                if (!changes.intersects(registration.mask))
+                    continue;
+                try {
+                    registration.listener.onChange(changes);
+                } catch (RuntimeException e) {
+                    // A failing listener must not stop ingestion or the other listeners
+                    logger.warn("LIDAR change listener failed", e);
+                }
             }
+        } finally {
+            changes.reset();
         }
-        return null;
     }
 
-    private Double convertToDouble(Object value) {
-        if (value == null)
-            return null;
-        if (value instanceof Double)
-            return (Double) value;
-        if (value instanceof Float)
-            return ((Float) value).doubleValue();
-        if (value instanceof Number)
-            return ((Number) value).doubleValue();
-        if (value instanceof String) {
-            try {
-                return Double.parseDouble((String) value);
-            } catch (Exception e) {
-                return null;
+    // ==========================================
+    // LISTENERS
+    // ==========================================
+    /**
+     * Calls the listener at the end of every update cycle in which one of the
+     * given attributes (or any attribute, if none are given) changed, once per
+     * cycle however many of them changed. A value stored again unchanged does not
+     * count. Pass a whole group, e.g. the error attributes, to react to any of
+     * them.
+     *
+     * @throws IllegalArgumentException if an attribute name is unknown
+     */
+    public void addListener(LIDARChangeListener listener, String... attrs) {
+        long[] mask = new long[(ATTR_NAMES.length + 63) >>> 6];
+        if (attrs.length == 0) {
+            Arrays.fill(mask, -1L);
+        }
+        for (String attr : attrs) {
+            int id = attrId(attr);
+            if (id < 0)
+                throw new IllegalArgumentException("LIDAR has no attribute: " + attr);
+            mask[id >>> 6] |= 1L << id;
+        }
+        listeners.add(new Registration(listener, mask));
+    }
+
+    public void removeListener(LIDARChangeListener listener) {
+        listeners.removeIf(registration -> registration.listener == listener);
+    }
+
+    /**
+     * Number of complete update cycles.
+     */
+    public long getCycle() {
+        return seq >>> 1;
+    }
+
+    /**
+     * Coherent copy of the state as of the last complete cycle. Retries while a
+     * cycle is being written instead of locking the writer.
+     */
+    public LIDARSnapshot snapshot() {
+        LIDARSnapshot snapshot = new LIDARSnapshot();
+        copyInto(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Refills a reusable cursor with the last complete cycle and rewinds it; same
+     * guarantees as snapshot() without allocating.
+     */
+    public LIDARCursor read(LIDARCursor cursor) {
+        copyInto(cursor);
+        cursor.rewind();
+        return cursor;
+    }
+
+    /**
+     * Copies the last complete cycle's range profile of an attribute into a
+     * reusable buffer, with the bin size of the same cycle. Returns false if the
+     * attribute's latest value was not an array. Profiles are not part of
+     * snapshots and cursors, which stay small.
+     */
+    public boolean readProfile(int id, RangeProfile into) {
+        while (true) {
+            long s = seq;
+            if ((s & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            RangeProfile profile = hasProfile(id) ? profiles[id] : null;
+            if (profile != null) {
+                into.copyFrom(profile, isSet(VERTICAL_RESOLUTION_BIN_SIZE)
+                        ? doubles[VERTICAL_RESOLUTION_BIN_SIZE] : Double.NaN);
+            }
+            VarHandle.loadLoadFence();
+            if (seq == s)
+                return profile != null;
+        }
+    }
+
+    /**
+     * The last complete cycle's range profile of an attribute as a new array, e.g.
+     * to keep it as a history frame, or null if the attribute's latest value was
+     * not an array. Copies straight from the decoded buffer.
+     */
+    public double[] copyProfile(int id) {
+        while (true) {
+            long s = seq;
+            if ((s & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
             }
+            RangeProfile profile = hasProfile(id) ? profiles[id] : null;
+            double[] copy = profile != null ? profile.copyValues() : null;
+            VarHandle.loadLoadFence();
+            if (seq == s)
+                return copy;
         }
-        return null;
     }
 
-    private String convertToString(Object value) {
-        return value == null ? null : String.valueOf(value);
+    private void copyInto(LIDARFrame frame) {
+        while (true) {
+            long s = seq;
+            if ((s & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            System.arraycopy(doubles, 0, frame.doubles, 0, doubles.length);
+            System.arraycopy(longs, 0, frame.longs, 0, longs.length);
+            System.arraycopy(objects, 0, frame.objects, 0, objects.length);
+            System.arraycopy(present, 0, frame.present, 0, present.length);
+            Instant t = sourceTime;
+            // The copies must be complete before seq is checked again
+            VarHandle.loadLoadFence();
+            if (seq == s) {
+                frame.cycle = s >>> 1;
+                frame.sourceTime = t;
+                return;
+            }
+        }
     }
 
     // ==========================================
     // SET ATTR (Generic Setter)
     // ==========================================
-    public void setAttr(String name, Object value) {
+    /**
+     * Stores a raw value by attribute id, converted to the attribute's type
+     * without boxing; null values are ignored and a value that does not convert
+     * clears the attribute. Outside beginCycle/endCycle the write is a cycle of
+     * its own, keeping the previous source time.
+     */
+    public void setAttr(int id, Object value) {
         if (value == null)
             return;
+        if ((seq & 1) != 0) {
+            store(id, value);
+            return;
+        }
+        beginCycle();
+        try {
+            store(id, value);
+        } finally {
+            endCycle(sourceTime);
+        }
+    }
 
-        switch (name) {
-            // General
-            case "state":
-                state = convertToInteger(value);
-                break;
-            case "status":
-                status = convertToInteger(value);
-                break;
-            case "app_name":
-                appName = convertToString(value);
-                break;
-            case "opcua_port":
-                opcuaPort = convertToInteger(value);
-                break;
-            case "web_port":
-                webPort = convertToInteger(value);
-                break;
-            case "app_start_time":
-                appStartTime = convertToString(value);
-                break;
-            case "serial_number":
-                serialNumber = convertToString(value);
-                break;
-            case "table_file_name":
-                tableFileName = convertToString(value);
-                break;
-            case "prosys_sdk_version":
-                prosysSdkVersion = convertToString(value);
-                break;
-            case "current_session_number":
-                currentSessionNumber = convertToInteger(value);
-                break;
-            case "sessions_name":
-                sessionsName = convertToString(value);
-                break;
-            case "random_generator_code":
-                randomGeneratorCode = convertToInteger(value);
-                break;
-            case "verbose_status":
-                verboseStatus = convertToBoolean(value);
-                break;
-            case "update_time":
-                updateTime = convertToInteger(value);
+    private void store(int id, Object value) {
+        if (PROFILES[id]) {
+            if (RangeProfile.isProfileValue(value)) {
+                storeProfile(id, value);
+                return;
+            }
+            // A scalar replaces the profile; the buffer is kept for the next one
+            profilePresent[id >>> 6] &= ~(1L << id);
+        }
+        switch (KINDS[id]) {
+            case KIND_DOUBLE:
+                storeDouble(id, value);
                 break;
-            case "isotstamp":
-                isotstamp = convertToString(value);
+            case KIND_INTEGER:
+                storeInteger(id, value);
                 break;
-            case "heartbeat":
-                heartbeat = convertToInteger(value);
+            case KIND_BOOLEAN:
+                storeBoolean(id, value);
                 break;
+            default:
+                putObject(id, String.valueOf(value));
+        }
+    }
 
-            // Errors
-            case "error_number":
-                errorNumber = convertToInteger(value);
-                break;
-            case "error_information":
-                errorInformation = convertToString(value);
-                break;
-            case "error_recovering":
-                errorRecovering = convertToString(value);
-                break;
-            case "error_number_recovered":
-                errorNumberRecovered = convertToInteger(value);
-                break;
-            case "error_number_outofrange":
-                errorNumberOutofrange = convertToBoolean(value);
-                break;
+    /**
+     * Name-based variant for callers outside the ingestion path; unknown names
+     * are ignored.
+     */
+    public void setAttr(String name, Object value) {
+        int id = attrId(name);
+        if (id >= 0) {
+            setAttr(id, value);
+        }
+    }
 
-            // Lidar Channels & Measures
-            case "elastic_channel_355_nm":
-                elasticChannel355Nm = convertToDouble(value);
-                break;
-            case "elastic_channel_532_nm":
-                elasticChannel532Nm = convertToDouble(value);
-                break;
-            case "elastic_channel_1064_nm":
-                elasticChannel1064Nm = convertToDouble(value);
-                break;
-            case "raman_channel_n2_387_nm":
-                ramanChannelN2387Nm = convertToDouble(value);
-                break;
-            case "raman_channel_h2o":
-                ramanChannelH2o = convertToDouble(value);
-                break;
-            case "raman_range_signal_counts":
-                ramanRangeSignalCounts = convertToDouble(value);
-                break;
-            case "statistical_error_per_bin":
-                statisticalErrorPerBin = convertToDouble(value);
-                break;
-            case "integration_time":
-                integrationTime = convertToDouble(value);
-                break;
-            case "co_polar_355_nm":
-                coPolar355Nm = convertToDouble(value);
-                break;
-            case "cross_polar_355_nm":
-                crossPolar355Nm = convertToDouble(value);
-                break;
-            case "co_polar_532_nm":
-                coPolar532Nm = convertToDouble(value);
-                break;
-            case "cross_polar_532_nm":
-                crossPolar532Nm = convertToDouble(value);
-                break;
-            case "depolarisation_ratio_profile":
-                depolarisationRatioProfile = convertToDouble(value);
-                break;
-            case "backscatter_coefficient_beta_z":
-                backscatterCoefficientBetaZ = convertToDouble(value);
-                break;
-            case "extinction_coefficient_alpha_z":
-                extinctionCoefficientAlphaZ = convertToDouble(value);
-                break;
-            case "aerosol_optical_depth":
-                aerosolOpticalDepth = convertToDouble(value);
-                break;
-            case "lidar_ratio_s_z":
-                lidarRatioSZ = convertToDouble(value);
-                break;
-            case "humidity_profile_h2o":
-                humidityProfileH2o = convertToDouble(value);
-                break;
-            case "pbl_height":
-                pblHeight = convertToDouble(value);
-                break;
-            case "cloud_base_height":
-                cloudBaseHeight = convertToDouble(value);
-                break;
-            case "snr_per_bin":
-                snrPerBin = convertToDouble(value);
-                break;
+    private void storeDouble(int id, Object value) {
+        if (value instanceof Number) {
+            putDouble(id, ((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            try {
+                putDouble(id, Double.parseDouble((String) value));
+            } catch (NumberFormatException e) {
+                clear(id);
+            }
+        } else {
+            clear(id);
+        }
+    }
 
-            // Data Processing
-            case "timestamp_utc":
-                timestampUtc = convertToString(value);
-                break;
-            case "integration_accumulation_time":
-                integrationAccumulationTime = convertToDouble(value);
-                break;
-            case "number_of_accumulated_pulses":
-                numberOfAccumulatedPulses = convertToDouble(value);
-                break;
-            case "vertical_resolution_bin_size":
-                verticalResolutionBinSize = convertToDouble(value);
-                break;
-            case "temporal_resolution":
-                temporalResolution = convertToDouble(value);
-                break;
-            case "global_snr":
-                globalSnr = convertToDouble(value);
-                break;
-            case "quality_flags":
-                qualityFlags = convertToString(value);
-                break;
-            case "internal_temperatures":
-                internalTemperatures = convertToDouble(value);
-                break;
-            case "laser_readings_energy_voltage_prf":
-                laserReadingsEnergyVoltagePrf = convertToDouble(value);
-                break;
-            case "aod_time_series":
-                aodTimeSeries = convertToDouble(value);
-                break;
-            case "averaged_interval_profiles":
-                averagedIntervalProfiles = convertToDouble(value);
-                break;
-            case "netcdf_ascii_grid_files":
-                netcdfAsciiGridFiles = convertToString(value);
-                break;
-            case "range_time_images":
-                rangeTimeImages = convertToString(value);
-                break;
-            case "ash_cloud_automatic_detection":
-                ashCloudAutomaticDetection = convertToString(value);
-                break;
+    private void storeInteger(int id, Object value) {
+        if (value instanceof Number) {
+            putLong(id, ((Number) value).intValue());
+        } else if (value instanceof String) {
+            try {
+                putLong(id, Integer.parseInt((String) value));
+            } catch (NumberFormatException e) {
+                clear(id);
+            }
+        } else {
+            clear(id);
+        }
+    }
 
-            // Motion
-            case "motorised_2_axis_mount":
-                motorised2AxisMount = convertToString(value);
-                break;
-            case "three_d_scanning_capability":
-                threeDScanningCapability = convertToString(value);
-                break;
-            case "azimuth_range_0_360_deg":
-                azimuthRange0360Deg = convertToDouble(value);
-                break;
-            case "elevation_range_minus_5_90_deg":
-                elevationRangeMinus590Deg = convertToDouble(value);
-                break;
-            case "pointing_accuracy":
-                pointingAccuracy = convertToDouble(value);
-                break;
-            case "angular_speed_configurable":
-                angularSpeedConfigurable = convertToDouble(value);
-                break;
-            case "mode_stare_fixed":
-                modeStareFixed = convertToString(value);
-                break;
-            case "mode_raster_scan":
-                modeRasterScan = convertToString(value);
-                break;
-            case "mode_cone_scan":
-                modeConeScan = convertToString(value);
-                break;
-            case "mode_volume_scan":
-                modeVolumeScan = convertToString(value);
-                break;
-            case "angular_step_per_bin":
-                angularStepPerBin = convertToDouble(value);
-                break;
-            case "integration_time_per_position":
-                integrationTimePerPosition = convertToDouble(value);
-                break;
-            case "ethernet_api_gui_control":
-                ethernetApiGuiControl = convertToString(value);
-                break;
+    private void storeBoolean(int id, Object value) {
+        boolean b;
+        if (value instanceof Boolean) {
+            b = (Boolean) value;
+        } else if (value instanceof String) {
+            String str = ((String) value).trim();
+            b = str.equalsIgnoreCase("true") || str.equals("1") || str.equalsIgnoreCase("yes");
+        } else if (value instanceof Number) {
+            b = ((Number) value).intValue() != 0;
+        } else {
+            clear(id);
+            return;
+        }
+        putLong(id, b ? 1 : 0);
+    }
 
-            // Commands
-            case "cmd_set_az":
-                cmdSetAz = convertToString(value);
-                break;
-            case "cmd_set_el":
-                cmdSetEl = convertToString(value);
-                break;
-            case "cmd_home":
-                cmdHome = convertToString(value);
-                break;
-            case "cmd_park":
-                cmdPark = convertToString(value);
-                break;
-            case "cmd_start_scan":
-                cmdStartScan = convertToString(value);
-                break;
+    // Decodes into the attribute's buffer in place; the scalar value is cleared as
+    // an array never converted to one. Profiles are not compared, so every array
+    // value counts as a change.
+    private void storeProfile(int id, Object value) {
+        RangeProfile profile = profiles[id];
+        if (profile == null) {
+            profile = new RangeProfile();
+            profiles[id] = profile;
+        }
+        recordChange(id);
+        clear(id);
+        profile.decode(value);
+        profilePresent[id >>> 6] |= 1L << id;
+    }
 
-            // Telemetry
-            case "telemetry_status_position_encoder":
-                telemetryStatusPositionEncoder = convertToString(value);
-                break;
-            case "command_latency":
-                commandLatency = convertToDouble(value);
-                break;
-            case "encoder_position_confirmation":
-                encoderPositionConfirmation = convertToString(value);
-                break;
-            case "direct_pointing_commands":
-                directPointingCommands = convertToString(value);
-                break;
-            case "pointing_tolerance":
-                pointingTolerance = convertToDouble(value);
-                break;
-            case "pointing_verification":
-                pointingVerification = convertToString(value);
-                break;
-            case "measurement_strategy_by_pointing":
-                measurementStrategyByPointing = convertToString(value);
-                break;
+    private boolean hasProfile(int id) {
+        return (profilePresent[id >>> 6] & (1L << id)) != 0;
+    }
 
-            // Safety
-            case "position_quality_flags":
-                positionQualityFlags = convertToString(value);
-                break;
-            case "safety_interlocks":
-                safetyInterlocks = convertToString(value);
-                break;
-            case "no_go_zones":
-                noGoZones = convertToString(value);
-                break;
-            case "human_presence_lockout":
-                humanPresenceLockout = convertToString(value);
-                break;
-            case "day_night_modes":
-                dayNightModes = convertToString(value);
-                break;
+    // The put methods and clear record a change only when the value differs
+    private void putDouble(int id, double value) {
+        if (isSet(id) && Double.doubleToLongBits(doubles[id]) == Double.doubleToLongBits(value))
+            return;
+        recordChange(id);
+        doubles[id] = value;
+        present[id >>> 6] |= 1L << id;
+    }
 
-            // Measurements
-            case "measurement_time_utc":
-                measurementTimeUtc = convertToString(value);
-                break;
-            case "integration_seconds":
-                integrationSeconds = convertToDouble(value);
-                break;
-            case "laser_wavelength_nm":
-                laserWavelengthNm = convertToDouble(value);
-                break;
-            case "channel_id":
-                channelId = convertToString(value);
-                break;
-            case "range_m":
-                rangeM = convertToDouble(value);
-                break;
-            case "signal_counts":
-                signalCounts = convertToDouble(value);
-                break;
-            case "signal_error":
-                signalError = convertToDouble(value);
-                break;
-            case "backscatter_coef_m_sr":
-                backscatterCoefMSr = convertToDouble(value);
-                break;
-            case "extinction_coef_km_1":
-                extinctionCoefKm1 = convertToDouble(value);
-                break;
-            case "depolarization_ratio":
-                depolarizationRatio = convertToDouble(value);
-                break;
-            case "water_vapour_mixing_ratio_g_per_kg":
-                waterVapourMixingRatioGPerKg = convertToDouble(value);
-                break;
-            case "cloud_base_height_m":
-                cloudBaseHeightM = convertToDouble(value);
-                break;
-            case "pbl_height_m":
-                pblHeightM = convertToDouble(value);
-                break;
+    private void putLong(int id, long value) {
+        if (isSet(id) && longs[id] == value)
+            return;
+        recordChange(id);
+        longs[id] = value;
+        present[id >>> 6] |= 1L << id;
+    }
 
-            // Pointing Status
-            case "pointing_az_deg":
-                pointingAzDeg = convertToDouble(value);
-                break;
-            case "pointing_el_deg":
-                pointingElDeg = convertToDouble(value);
-                break;
-            case "pointing_target_az_deg":
-                pointingTargetAzDeg = convertToDouble(value);
-                break;
-            case "pointing_target_el_deg":
-                pointingTargetElDeg = convertToDouble(value);
-                break;
-            case "pointing_status":
-                pointingStatus = convertToString(value);
-                break;
-            case "pointing_accuracy_deg":
-                pointingAccuracyDeg = convertToDouble(value);
-                break;
+    private void putObject(int id, Object value) {
+        if (isSet(id) && value.equals(objects[id]))
+            return;
+        recordChange(id);
+        objects[id] = value;
+        present[id >>> 6] |= 1L << id;
+    }
 
-            // Device
-            case "scan_mode":
-                scanMode = convertToString(value);
-                break;
-            case "device_status":
-                deviceStatus = convertToString(value);
-                break;
-            case "file_format_version":
-                fileFormatVersion = convertToString(value);
-                break;
+    private void clear(int id) {
+        if (!isSet(id))
+            return;
+        recordChange(id);
+        present[id >>> 6] &= ~(1L << id);
+        objects[id] = null;
+    }
+
+    private void recordChange(int id) {
+        changes.record(id, doubles[id], longs[id], objects[id], isSet(id));
+    }
+
+    // ==========================================
+    // PRIMITIVE ACCESS
+    // ==========================================
+    // Live reads, which may mix cycles; use snapshot() for one coherent frame
+    /**
+     * Whether the attribute has a value.
+     */
+    public boolean isSet(int id) {
+        return (present[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Numeric value of a Double, Integer or Boolean (0/1) attribute without
+     * boxing; only meaningful when isSet(id).
+     */
+    public double getDouble(int id) {
+        return KINDS[id] == KIND_DOUBLE ? doubles[id] : longs[id];
+    }
+
+    /**
+     * Value of an Integer or Boolean (0/1) attribute without boxing, or a Double
+     * attribute truncated; only meaningful when isSet(id).
+     */
+    public long getLong(int id) {
+        return KINDS[id] == KIND_DOUBLE ? (long) doubles[id] : longs[id];
+    }
 
+    /**
+     * Value of an attribute as its declared type, or null if not set.
+     */
+    public Object getValue(int id) {
+        return isSet(id) ? boxed(id, doubles, longs, objects) : null;
+    }
+
+    static byte kind(int id) {
+        return KINDS[id];
+    }
+
+    static Object boxed(int id, double[] doubles, long[] longs, Object[] objects) {
+        switch (KINDS[id]) {
+            case KIND_DOUBLE:
+                return doubles[id];
+            case KIND_INTEGER:
+                return (int) longs[id];
+            case KIND_BOOLEAN:
+                return longs[id] != 0;
             default:
-                // throw new IllegalArgumentException("LIDAR has no attribute: " + name);
-                // System.out.println("Ignored attribute: " + name);
-                break;
+                return objects[id];
         }
     }
 
+    private Double doubleOrNull(int id) {
+        return isSet(id) ? doubles[id] : null;
+    }
+
+    private Integer integerOrNull(int id) {
+        return isSet(id) ? (int) longs[id] : null;
+    }
+
+    private Boolean booleanOrNull(int id) {
+        return isSet(id) ? longs[id] != 0 : null;
+    }
+
+    private String stringOrNull(int id) {
+        return (String) objects[id];
+    }
+
     // ==========================================
     // GET ALL VALUES
     // ==========================================
+    /**
+     * Every attribute by name as of the last complete cycle, null when not set.
+     * Allocates a snapshot and a map; exporters should read into a LIDARCursor
+     * and walk it or pass it a LIDARVisitor instead.
+     */
     public Map<String, Object> getAllValues() {
-        Map<String, Object> map = new HashMap<>();
-
-        map.put("state", state);
-        map.put("status", status);
-        map.put("app_name", appName);
-        map.put("opcua_port", opcuaPort);
-        map.put("web_port", webPort);
-        map.put("app_start_time", appStartTime);
-        map.put("serial_number", serialNumber);
-        map.put("table_file_name", tableFileName);
-        map.put("prosys_sdk_version", prosysSdkVersion);
-        map.put("current_session_number", currentSessionNumber);
-        map.put("sessions_name", sessionsName);
-        map.put("random_generator_code", randomGeneratorCode);
-        map.put("verbose_status", verboseStatus);
-        map.put("update_time", updateTime);
-        map.put("isotstamp", isotstamp);
-        map.put("heartbeat", heartbeat);
-
-        map.put("error_number", errorNumber);
-        map.put("error_information", errorInformation);
-        map.put("error_recovering", errorRecovering);
-        map.put("error_number_recovered", errorNumberRecovered);
-        map.put("error_number_outofrange", errorNumberOutofrange);
-
-        map.put("elastic_channel_355_nm", elasticChannel355Nm);
-        map.put("elastic_channel_532_nm", elasticChannel532Nm);
-        map.put("elastic_channel_1064_nm", elasticChannel1064Nm);
-        map.put("raman_channel_n2_387_nm", ramanChannelN2387Nm);
-        map.put("raman_channel_h2o", ramanChannelH2o);
-        map.put("raman_range_signal_counts", ramanRangeSignalCounts);
-        map.put("statistical_error_per_bin", statisticalErrorPerBin);
-        map.put("integration_time", integrationTime);
-        map.put("co_polar_355_nm", coPolar355Nm);
-        map.put("cross_polar_355_nm", crossPolar355Nm);
-        map.put("co_polar_532_nm", coPolar532Nm);
-        map.put("cross_polar_532_nm", crossPolar532Nm);
-        map.put("depolarisation_ratio_profile", depolarisationRatioProfile);
-        map.put("backscatter_coefficient_beta_z", backscatterCoefficientBetaZ);
-        map.put("extinction_coefficient_alpha_z", extinctionCoefficientAlphaZ);
-        map.put("aerosol_optical_depth", aerosolOpticalDepth);
-        map.put("lidar_ratio_s_z", lidarRatioSZ);
-        map.put("humidity_profile_h2o", humidityProfileH2o);
-        map.put("pbl_height", pblHeight);
-        map.put("cloud_base_height", cloudBaseHeight);
-        map.put("snr_per_bin", snrPerBin);
-
-        map.put("timestamp_utc", timestampUtc);
-        map.put("integration_accumulation_time", integrationAccumulationTime);
-        map.put("number_of_accumulated_pulses", numberOfAccumulatedPulses);
-        map.put("vertical_resolution_bin_size", verticalResolutionBinSize);
-        map.put("temporal_resolution", temporalResolution);
-        map.put("global_snr", globalSnr);
-        map.put("quality_flags", qualityFlags);
-        map.put("internal_temperatures", internalTemperatures);
-        map.put("laser_readings_energy_voltage_prf", laserReadingsEnergyVoltagePrf);
-        map.put("aod_time_series", aodTimeSeries);
-        map.put("averaged_interval_profiles", averagedIntervalProfiles);
-        map.put("netcdf_ascii_grid_files", netcdfAsciiGridFiles);
-        map.put("range_time_images", rangeTimeImages);
-        map.put("ash_cloud_automatic_detection", ashCloudAutomaticDetection);
-
-        map.put("motorised_2_axis_mount", motorised2AxisMount);
-        map.put("three_d_scanning_capability", threeDScanningCapability);
-        map.put("azimuth_range_0_360_deg", azimuthRange0360Deg);
-        map.put("elevation_range_minus_5_90_deg", elevationRangeMinus590Deg);
-        map.put("pointing_accuracy", pointingAccuracy);
-        map.put("angular_speed_configurable", angularSpeedConfigurable);
-        map.put("mode_stare_fixed", modeStareFixed);
-        map.put("mode_raster_scan", modeRasterScan);
-        map.put("mode_cone_scan", modeConeScan);
-        map.put("mode_volume_scan", modeVolumeScan);
-        map.put("angular_step_per_bin", angularStepPerBin);
-        map.put("integration_time_per_position", integrationTimePerPosition);
-        map.put("ethernet_api_gui_control", ethernetApiGuiControl);
-
-        map.put("cmd_set_az", cmdSetAz);
-        map.put("cmd_set_el", cmdSetEl);
-        map.put("cmd_home", cmdHome);
-        map.put("cmd_park", cmdPark);
-        map.put("cmd_start_scan", cmdStartScan);
-
-        map.put("telemetry_status_position_encoder", telemetryStatusPositionEncoder);
-        map.put("command_latency", commandLatency);
-        map.put("encoder_position_confirmation", encoderPositionConfirmation);
-        map.put("direct_pointing_commands", directPointingCommands);
-        map.put("pointing_tolerance", pointingTolerance);
-        map.put("pointing_verification", pointingVerification);
-        map.put("measurement_strategy_by_pointing", measurementStrategyByPointing);
-
-        map.put("position_quality_flags", positionQualityFlags);
-        map.put("safety_interlocks", safetyInterlocks);
-        map.put("no_go_zones", noGoZones);
-        map.put("human_presence_lockout", humanPresenceLockout);
-        map.put("day_night_modes", dayNightModes);
-
-        map.put("measurement_time_utc", measurementTimeUtc);
-        map.put("integration_seconds", integrationSeconds);
-        map.put("laser_wavelength_nm", laserWavelengthNm);
-        map.put("channel_id", channelId);
-        map.put("range_m", rangeM);
-        map.put("signal_counts", signalCounts);
-        map.put("signal_error", signalError);
-        map.put("backscatter_coef_m_sr", backscatterCoefMSr);
-        map.put("extinction_coef_km_1", extinctionCoefKm1);
-        map.put("depolarization_ratio", depolarizationRatio);
-        map.put("water_vapour_mixing_ratio_g_per_kg", waterVapourMixingRatioGPerKg);
-        map.put("cloud_base_height_m", cloudBaseHeightM);
-        map.put("pbl_height_m", pblHeightM);
-
-        map.put("pointing_az_deg", pointingAzDeg);
-        map.put("pointing_el_deg", pointingElDeg);
-        map.put("pointing_target_az_deg", pointingTargetAzDeg);
-        map.put("pointing_target_el_deg", pointingTargetElDeg);
-        map.put("pointing_status", pointingStatus);
-        map.put("pointing_accuracy_deg", pointingAccuracyDeg);
-
-        map.put("scan_mode", scanMode);
-        map.put("device_status", deviceStatus);
-        map.put("file_format_version", fileFormatVersion);
-
-        return map;
+        return snapshot().getAllValues();
     }
 
     // ==========================================
     // GETTERS (Generated)
     // ==========================================
     public Integer getState() {
-        return state;
+        return integerOrNull(STATE);
     }
 
     public Integer getStatus() {
-        return status;
+        return integerOrNull(STATUS);
     }
 
     public String getAppName() {
-        return appName;
+        return stringOrNull(APP_NAME);
     }
 
     public Integer getOpcuaPort() {
-        return opcuaPort;
+        return integerOrNull(OPCUA_PORT);
     }
 
     public Integer getWebPort() {
-        return webPort;
+        return integerOrNull(WEB_PORT);
     }
 
     public String getAppStartTime() {
-        return appStartTime;
+        return stringOrNull(APP_START_TIME);
     }
 
     public String getSerialNumber() {
-        return serialNumber;
+        return stringOrNull(SERIAL_NUMBER);
     }
 
     public String getTableFileName() {
-        return tableFileName;
+        return stringOrNull(TABLE_FILE_NAME);
     }
 
     public String getProsysSdkVersion() {
-        return prosysSdkVersion;
+        return stringOrNull(PROSYS_SDK_VERSION);
     }
 
     public Integer getCurrentSessionNumber() {
-        return currentSessionNumber;
+        return integerOrNull(CURRENT_SESSION_NUMBER);
     }
 
     public String getSessionsName() {
-        return sessionsName;
+        return stringOrNull(SESSIONS_NAME);
     }
 
     public Integer getRandomGeneratorCode() {
-        return randomGeneratorCode;
+        return integerOrNull(RANDOM_GENERATOR_CODE);
     }
 
     public Boolean getVerboseStatus() {
-        return verboseStatus;
+        return booleanOrNull(VERBOSE_STATUS);
     }
 
     public Integer getUpdateTime() {
-        return updateTime;
+        return integerOrNull(UPDATE_TIME);
     }
 
     public String getIsotstamp() {
-        return isotstamp;
+        return stringOrNull(ISOTSTAMP);
     }
 
     public Integer getHeartbeat() {
-        return heartbeat;
+        return integerOrNull(HEARTBEAT);
     }
 
     public Integer getErrorNumber() {
-        return errorNumber;
+        return integerOrNull(ERROR_NUMBER);
     }
 
     public String getErrorInformation() {
-        return errorInformation;
+        return stringOrNull(ERROR_INFORMATION);
     }
 
     public String getErrorRecovering() {
-        return errorRecovering;
+        return stringOrNull(ERROR_RECOVERING);
     }
 
     public Integer getErrorNumberRecovered() {
-        return errorNumberRecovered;
+        return integerOrNull(ERROR_NUMBER_RECOVERED);
     }
 
     public Boolean getErrorNumberOutofrange() {
-        return errorNumberOutofrange;
+        return booleanOrNull(ERROR_NUMBER_OUTOFRANGE);
     }
 
     public Double getElasticChannel355Nm() {
-        return elasticChannel355Nm;
+        return doubleOrNull(ELASTIC_CHANNEL_355_NM);
     }
 
     public Double getElasticChannel532Nm() {
-        return elasticChannel532Nm;
+        return doubleOrNull(ELASTIC_CHANNEL_532_NM);
     }
 
     public Double getElasticChannel1064Nm() {
-        return elasticChannel1064Nm;
+        return doubleOrNull(ELASTIC_CHANNEL_1064_NM);
     }
 
     public Double getRamanChannelN2387Nm() {
-        return ramanChannelN2387Nm;
+        return doubleOrNull(RAMAN_CHANNEL_N2_387_NM);
     }
 
     public Double getRamanChannelH2o() {
-        return ramanChannelH2o;
+        return doubleOrNull(RAMAN_CHANNEL_H2O);
     }
 
     public Double getRamanRangeSignalCounts() {
-        return ramanRangeSignalCounts;
+        return doubleOrNull(RAMAN_RANGE_SIGNAL_COUNTS);
     }
 
     public Double getStatisticalErrorPerBin() {
-        return statisticalErrorPerBin;
+        return doubleOrNull(STATISTICAL_ERROR_PER_BIN);
     }
 
     public Double getIntegrationTime() {
-        return integrationTime;
+        return doubleOrNull(INTEGRATION_TIME);
     }
 
     public Double getCoPolar355Nm() {
-        return coPolar355Nm;
+        return doubleOrNull(CO_POLAR_355_NM);
     }
 
     public Double getCrossPolar355Nm() {
-        return crossPolar355Nm;
+        return doubleOrNull(CROSS_POLAR_355_NM);
     }
 
     public Double getCoPolar532Nm() {
-        return coPolar532Nm;
+        return doubleOrNull(CO_POLAR_532_NM);
     }
 
     public Double getCrossPolar532Nm() {
-        return crossPolar532Nm;
+        return doubleOrNull(CROSS_POLAR_532_NM);
     }
 
     public Double getDepolarisationRatioProfile() {
-        return depolarisationRatioProfile;
+        return doubleOrNull(DEPOLARISATION_RATIO_PROFILE);
     }
 
     public Double getBackscatterCoefficientBetaZ() {
-        return backscatterCoefficientBetaZ;
+        return doubleOrNull(BACKSCATTER_COEFFICIENT_BETA_Z);
     }
 
     public Double getExtinctionCoefficientAlphaZ() {
-        return extinctionCoefficientAlphaZ;
+        return doubleOrNull(EXTINCTION_COEFFICIENT_ALPHA_Z);
     }
 
     public Double getAerosolOpticalDepth() {
-        return aerosolOpticalDepth;
+        return doubleOrNull(AEROSOL_OPTICAL_DEPTH);
     }
 
     public Double getLidarRatioSZ() {
-        return lidarRatioSZ;
+        return doubleOrNull(LIDAR_RATIO_S_Z);
     }
 
     public Double getHumidityProfileH2o() {
-        return humidityProfileH2o;
+        return doubleOrNull(HUMIDITY_PROFILE_H2O);
     }
 
     public Double getPblHeight() {
-        return pblHeight;
+        return doubleOrNull(PBL_HEIGHT);
     }
 
     public Double getCloudBaseHeight() {
-        return cloudBaseHeight;
+        return doubleOrNull(CLOUD_BASE_HEIGHT);
     }
 
     public Double getSnrPerBin() {
-        return snrPerBin;
+        return doubleOrNull(SNR_PER_BIN);
     }
 
     public String getTimestampUtc() {
-        return timestampUtc;
+        return stringOrNull(TIMESTAMP_UTC);
     }
 
     public Double getIntegrationAccumulationTime() {
-        return integrationAccumulationTime;
+        return doubleOrNull(INTEGRATION_ACCUMULATION_TIME);
     }
 
     public Double getNumberOfAccumulatedPulses() {
-        return numberOfAccumulatedPulses;
+        return doubleOrNull(NUMBER_OF_ACCUMULATED_PULSES);
     }
 
     public Double getVerticalResolutionBinSize() {
-        return verticalResolutionBinSize;
+        return doubleOrNull(VERTICAL_RESOLUTION_BIN_SIZE);
     }
 
     public Double getTemporalResolution() {
-        return temporalResolution;
+        return doubleOrNull(TEMPORAL_RESOLUTION);
     }
 
     public Double getGlobalSnr() {
-        return globalSnr;
+        return doubleOrNull(GLOBAL_SNR);
     }
 
     public String getQualityFlags() {
-        return qualityFlags;
+        return stringOrNull(QUALITY_FLAGS);
     }
 
     public Double getInternalTemperatures() {
-        return internalTemperatures;
+        return doubleOrNull(INTERNAL_TEMPERATURES);
     }
 
     public Double getLaserReadingsEnergyVoltagePrf() {
-        return laserReadingsEnergyVoltagePrf;
+        return doubleOrNull(LASER_READINGS_ENERGY_VOLTAGE_PRF);
     }
 
     public Double getAodTimeSeries() {
-        return aodTimeSeries;
+        return doubleOrNull(AOD_TIME_SERIES);
     }
 
     public Double getAveragedIntervalProfiles() {
-        return averagedIntervalProfiles;
+        return doubleOrNull(AVERAGED_INTERVAL_PROFILES);
     }
 
     public String getNetcdfAsciiGridFiles() {
-        return netcdfAsciiGridFiles;
+        return stringOrNull(NETCDF_ASCII_GRID_FILES);
     }
 
     public String getRangeTimeImages() {
-        return rangeTimeImages;
+        return stringOrNull(RANGE_TIME_IMAGES);
     }
 
     public String getAshCloudAutomaticDetection() {
-        return ashCloudAutomaticDetection;
+        return stringOrNull(ASH_CLOUD_AUTOMATIC_DETECTION);
     }
 
     public String getMotorised2AxisMount() {
-        return motorised2AxisMount;
+        return stringOrNull(MOTORISED_2_AXIS_MOUNT);
     }
 
     public String getThreeDScanningCapability() {
-        return threeDScanningCapability;
+        return stringOrNull(THREE_D_SCANNING_CAPABILITY);
     }
 
     public Double getAzimuthRange0360Deg() {
-        return azimuthRange0360Deg;
+        return doubleOrNull(AZIMUTH_RANGE_0_360_DEG);
     }
 
     public Double getElevationRangeMinus590Deg() {
-        return elevationRangeMinus590Deg;
+        return doubleOrNull(ELEVATION_RANGE_MINUS_5_90_DEG);
     }
 
     public Double getPointingAccuracy() {
-        return pointingAccuracy;
+        return doubleOrNull(POINTING_ACCURACY);
     }
 
     public Double getAngularSpeedConfigurable() {
-        return angularSpeedConfigurable;
+        return doubleOrNull(ANGULAR_SPEED_CONFIGURABLE);
     }
 
     public String getModeStareFixed() {
-        return modeStareFixed;
+        return stringOrNull(MODE_STARE_FIXED);
     }
 
     public String getModeRasterScan() {
-        return modeRasterScan;
+        return stringOrNull(MODE_RASTER_SCAN);
     }
 
     public String getModeConeScan() {
-        return modeConeScan;
+        return stringOrNull(MODE_CONE_SCAN);
     }
 
     public String getModeVolumeScan() {
-        return modeVolumeScan;
+        return stringOrNull(MODE_VOLUME_SCAN);
     }
 
     public Double getAngularStepPerBin() {
-        return angularStepPerBin;
+        return doubleOrNull(ANGULAR_STEP_PER_BIN);
     }
 
     public Double getIntegrationTimePerPosition() {
-        return integrationTimePerPosition;
+        return doubleOrNull(INTEGRATION_TIME_PER_POSITION);
     }
 
     public String getEthernetApiGuiControl() {
-        return ethernetApiGuiControl;
+        return stringOrNull(ETHERNET_API_GUI_CONTROL);
     }
 
     public String getCmdSetAz() {
-        return cmdSetAz;
+        return stringOrNull(CMD_SET_AZ);
     }
 
     public String getCmdSetEl() {
-        return cmdSetEl;
+        return stringOrNull(CMD_SET_EL);
     }
 
     public String getCmdHome() {
-        return cmdHome;
+        return stringOrNull(CMD_HOME);
     }
 
     public String getCmdPark() {
-        return cmdPark;
+        return stringOrNull(CMD_PARK);
     }
 
     public String getCmdStartScan() {
-        return cmdStartScan;
+        return stringOrNull(CMD_START_SCAN);
     }
 
     public String getTelemetryStatusPositionEncoder() {
-        return telemetryStatusPositionEncoder;
+        return stringOrNull(TELEMETRY_STATUS_POSITION_ENCODER);
     }
 
     public Double getCommandLatency() {
-        return commandLatency;
+        return doubleOrNull(COMMAND_LATENCY);
     }
 
     public String getEncoderPositionConfirmation() {
-        return encoderPositionConfirmation;
+        return stringOrNull(ENCODER_POSITION_CONFIRMATION);
     }
 
     public String getDirectPointingCommands() {
-        return directPointingCommands;
+        return stringOrNull(DIRECT_POINTING_COMMANDS);
     }
 
     public Double getPointingTolerance() {
-        return pointingTolerance;
+        return doubleOrNull(POINTING_TOLERANCE);
     }
 
     public String getPointingVerification() {
-        return pointingVerification;
+        return stringOrNull(POINTING_VERIFICATION);
     }
 
     public String getMeasurementStrategyByPointing() {
-        return measurementStrategyByPointing;
+        return stringOrNull(MEASUREMENT_STRATEGY_BY_POINTING);
     }
 
     public String getPositionQualityFlags() {
-        return positionQualityFlags;
+        return stringOrNull(POSITION_QUALITY_FLAGS);
     }
 
     public String getSafetyInterlocks() {
-        return safetyInterlocks;
+        return stringOrNull(SAFETY_INTERLOCKS);
     }
 
     public String getNoGoZones() {
-        return noGoZones;
+        return stringOrNull(NO_GO_ZONES);
     }
 
     public String getHumanPresenceLockout() {
-        return humanPresenceLockout;
+        return stringOrNull(HUMAN_PRESENCE_LOCKOUT);
     }
 
     public String getDayNightModes() {
-        return dayNightModes;
+        return stringOrNull(DAY_NIGHT_MODES);
     }
 
     public String getMeasurementTimeUtc() {
-        return measurementTimeUtc;
+        return stringOrNull(MEASUREMENT_TIME_UTC);
     }
 
     public Double getIntegrationSeconds() {
-        return integrationSeconds;
+        return doubleOrNull(INTEGRATION_SECONDS);
     }
 
     public Double getLaserWavelengthNm() {
-        return laserWavelengthNm;
+        return doubleOrNull(LASER_WAVELENGTH_NM);
     }
 
     public String getChannelId() {
-        return channelId;
+        return stringOrNull(CHANNEL_ID);
     }
 
     public Double getRangeM() {
-        return rangeM;
+        return doubleOrNull(RANGE_M);
     }
 
     public Double getSignalCounts() {
-        return signalCounts;
+        return doubleOrNull(SIGNAL_COUNTS);
     }
 
     public Double getSignalError() {
-        return signalError;
+        return doubleOrNull(SIGNAL_ERROR);
     }
 
     public Double getBackscatterCoefMSr() {
-        return backscatterCoefMSr;
+        return doubleOrNull(BACKSCATTER_COEF_M_SR);
     }
 
     public Double getExtinctionCoefKm1() {
-        return extinctionCoefKm1;
+        return doubleOrNull(EXTINCTION_COEF_KM_1);
     }
 
     public Double getDepolarizationRatio() {
-        return depolarizationRatio;
+        return doubleOrNull(DEPOLARIZATION_RATIO);
     }
 
     public Double getWaterVapourMixingRatioGPerKg() {
-        return waterVapourMixingRatioGPerKg;
+        return doubleOrNull(WATER_VAPOUR_MIXING_RATIO_G_PER_KG);
     }
 
     public Double getCloudBaseHeightM() {
-        return cloudBaseHeightM;
+        return doubleOrNull(CLOUD_BASE_HEIGHT_M);
     }
 
     public Double getPblHeightM() {
-        return pblHeightM;
+        return doubleOrNull(PBL_HEIGHT_M);
     }
 
     public Double getPointingAzDeg() {
-        return pointingAzDeg;
+        return doubleOrNull(POINTING_AZ_DEG);
     }
 
     public Double getPointingElDeg() {
-        return pointingElDeg;
+        return doubleOrNull(POINTING_EL_DEG);
     }
 
     public Double getPointingTargetAzDeg() {
-        return pointingTargetAzDeg;
+        return doubleOrNull(POINTING_TARGET_AZ_DEG);
     }
 
     public Double getPointingTargetElDeg() {
-        return pointingTargetElDeg;
+        return doubleOrNull(POINTING_TARGET_EL_DEG);
     }
 
     public String getPointingStatus() {
-        return pointingStatus;
+        return stringOrNull(POINTING_STATUS);
     }
 
     public Double getPointingAccuracyDeg() {
-        return pointingAccuracyDeg;
+        return doubleOrNull(POINTING_ACCURACY_DEG);
     }
 
     public String getScanMode() {
-        return scanMode;
+        return stringOrNull(SCAN_MODE);
     }
 
     public String getDeviceStatus() {
-        return deviceStatus;
+        return stringOrNull(DEVICE_STATUS);
     }
 
     public String getFileFormatVersion() {
-        return fileFormatVersion;
+        return stringOrNull(FILE_FORMAT_VERSION);
     }
 }
\ No newline at end of file
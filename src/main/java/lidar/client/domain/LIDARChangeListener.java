@@ -0,0 +1,16 @@
+package lidar.client.domain;
+
+/**
+ * Called once per update cycle in which at least one of the attributes it was
+ * registered for changed; see LIDAR.addListener.
+ */
+@FunctionalInterface
+public interface LIDARChangeListener {
+
+    /**
+     * Runs on the writer's thread right after the cycle is published, so it must
+     * be quick and must not update the LIDAR itself. The change set is reused
+     * and only valid during the call.
+     */
+    void onChange(LIDARChangeSet changes);
+}
@@ -0,0 +1,130 @@
+package lidar.client.domain;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Attributes that changed in one update cycle, with the values they had before
+ * it. Current values are read from getLidar(), which does not change while
+ * listeners run.
+ */
+public final class LIDARChangeSet {
+    private final LIDAR lidar;
+    private final long[] changed = new long[(LIDAR.attrCount() + 63) >>> 6];
+    private final double[] previousDoubles = new double[LIDAR.attrCount()];
+    private final long[] previousLongs = new long[LIDAR.attrCount()];
+    private final Object[] previousObjects = new Object[LIDAR.attrCount()];
+    private final long[] previousPresent = new long[changed.length];
+    private boolean empty = true;
+    private long cycle;
+    private Instant sourceTime;
+
+    LIDARChangeSet(LIDAR lidar) {
+        this.lidar = lidar;
+    }
+
+    public LIDAR getLidar() {
+        return lidar;
+    }
+
+    public long getCycle() {
+        return cycle;
+    }
+
+    public Instant getSourceTime() {
+        return sourceTime;
+    }
+
+    public boolean isChanged(int id) {
+        return (changed[id >>> 6] & (1L << id)) != 0;
+    }
+
+    public boolean isChanged(String name) {
+        int id = LIDAR.attrId(name);
+        return id >= 0 && isChanged(id);
+    }
+
+    /**
+     * First changed attribute id at or after fromId, or -1; iterate with
+     * {@code for (int id = changes.nextChanged(0); id >= 0; id = changes.nextChanged(id + 1))}.
+     */
+    public int nextChanged(int fromId) {
+        if (fromId >= LIDAR.attrCount())
+            return -1;
+        int word = fromId >>> 6;
+        long bits = changed[word] & (-1L << fromId);
+        while (true) {
+            if (bits != 0)
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            if (++word == changed.length)
+                return -1;
+            bits = changed[word];
+        }
+    }
+
+    /**
+     * Whether the attribute had a value before the cycle.
+     */
+    public boolean wasSet(int id) {
+        return (previousPresent[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Value before the cycle as its declared type, or null if it had none.
+     */
+    public Object getPreviousValue(int id) {
+        return wasSet(id) ? LIDAR.boxed(id, previousDoubles, previousLongs, previousObjects) : null;
+    }
+
+    public double getPreviousDouble(int id) {
+        return LIDAR.kind(id) == LIDAR.KIND_DOUBLE ? previousDoubles[id] : previousLongs[id];
+    }
+
+    public long getPreviousLong(int id) {
+        return LIDAR.kind(id) == LIDAR.KIND_DOUBLE ? (long) previousDoubles[id] : previousLongs[id];
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Marks an attribute changed, keeping the value it had at the start of the
+     * cycle. Writer thread only, before the new value is stored.
+     */
+    void record(int id, double d, long l, Object o, boolean set) {
+        if (isChanged(id))
+            return;
+        changed[id >>> 6] |= 1L << id;
+        previousDoubles[id] = d;
+        previousLongs[id] = l;
+        previousObjects[id] = o;
+        if (set) {
+            previousPresent[id >>> 6] |= 1L << id;
+        } else {
+            previousPresent[id >>> 6] &= ~(1L << id);
+        }
+        empty = false;
+    }
+
+    boolean intersects(long[] mask) {
+        for (int i = 0; i < changed.length; i++) {
+            if ((changed[i] & mask[i]) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    void publish(long cycle, Instant sourceTime) {
+        this.cycle = cycle;
+        this.sourceTime = sourceTime;
+    }
+
+    void reset() {
+        for (int id = nextChanged(0); id >= 0; id = nextChanged(id + 1)) {
+            previousObjects[id] = null;
+        }
+        Arrays.fill(changed, 0);
+        empty = true;
+    }
+}
@@ -0,0 +1,77 @@
+package lidar.client.domain;
+
+/**
+ * Reusable frame with a position, for exporters that walk the full state every
+ * cycle. LIDAR.read(cursor) refills it in place and rewinds it; next() then
+ * moves over the attributes in id order and the no-argument accessors read the
+ * current one, so a loop over a whole frame allocates nothing.
+ *
+ * <pre>
+ * LIDARCursor cursor = new LIDARCursor();
+ * lidar.read(cursor);
+ * while (cursor.next()) {
+ *     if (cursor.isSet()) { ... cursor.getName(), cursor.getDouble() ... }
+ * }
+ * </pre>
+ *
+ * Not thread safe; use one cursor per reader thread.
+ */
+public final class LIDARCursor extends LIDARFrame {
+    private int position = -1;
+
+    public LIDARCursor() {
+    }
+
+    /**
+     * Moves to the next attribute; false once past the last one.
+     */
+    public boolean next() {
+        if (position >= doubles.length - 1) {
+            position = doubles.length;
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    /**
+     * Moves back to before the first attribute.
+     */
+    public void rewind() {
+        position = -1;
+    }
+
+    public int getId() {
+        if (position < 0 || position >= doubles.length)
+            throw new IllegalStateException("Cursor is not on an attribute");
+        return position;
+    }
+
+    public String getName() {
+        return LIDAR.attrName(getId());
+    }
+
+    public Class<?> getType() {
+        return LIDAR.attrType(getId());
+    }
+
+    public boolean isSet() {
+        return isSet(getId());
+    }
+
+    public double getDouble() {
+        return getDouble(getId());
+    }
+
+    public long getLong() {
+        return getLong(getId());
+    }
+
+    public String getString() {
+        return getString(getId());
+    }
+
+    public Object getValue() {
+        return getValue(getId());
+    }
+}
@@ -0,0 +1,96 @@
+package lidar.client.domain;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LIDAR state as of one complete update cycle, addressed by the ids of
+ * LIDAR.attrId. Filled by LIDAR.snapshot() or LIDAR.read(LIDARCursor).
+ */
+public abstract class LIDARFrame {
+    final double[] doubles = new double[LIDAR.attrCount()];
+    final long[] longs = new long[LIDAR.attrCount()];
+    final Object[] objects = new Object[LIDAR.attrCount()];
+    final long[] present = new long[(LIDAR.attrCount() + 63) >>> 6];
+    long cycle;
+    Instant sourceTime;
+
+    LIDARFrame() {
+    }
+
+    /**
+     * Sequence number of the cycle this frame was taken after; 0 before the first.
+     */
+    public long getCycle() {
+        return cycle;
+    }
+
+    /**
+     * Source time of the cycle, or null if none was given yet.
+     */
+    public Instant getSourceTime() {
+        return sourceTime;
+    }
+
+    public boolean isSet(int id) {
+        return (present[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Numeric value of a Double, Integer or Boolean (0/1) attribute; only
+     * meaningful when isSet(id).
+     */
+    public double getDouble(int id) {
+        return LIDAR.kind(id) == LIDAR.KIND_DOUBLE ? doubles[id] : longs[id];
+    }
+
+    public long getLong(int id) {
+        return LIDAR.kind(id) == LIDAR.KIND_DOUBLE ? (long) doubles[id] : longs[id];
+    }
+
+    public String getString(int id) {
+        return objects[id] instanceof String ? (String) objects[id] : null;
+    }
+
+    public Object getValue(int id) {
+        return isSet(id) ? LIDAR.boxed(id, doubles, longs, objects) : null;
+    }
+
+    /**
+     * Calls the visitor once per attribute in id order, without allocating.
+     */
+    public void accept(LIDARVisitor visitor) {
+        for (int id = 0; id < doubles.length; id++) {
+            if (!isSet(id)) {
+                visitor.onNull(id);
+                continue;
+            }
+            switch (LIDAR.kind(id)) {
+                case LIDAR.KIND_DOUBLE:
+                    visitor.onDouble(id, doubles[id]);
+                    break;
+                case LIDAR.KIND_INTEGER:
+                    visitor.onLong(id, longs[id]);
+                    break;
+                case LIDAR.KIND_BOOLEAN:
+                    visitor.onBoolean(id, longs[id] != 0);
+                    break;
+                default:
+                    visitor.onString(id, (String) objects[id]);
+            }
+        }
+    }
+
+    /**
+     * Every attribute by name, null when not set. Allocates a map and boxes each
+     * value; accept or a LIDARCursor stream the same data without garbage.
+     */
+    public Map<String, Object> getAllValues() {
+        Map<String, Object> map = new HashMap<>(doubles.length * 4 / 3 + 1);
+        for (int id = 0; id < doubles.length; id++) {
+            map.put(LIDAR.attrName(id), getValue(id));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,10 @@
+package lidar.client.domain;
+
+/**
+ * Immutable frame of LIDAR state, taken by LIDAR.snapshot().
+ */
+public final class LIDARSnapshot extends LIDARFrame {
+
+    LIDARSnapshot() {
+    }
+}
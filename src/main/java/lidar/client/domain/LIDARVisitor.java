@@ -0,0 +1,27 @@
+package lidar.client.domain;
+
+/**
+ * Typed callbacks for walking LIDAR state by attribute id without boxing; see
+ * LIDARFrame.accept. Names and declared types come from LIDAR.attrName and
+ * LIDAR.attrType.
+ */
+public interface LIDARVisitor {
+
+    void onDouble(int id, double value);
+
+    /**
+     * Integer attributes, and Boolean ones (as 0/1) unless onBoolean is overridden.
+     */
+    void onLong(int id, long value);
+
+    default void onBoolean(int id, boolean value) {
+        onLong(id, value ? 1 : 0);
+    }
+
+    void onString(int id, String value);
+
+    /**
+     * An attribute that has no value.
+     */
+    void onNull(int id);
+}
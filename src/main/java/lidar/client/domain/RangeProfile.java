@@ -0,0 +1,139 @@
+package lidar.client.domain;
+
+import java.util.Arrays;
+
+/**
+ * One range profile of a LIDAR channel: a value per range bin, with the bin size
+ * reported by vertical_resolution_bin_size. Instances are reusable buffers:
+ * LIDAR decodes each incoming profile into the same one, and readers pass their
+ * own to LIDAR.readProfile, so profiles of thousands of bins are handled without
+ * allocating once the buffers are large enough.
+ *
+ * Not thread safe; use one buffer per reader thread.
+ */
+public final class RangeProfile {
+
+    /** Appended to an attribute name for the history series of its profile frames. */
+    public static final String HISTORY_SUFFIX = ".profile";
+
+    private double[] values;
+    private int length;
+    private double binSize = Double.NaN;
+
+    public RangeProfile() {
+        this(0);
+    }
+
+    public RangeProfile(int capacity) {
+        this.values = new double[capacity];
+    }
+
+    /**
+     * Number of range bins.
+     */
+    public int length() {
+        return length;
+    }
+
+    public double get(int bin) {
+        if (bin < 0 || bin >= length)
+            throw new IndexOutOfBoundsException("Bin " + bin + " out of bounds for length " + length);
+        return values[bin];
+    }
+
+    /**
+     * Width of a bin in the unit of vertical_resolution_bin_size, or NaN if the
+     * instrument has not reported it.
+     */
+    public double getBinSize() {
+        return binSize;
+    }
+
+    /**
+     * Distance from the instrument to the start of a bin.
+     */
+    public double getRange(int bin) {
+        return bin * binSize;
+    }
+
+    /**
+     * Copies the bins into a new array, e.g. to keep a frame past the next read.
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(values, length);
+    }
+
+    /**
+     * Whether a raw value is an array this class can decode: double[], float[]
+     * or an array of Numbers, as Milo returns for array Variants.
+     */
+    public static boolean isProfileValue(Object value) {
+        return value instanceof double[] || value instanceof float[] || value instanceof Number[];
+    }
+
+    /**
+     * Replaces the bins with a raw array value, growing the buffer only when it is
+     * too small. Returns false, leaving the buffer untouched, if the value is not
+     * a profile.
+     */
+    boolean decode(Object value) {
+        if (value instanceof double[]) {
+            double[] src = (double[]) value;
+            ensureCapacity(src.length);
+            System.arraycopy(src, 0, values, 0, src.length);
+            length = src.length;
+        } else if (value instanceof float[]) {
+            float[] src = (float[]) value;
+            ensureCapacity(src.length);
+            for (int i = 0; i < src.length; i++) {
+                values[i] = src[i];
+            }
+            length = src.length;
+        } else if (value instanceof Number[]) {
+            Number[] src = (Number[]) value;
+            ensureCapacity(src.length);
+            for (int i = 0; i < src.length; i++) {
+                values[i] = src[i] != null ? src[i].doubleValue() : Double.NaN;
+            }
+            length = src.length;
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copies another buffer's bins. The source may be written, or not yet safely
+     * published, concurrently (the caller validates the copy), so it is read
+     * defensively.
+     */
+    void copyFrom(RangeProfile src, double binSize) {
+        double[] v = src.values;
+        if (v == null)
+            return;
+        int n = Math.min(src.length, v.length);
+        ensureCapacity(n);
+        System.arraycopy(v, 0, values, 0, n);
+        length = n;
+        this.binSize = binSize;
+    }
+
+    int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Copies the bins into a new array, reading a possibly concurrently written
+     * buffer defensively like copyFrom.
+     */
+    double[] copyValues() {
+        double[] v = values;
+        return v != null ? Arrays.copyOf(v, Math.min(length, v.length)) : new double[0];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (values.length < capacity) {
+            values = new double[Math.max(capacity, values.length * 3 / 2)];
+        }
+    }
+}
@@ -1,9 +1,48 @@
 package lidar.client.domain.dto;
 
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
 import lidar.infrastructure.OpcUaConnector;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class LIDARSetters {
 
+    // ============================================================================
+    // Node ids of the writable LIDAR variables
+    // ============================================================================
+
+    public static final String SET_LIDAR_LASER_ENABLE = "ns=2;s=lidar_set_laser_enable";
+    public static final String SET_LIDAR_HV_ENABLE = "ns=2;s=lidar_set_hv_enable";
+    public static final String SET_LIDAR_LASER_PRF = "ns=2;s=lidar_set_laser_prf";
+    public static final String SET_LIDAR_TARGET_AZ = "ns=2;s=lidar_set_target_az";
+    public static final String SET_LIDAR_TARGET_EL = "ns=2;s=lidar_set_target_el";
+    public static final String SET_LIDAR_SCAN_SPEED_AZ = "ns=2;s=lidar_set_scan_speed_az";
+    public static final String SET_LIDAR_SCAN_SPEED_EL = "ns=2;s=lidar_set_scan_speed_el";
+    public static final String SET_LIDAR_SCAN_MODE_SELECT = "ns=2;s=lidar_set_scan_mode_select";
+    public static final String SET_LIDAR_BIN_WIDTH = "ns=2;s=lidar_set_bin_width";
+    public static final String SET_LIDAR_ACCUMULATION_PULSES = "ns=2;s=lidar_set_accumulation_pulses";
+    public static final String SET_LIDAR_RASTER_WIDTH = "ns=2;s=lidar_set_raster_width";
+    public static final String SET_LIDAR_RASTER_HEIGHT = "ns=2;s=lidar_set_raster_height";
+    public static final String SET_LIDAR_CONE_ANGLE = "ns=2;s=lidar_set_cone_angle";
+    public static final String SET_LIDAR_CMD_HOME = "ns=2;s=lidar_set_cmd_home";
+    public static final String SET_LIDAR_CMD_PARK = "ns=2;s=lidar_set_cmd_park";
+    public static final String SET_LIDAR_START_ACQUISITION = "ns=2;s=lidar_set_start_acquisition";
+    public static final String CMD_LIDAR_UPDATESTOP = "ns=2;s=lidar_updatestop";
+    public static final String CMD_LIDAR_UPDATERESUME = "ns=2;s=lidar_updateresume";
+    public static final String CMD_LIDAR_SIMUL_ON = "ns=2;s=lidar_simul_on";
+    public static final String CMD_LIDAR_SIMUL_OFF = "ns=2;s=lidar_simul_off";
+    public static final String CMD_LIDAR_SERVERSHUTDOWN = "ns=2;s=lidar_servershutdown";
+    public static final String CMD_LIDAR_ERROR_INFO = "ns=2;s=lidar_error_info";
+    public static final String CMD_LIDAR_ERROR_RESET = "ns=2;s=lidar_error_reset";
+    public static final String MODE_LIDAR_GO_LOADED = "ns=2;s=lidar_go_loaded";
+    public static final String MODE_LIDAR_GO_STANDBY = "ns=2;s=lidar_go_standby";
+    public static final String MODE_LIDAR_GO_ONLINE = "ns=2;s=lidar_go_online";
+    public static final String MODE_LIDAR_GO_MAINTENANCE = "ns=2;s=lidar_go_maintenace";
+
     // ============================================================================
     // Setter functions for OPC UA connection (LIDAR)
     // ============================================================================
@@ -14,82 +53,82 @@ public class LIDARSetters {
 
     public static void setLaserEnable(OpcUaConnector connector, Boolean value) throws Exception {
         // SET_LIDAR_LASER_ENABLE (boolean)
-        connector.writeNode("ns=2;s=lidar_set_laser_enable", value);
+        connector.writeNode(SET_LIDAR_LASER_ENABLE, value);
     }
 
     public static void setHvEnable(OpcUaConnector connector, Boolean value) throws Exception {
         // SET_LIDAR_HV_ENABLE (boolean)
-        connector.writeNode("ns=2;s=lidar_set_hv_enable", value);
+        connector.writeNode(SET_LIDAR_HV_ENABLE, value);
     }
 
     public static void setLaserPrf(OpcUaConnector connector, Integer value) throws Exception {
         // SET_LIDAR_LASER_PRF (int32)
-        connector.writeNode("ns=2;s=lidar_set_laser_prf", value);
+        connector.writeNode(SET_LIDAR_LASER_PRF, value);
     }
 
     public static void setTargetAz(OpcUaConnector connector, Double value) throws Exception {
         // SET_LIDAR_TARGET_AZ (double)
-        connector.writeNode("ns=2;s=lidar_set_target_az", value);
+        connector.writeNode(SET_LIDAR_TARGET_AZ, value);
     }
 
     public static void setTargetEl(OpcUaConnector connector, Double value) throws Exception {
         // SET_LIDAR_TARGET_EL (double)
-        connector.writeNode("ns=2;s=lidar_set_target_el", value);
+        connector.writeNode(SET_LIDAR_TARGET_EL, value);
     }
 
     public static void setScanSpeedAz(OpcUaConnector connector, Double value) throws Exception {
         // SET_LIDAR_SCAN_SPEED_AZ (double)
-        connector.writeNode("ns=2;s=lidar_set_scan_speed_az", value);
+        connector.writeNode(SET_LIDAR_SCAN_SPEED_AZ, value);
     }
 
     public static void setScanSpeedEl(OpcUaConnector connector, Double value) throws Exception {
         // SET_LIDAR_SCAN_SPEED_EL (double)
-        connector.writeNode("ns=2;s=lidar_set_scan_speed_el", value);
+        connector.writeNode(SET_LIDAR_SCAN_SPEED_EL, value);
     }
 
     public static void setScanModeSelect(OpcUaConnector connector, Integer value) throws Exception {
         // SET_LIDAR_SCAN_MODE_SELECT (int32)
-        connector.writeNode("ns=2;s=lidar_set_scan_mode_select", value);
+        connector.writeNode(SET_LIDAR_SCAN_MODE_SELECT, value);
     }
 
     public static void setBinWidth(OpcUaConnector connector, Double value) throws Exception {
         // SET_LIDAR_BIN_WIDTH (double)
-        connector.writeNode("ns=2;s=lidar_set_bin_width", value);
+        connector.writeNode(SET_LIDAR_BIN_WIDTH, value);
     }
 
     public static void setAccumulationPulses(OpcUaConnector connector, Integer value) throws Exception {
         // SET_LIDAR_ACCUMULATION_PULSES (int32)
-        connector.writeNode("ns=2;s=lidar_set_accumulation_pulses", value);
+        connector.writeNode(SET_LIDAR_ACCUMULATION_PULSES, value);
     }
 
     public static void setRasterWidth(OpcUaConnector connector, Double value) throws Exception {
         // SET_LIDAR_RASTER_WIDTH (double)
-        connector.writeNode("ns=2;s=lidar_set_raster_width", value);
+        connector.writeNode(SET_LIDAR_RASTER_WIDTH, value);
     }
 
     public static void setRasterHeight(OpcUaConnector connector, Double value) throws Exception {
         // SET_LIDAR_RASTER_HEIGHT (double)
-        connector.writeNode("ns=2;s=lidar_set_raster_height", value);
+        connector.writeNode(SET_LIDAR_RASTER_HEIGHT, value);
     }
 
     public static void setConeAngle(OpcUaConnector connector, Double value) throws Exception {
         // SET_LIDAR_CONE_ANGLE (double)
-        connector.writeNode("ns=2;s=lidar_set_cone_angle", value);
+        connector.writeNode(SET_LIDAR_CONE_ANGLE, value);
     }
 
     public static void setCmdHome(OpcUaConnector connector, Boolean value) throws Exception {
         // SET_LIDAR_CMD_HOME (boolean)
-        connector.writeNode("ns=2;s=lidar_set_cmd_home", value);
+        connector.writeNode(SET_LIDAR_CMD_HOME, value);
     }
 
     public static void setCmdPark(OpcUaConnector connector, Boolean value) throws Exception {
         // SET_LIDAR_CMD_PARK (boolean)
-        connector.writeNode("ns=2;s=lidar_set_cmd_park", value);
+        connector.writeNode(SET_LIDAR_CMD_PARK, value);
     }
 
     public static void setStartAcquisition(OpcUaConnector connector, Boolean value) throws Exception {
         // SET_LIDAR_START_ACQUISITION (boolean)
-        connector.writeNode("ns=2;s=lidar_set_start_acquisition", value);
+        connector.writeNode(SET_LIDAR_START_ACQUISITION, value);
     }
 
     // ------------------------------------------------------------------------
@@ -98,37 +137,37 @@ public class LIDARSetters {
 
     public static void cmdUpdateStop(OpcUaConnector connector, Boolean value) throws Exception {
         // CMD_LIDAR_UPDATESTOP (boolean)
-        connector.writeNode("ns=2;s=lidar_updatestop", value);
+        connector.writeNode(CMD_LIDAR_UPDATESTOP, value);
     }
 
     public static void cmdUpdateResume(OpcUaConnector connector, Boolean value) throws Exception {
         // CMD_LIDAR_UPDATERESUME (boolean)
-        connector.writeNode("ns=2;s=lidar_updateresume", value);
+        connector.writeNode(CMD_LIDAR_UPDATERESUME, value);
     }
 
     public static void cmdSimulOn(OpcUaConnector connector, Boolean value) throws Exception {
         // CMD_LIDAR_SIMUL_ON (boolean)
-        connector.writeNode("ns=2;s=lidar_simul_on", value);
+        connector.writeNode(CMD_LIDAR_SIMUL_ON, value);
     }
 
     public static void cmdSimulOff(OpcUaConnector connector, Boolean value) throws Exception {
         // CMD_LIDAR_SIMUL_OFF (boolean)
-        connector.writeNode("ns=2;s=lidar_simul_off", value);
+        connector.writeNode(CMD_LIDAR_SIMUL_OFF, value);
     }
 
     public static void cmdServerShutdown(OpcUaConnector connector, Boolean value) throws Exception {
         // CMD_LIDAR_SERVERSHUTDOWN (boolean)
-        connector.writeNode("ns=2;s=lidar_servershutdown", value);
+        connector.writeNode(CMD_LIDAR_SERVERSHUTDOWN, value);
     }
 
     public static void cmdErrorInfo(OpcUaConnector connector, Boolean value) throws Exception {
         // CMD_LIDAR_ERROR_INFO (boolean)
-        connector.writeNode("ns=2;s=lidar_error_info", value);
+        connector.writeNode(CMD_LIDAR_ERROR_INFO, value);
     }
 
     public static void cmdErrorReset(OpcUaConnector connector, Boolean value) throws Exception {
         // CMD_LIDAR_ERROR_RESET (boolean)
-        connector.writeNode("ns=2;s=lidar_error_reset", value);
+        connector.writeNode(CMD_LIDAR_ERROR_RESET, value);
     }
 
     // ------------------------------------------------------------------------
@@ -137,22 +176,195 @@ public class LIDARSetters {
 
     public static void modeGoLoaded(OpcUaConnector connector, Boolean value) throws Exception {
         // MODE_LIDAR_GO_LOADED (boolean)
-        connector.writeNode("ns=2;s=lidar_go_loaded", value);
+        connector.writeNode(MODE_LIDAR_GO_LOADED, value);
     }
 
     public static void modeGoStandby(OpcUaConnector connector, Boolean value) throws Exception {
         // MODE_LIDAR_GO_STANDBY (boolean)
-        connector.writeNode("ns=2;s=lidar_go_standby", value);
+        connector.writeNode(MODE_LIDAR_GO_STANDBY, value);
     }
 
     public static void modeGoOnline(OpcUaConnector connector, Boolean value) throws Exception {
         // MODE_LIDAR_GO_ONLINE (boolean)
-        connector.writeNode("ns=2;s=lidar_go_online", value);
+        connector.writeNode(MODE_LIDAR_GO_ONLINE, value);
     }
 
     public static void modeGoMaintenance(OpcUaConnector connector, Boolean value) throws Exception {
         // MODE_LIDAR_GO_MAINTENANCE (boolean)
         // Ojo: en el Excel viene escrito "lidar_go_maintenace" (con typo), lo respeto tal cual.
-        connector.writeNode("ns=2;s=lidar_go_maintenace", value);
+        connector.writeNode(MODE_LIDAR_GO_MAINTENANCE, value);
+    }
+
+    // ------------------------------------------------------------------------
+    // Batch → varias escrituras en un único Write request
+    // ------------------------------------------------------------------------
+
+    public static Batch batch() {
+        return new Batch();
+    }
+
+    /**
+     * Collects typed values for several setters and sends them in one Write
+     * request. Writing the same node twice keeps the last value.
+     */
+    public static class Batch {
+        private final Map<String, Object> values = new LinkedHashMap<>();
+
+        private Batch put(String nodeId, Object value) {
+            values.put(nodeId, value);
+            return this;
+        }
+
+        public Batch setLaserEnable(Boolean value) {
+            return put(SET_LIDAR_LASER_ENABLE, value);
+        }
+
+        public Batch setHvEnable(Boolean value) {
+            return put(SET_LIDAR_HV_ENABLE, value);
+        }
+
+        public Batch setLaserPrf(Integer value) {
+            return put(SET_LIDAR_LASER_PRF, value);
+        }
+
+        public Batch setTargetAz(Double value) {
+            return put(SET_LIDAR_TARGET_AZ, value);
+        }
+
+        public Batch setTargetEl(Double value) {
+            return put(SET_LIDAR_TARGET_EL, value);
+        }
+
+        public Batch setScanSpeedAz(Double value) {
+            return put(SET_LIDAR_SCAN_SPEED_AZ, value);
+        }
+
+        public Batch setScanSpeedEl(Double value) {
+            return put(SET_LIDAR_SCAN_SPEED_EL, value);
+        }
+
+        public Batch setScanModeSelect(Integer value) {
+            return put(SET_LIDAR_SCAN_MODE_SELECT, value);
+        }
+
+        public Batch setBinWidth(Double value) {
+            return put(SET_LIDAR_BIN_WIDTH, value);
+        }
+
+        public Batch setAccumulationPulses(Integer value) {
+            return put(SET_LIDAR_ACCUMULATION_PULSES, value);
+        }
+
+        public Batch setRasterWidth(Double value) {
+            return put(SET_LIDAR_RASTER_WIDTH, value);
+        }
+
+        public Batch setRasterHeight(Double value) {
+            return put(SET_LIDAR_RASTER_HEIGHT, value);
+        }
+
+        public Batch setConeAngle(Double value) {
+            return put(SET_LIDAR_CONE_ANGLE, value);
+        }
+
+        public Batch setCmdHome(Boolean value) {
+            return put(SET_LIDAR_CMD_HOME, value);
+        }
+
+        public Batch setCmdPark(Boolean value) {
+            return put(SET_LIDAR_CMD_PARK, value);
+        }
+
+        public Batch setStartAcquisition(Boolean value) {
+            return put(SET_LIDAR_START_ACQUISITION, value);
+        }
+
+        public Batch cmdUpdateStop(Boolean value) {
+            return put(CMD_LIDAR_UPDATESTOP, value);
+        }
+
+        public Batch cmdUpdateResume(Boolean value) {
+            return put(CMD_LIDAR_UPDATERESUME, value);
+        }
+
+        public Batch cmdSimulOn(Boolean value) {
+            return put(CMD_LIDAR_SIMUL_ON, value);
+        }
+
+        public Batch cmdSimulOff(Boolean value) {
+            return put(CMD_LIDAR_SIMUL_OFF, value);
+        }
+
+        public Batch cmdServerShutdown(Boolean value) {
+            return put(CMD_LIDAR_SERVERSHUTDOWN, value);
+        }
+
+        public Batch cmdErrorInfo(Boolean value) {
+            return put(CMD_LIDAR_ERROR_INFO, value);
+        }
+
+        public Batch cmdErrorReset(Boolean value) {
+            return put(CMD_LIDAR_ERROR_RESET, value);
+        }
+
+        public Batch modeGoLoaded(Boolean value) {
+            return put(MODE_LIDAR_GO_LOADED, value);
+        }
+
+        public Batch modeGoStandby(Boolean value) {
+            return put(MODE_LIDAR_GO_STANDBY, value);
+        }
+
+        public Batch modeGoOnline(Boolean value) {
+            return put(MODE_LIDAR_GO_ONLINE, value);
+        }
+
+        public Batch modeGoMaintenance(Boolean value) {
+            return put(MODE_LIDAR_GO_MAINTENANCE, value);
+        }
+
+        public int size() {
+            return values.size();
+        }
+
+        public BatchResult apply(OpcUaConnector connector) throws Exception {
+            List<String> nodeIds = new ArrayList<>(values.keySet());
+            List<StatusCode> codes = connector.writeNodes(nodeIds, new ArrayList<>(values.values()));
+            Map<String, StatusCode> results = new LinkedHashMap<>();
+            for (int i = 0; i < nodeIds.size(); i++) {
+                results.put(nodeIds.get(i), codes.get(i));
+            }
+            return new BatchResult(results);
+        }
+    }
+
+    public static class BatchResult {
+        private final Map<String, StatusCode> statusByNode;
+
+        BatchResult(Map<String, StatusCode> statusByNode) {
+            this.statusByNode = Collections.unmodifiableMap(statusByNode);
+        }
+
+        public Map<String, StatusCode> getStatusByNode() {
+            return statusByNode;
+        }
+
+        public StatusCode getStatus(String nodeId) {
+            return statusByNode.get(nodeId);
+        }
+
+        public boolean isAllGood() {
+            return statusByNode.values().stream().allMatch(StatusCode::isGood);
+        }
+
+        public Map<String, StatusCode> getFailed() {
+            Map<String, StatusCode> failed = new LinkedHashMap<>();
+            statusByNode.forEach((node, code) -> {
+                if (!code.isGood()) {
+                    failed.put(node, code);
+                }
+            });
+            return failed;
+        }
     }
 }
@@ -0,0 +1,144 @@
+package lidar.infrastructure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Records an attribute only when its value leaves the deadband around the last
+ * recorded value. Unchanged samples extend the current run instead: the run keeps
+ * its start sample in the underlying repo plus an end time in memory, and when the
+ * value finally changes the run is closed by storing its value once more at the
+ * end time. A static attribute such as serial_number is then a couple of stored
+ * samples per retention window instead of one per poll: a run that has lasted
+ * half the delegate's retention is recorded again, so its start sample is never
+ * pruned while the value is still current.
+ *
+ * Queries return the step function over the requested range: the value in effect
+ * at from, every recorded change, and the open run carried up to its last
+ * observation.
+ */
+public class ChangeOnlyHistoryRepo implements HistoryRepo, Closeable {
+
+    // Replaced, never mutated except for the end time, so a reader can tell
+    // whether the snapshot it took still ends with this run's start sample
+    private static final class Run {
+        final Object value;
+        final long startNanos;
+        volatile long endNanos;
+
+        Run(Object value, long startNanos) {
+            this.value = value;
+            this.startNanos = startNanos;
+            this.endNanos = startNanos;
+        }
+    }
+
+    private final HistoryRepo delegate;
+    private final Function<String, Deadband> deadbands;
+    // 0 when the delegate keeps samples forever
+    private final long renewNanos;
+    private final Map<String, Run> runs = new ConcurrentHashMap<>();
+
+    /**
+     * @param deadbands deadband per attribute; null records every sample of that
+     *                  attribute
+     */
+    public ChangeOnlyHistoryRepo(HistoryRepo delegate, Function<String, Deadband> deadbands) {
+        this.delegate = delegate;
+        this.deadbands = deadbands;
+        Duration retention = delegate.getRetention();
+        this.renewNanos = retention != null ? retention.toNanos() / 2 : 0;
+    }
+
+    public HistoryRepo getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void append(String attr, Object value, Instant timestamp) {
+        if (value == null)
+            return;
+        Deadband deadband = deadbands.apply(attr);
+        if (deadband == null) {
+            delegate.append(attr, value, timestamp);
+            return;
+        }
+
+        long nanos = HistorySeries.toEpochNanos(timestamp);
+        Run run = runs.get(attr);
+        if (run != null && deadband.contains(run.value, value)) {
+            if (nanos > run.endNanos) {
+                run.endNanos = nanos;
+            }
+            if (renewNanos > 0 && nanos - run.startNanos >= renewNanos) {
+                // Continues the run from a new start sample before the old one expires
+                delegate.append(attr, run.value, timestamp);
+                runs.put(attr, new Run(run.value, nanos));
+            }
+            return;
+        }
+        if (run != null && run.endNanos > run.startNanos) {
+            delegate.append(attr, run.value, HistorySeries.toInstant(run.endNanos));
+        }
+        delegate.append(attr, value, timestamp);
+        runs.put(attr, new Run(value, nanos));
+    }
+
+    @Override
+    public HistorySnapshot getSnapshot(String attr, Instant from, Instant to) {
+        return getSnapshotWithPrevious(attr, from, to);
+    }
+
+    /**
+     * Already includes the value in effect at from, moved to from.
+     */
+    @Override
+    public HistorySnapshot getSnapshotWithPrevious(String attr, Instant from, Instant to) {
+        Run run = runs.get(attr);
+        HistorySnapshot snapshot = delegate.getSnapshotWithPrevious(attr, from, to);
+        if (snapshot.isEmpty())
+            return snapshot;
+
+        long fromNanos = HistorySeries.toEpochNanos(from);
+        long toNanos = HistorySeries.toEpochNanos(to);
+        long endNanos = Long.MIN_VALUE;
+        if (run != null && snapshot.getTimeNanos(snapshot.size() - 1) == run.startNanos) {
+            endNanos = Math.min(run.endNanos, toNanos);
+        }
+        return snapshot.stepped(fromNanos, endNanos);
+    }
+
+    /**
+     * Over the recorded samples only, so counts and means weight each run by its
+     * start, renewal and end samples rather than by its duration.
+     */
+    @Override
+    public HistoryStats getStats(String attr) {
+        return delegate.getStats(attr);
+    }
+
+    @Override
+    public Duration getRetention() {
+        return delegate.getRetention();
+    }
+
+    /**
+     * Grows with recorded changes; a run being extended does not change it.
+     */
+    @Override
+    public long getVersion(String attr) {
+        return delegate.getVersion(attr);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+}
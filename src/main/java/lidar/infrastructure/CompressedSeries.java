@@ -0,0 +1,380 @@
+package lidar.infrastructure;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Samples of one attribute as a chain of Gorilla-encoded blocks. The newest block
+ * is appended to in place; once it holds BLOCK_SAMPLES samples it is sealed into a
+ * trimmed, immutable array and a new one is started. Strings are replaced by ids
+ * into a dictionary of their block, so a repeated mode string costs two bits like
+ * any other unchanged value, and the strings go away with the block.
+ *
+ * Retention drops whole sealed blocks, and range queries decode only the blocks
+ * overlapping the range, streaming each into the result columns.
+ *
+ * Single writer, lock-free readers: a sample is encoded before the open block's
+ * volatile count is advanced past it, and sealing publishes the new block chain
+ * as one immutable State.
+ */
+final class CompressedSeries implements TimeSeries {
+
+    static final int BLOCK_SAMPLES = 1024;
+
+    private static final class Block {
+        final long firstSeq;
+        final long firstTime;
+        final long lastTime;
+        final int count;
+        final long[] words;
+        final Object[] dictionary;
+        // Encoded samples plus dictionary
+        final long bytes;
+
+        Block(long firstSeq, long firstTime, long lastTime, int count, long[] words, Object[] dictionary,
+                long bytes) {
+            this.firstSeq = firstSeq;
+            this.firstTime = firstTime;
+            this.lastTime = lastTime;
+            this.count = count;
+            this.words = words;
+            this.dictionary = dictionary;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class OpenBlock {
+        final long firstSeq;
+        final Gorilla.Writer writer = new Gorilla.Writer();
+        long firstTime;
+        long lastTime;
+        volatile int count;
+
+        // Values by id for readers, published by count; ids by value for the writer
+        volatile Object[] dictionary = new Object[4];
+        int dictionarySize;
+        final Map<Object, Integer> dictionaryIds = new HashMap<>();
+        // Estimated size of the dictionary values
+        volatile long dictionaryBytes;
+
+        OpenBlock(long firstSeq) {
+            this.firstSeq = firstSeq;
+        }
+
+        int dictionaryId(Object value) {
+            Integer id = dictionaryIds.get(value);
+            if (id != null)
+                return id;
+            Object[] values = dictionary;
+            if (dictionarySize == values.length) {
+                values = Arrays.copyOf(values, dictionarySize * 2);
+            }
+            values[dictionarySize] = value;
+            dictionary = values;
+            dictionaryIds.put(value, dictionarySize);
+            dictionaryBytes = dictionaryBytes + HistorySeries.estimateBytes(value);
+            return dictionarySize++;
+        }
+    }
+
+    private static final class State {
+        final Block[] sealed;
+        final OpenBlock open;
+
+        State(Block[] sealed, OpenBlock open) {
+            this.sealed = sealed;
+            this.open = open;
+        }
+    }
+
+    private final HistorySeries.Kind kind;
+    private final Class<?> type;
+    private final RollingStats stats = new RollingStats();
+    // Writer only; the cutoff moves once per RetentionClock tick
+    private long lastCutoff = Long.MIN_VALUE;
+
+    private volatile State state = new State(new Block[0], new OpenBlock(0));
+    private volatile long nextSeq;
+    // Encoded size of the sealed blocks and their dictionaries
+    private volatile long sealedBytes;
+
+    /**
+     * @param type boxed type the values are returned as; anything that is not a
+     *             number or boolean is dictionary encoded per block, so it
+     *             compresses best with few distinct values (strings such as modes
+     *             and names)
+     */
+    CompressedSeries(Class<?> type) {
+        this.type = type;
+        this.kind = HistorySeries.kindOf(type);
+    }
+
+    @Override
+    public HistoryStats getStats() {
+        return stats.read();
+    }
+
+    @Override
+    public long getVersion() {
+        return nextSeq;
+    }
+
+    /**
+     * Encoded size of the retained samples plus the block dictionaries, for
+     * comparing against the 16 bytes per sample of the uncompressed columns.
+     */
+    @Override
+    public long sizeInBytes() {
+        OpenBlock open = state.open;
+        // Plus an array slot and a hash map entry per open dictionary value
+        return sealedBytes + (open.writer.sizeInBits() + 7) / 8 + open.dictionaryBytes
+                + open.dictionarySize * 48L;
+    }
+
+    @Override
+    public boolean append(long epochNanos, Object value) {
+        long bits;
+        double numeric = Double.NaN;
+        Object object = null;
+        try {
+            switch (kind) {
+                case DOUBLE:
+                    numeric = HistorySeries.toDouble(value);
+                    bits = Double.doubleToRawLongBits(numeric);
+                    break;
+                case LONG:
+                    bits = HistorySeries.toLong(value);
+                    numeric = bits;
+                    break;
+                case BOOLEAN:
+                    boolean flag = HistorySeries.toBoolean(value);
+                    bits = flag ? 1 : 0;
+                    object = flag;
+                    break;
+                default:
+                    object = value;
+                    bits = 0;
+            }
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        OpenBlock open = state.open;
+        if (kind == HistorySeries.Kind.OBJECT) {
+            int id = open.dictionaryId(value);
+            bits = id;
+            object = open.dictionary[id];
+        }
+        int index = open.count;
+        if (index == 0) {
+            open.firstTime = epochNanos;
+        }
+        open.lastTime = epochNanos;
+        open.writer.append(epochNanos, bits);
+        long seq = nextSeq;
+        stats.add(seq, epochNanos, numeric, object);
+        // Publishes the sample
+        open.count = index + 1;
+        nextSeq = seq + 1;
+
+        if (index + 1 == BLOCK_SAMPLES) {
+            seal();
+        }
+        return true;
+    }
+
+    /**
+     * Drops sealed blocks whose newest sample is older than the cutoff; the open
+     * block is kept. Writer thread only.
+     */
+    @Override
+    public void pruneBefore(long cutoffNanos) {
+        if (cutoffNanos == lastCutoff)
+            return;
+        lastCutoff = cutoffNanos;
+        State s = state;
+        int drop = 0;
+        while (drop < s.sealed.length && s.sealed[drop].lastTime < cutoffNanos) {
+            drop++;
+        }
+        dropBlocks(s, drop);
+    }
+
+    /**
+     * Drops the oldest sealed blocks until the size fits; the open block is kept,
+     * so the result may stay above maxBytes by up to one block. Writer thread only.
+     */
+    @Override
+    public void evictOldest(long maxBytes) {
+        long excess = sizeInBytes() - maxBytes;
+        if (excess <= 0)
+            return;
+        State s = state;
+        int drop = 0;
+        while (drop < s.sealed.length && excess > 0) {
+            excess -= s.sealed[drop].bytes;
+            drop++;
+        }
+        dropBlocks(s, drop);
+    }
+
+    /**
+     * Drops the oldest sealed blocks that lie entirely beyond the newest
+     * maxSamples, so up to one block more may be kept. Writer thread only.
+     */
+    @Override
+    public void keepNewest(int maxSamples) {
+        State s = state;
+        long excess = s.open.count - (long) maxSamples;
+        for (Block block : s.sealed) {
+            excess += block.count;
+        }
+        int drop = 0;
+        while (drop < s.sealed.length && excess >= s.sealed[drop].count) {
+            excess -= s.sealed[drop].count;
+            drop++;
+        }
+        dropBlocks(s, drop);
+    }
+
+    private void dropBlocks(State s, int drop) {
+        if (drop == 0)
+            return;
+        long freed = 0;
+        for (int i = 0; i < drop; i++) {
+            Block block = s.sealed[i];
+            Gorilla.Reader reader = new Gorilla.Reader(block.words, block.count);
+            long seq = block.firstSeq;
+            while (reader.next()) {
+                stats.remove(++seq, numeric(reader.value()));
+            }
+            freed += block.bytes;
+        }
+
+        Block[] remaining = new Block[s.sealed.length - drop];
+        System.arraycopy(s.sealed, drop, remaining, 0, remaining.length);
+        state = new State(remaining, s.open);
+        sealedBytes = sealedBytes - freed;
+    }
+
+    /**
+     * Decodes the samples with fromNanos <= time <= toNanos. Blocks outside the
+     * range are skipped by their time bounds without decoding.
+     */
+    @Override
+    public HistorySnapshot snapshot(long fromNanos, long toNanos) {
+        State s = state;
+        // Count before words: the words seen are at least as new as the count
+        int openCount = s.open.count;
+        long[] openWords = s.open.writer.words();
+        Object[] openDictionary = s.open.dictionary;
+        long version = s.open.firstSeq + openCount;
+
+        int capacity = openCount;
+        for (Block block : s.sealed) {
+            if (block.lastTime >= fromNanos && block.firstTime <= toNanos) {
+                capacity += block.count;
+            }
+        }
+
+        long[] times = new long[capacity];
+        double[] doubles = kind == HistorySeries.Kind.DOUBLE ? new double[capacity] : null;
+        long[] longs = kind == HistorySeries.Kind.LONG ? new long[capacity] : null;
+        boolean[] booleans = kind == HistorySeries.Kind.BOOLEAN ? new boolean[capacity] : null;
+        Object[] objects = kind == HistorySeries.Kind.OBJECT ? new Object[capacity] : null;
+
+        int n = 0;
+        for (Block block : s.sealed) {
+            if (block.lastTime < fromNanos || block.firstTime > toNanos)
+                continue;
+            n = decode(new Gorilla.Reader(block.words, block.count), block.dictionary, fromNanos, toNanos, n,
+                    times, doubles, longs, booleans, objects);
+        }
+        if (openCount > 0) {
+            n = decode(new Gorilla.Reader(openWords, openCount), openDictionary, fromNanos, toNanos, n, times,
+                    doubles, longs, booleans, objects);
+        }
+        return new HistorySnapshot(type, n, times, doubles, longs, booleans, objects, version);
+    }
+
+    /**
+     * Decodes at most the one block that holds the answer.
+     */
+    @Override
+    public long lastTimeBefore(long nanos) {
+        State s = state;
+        int openCount = s.open.count;
+        long[] openWords = s.open.writer.words();
+        long time = openCount > 0 ? lastTimeBefore(new Gorilla.Reader(openWords, openCount), nanos) : Long.MIN_VALUE;
+        for (int i = s.sealed.length - 1; i >= 0 && time == Long.MIN_VALUE; i--) {
+            Block block = s.sealed[i];
+            if (block.firstTime < nanos) {
+                time = block.lastTime < nanos ? block.lastTime
+                        : lastTimeBefore(new Gorilla.Reader(block.words, block.count), nanos);
+            }
+        }
+        return time;
+    }
+
+    private static long lastTimeBefore(Gorilla.Reader reader, long nanos) {
+        long time = Long.MIN_VALUE;
+        while (reader.next() && reader.time() < nanos) {
+            time = reader.time();
+        }
+        return time;
+    }
+
+    private int decode(Gorilla.Reader reader, Object[] dictionary, long fromNanos, long toNanos, int n,
+            long[] times, double[] doubles, long[] longs, boolean[] booleans, Object[] objects) {
+        while (reader.next()) {
+            long time = reader.time();
+            if (time < fromNanos)
+                continue;
+            if (time > toNanos)
+                break;
+            long bits = reader.value();
+            times[n] = time;
+            switch (kind) {
+                case DOUBLE:
+                    doubles[n] = Double.longBitsToDouble(bits);
+                    break;
+                case LONG:
+                    longs[n] = bits;
+                    break;
+                case BOOLEAN:
+                    booleans[n] = bits != 0;
+                    break;
+                default:
+                    objects[n] = dictionary[(int) bits];
+            }
+            n++;
+        }
+        return n;
+    }
+
+    private double numeric(long bits) {
+        switch (kind) {
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            case LONG:
+                return bits;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    private void seal() {
+        State s = state;
+        OpenBlock open = s.open;
+        long[] words = open.writer.toArray();
+        Object[] dictionary = Arrays.copyOf(open.dictionary, open.dictionarySize);
+        Block block = new Block(open.firstSeq, open.firstTime, open.lastTime, open.count, words, dictionary,
+                words.length * 8L + open.dictionaryBytes + dictionary.length * 8L);
+        Block[] sealed = new Block[s.sealed.length + 1];
+        System.arraycopy(s.sealed, 0, sealed, 0, s.sealed.length);
+        sealed[s.sealed.length] = block;
+        state = new State(sealed, new OpenBlock(nextSeq));
+        sealedBytes = sealedBytes + block.bytes;
+    }
+}
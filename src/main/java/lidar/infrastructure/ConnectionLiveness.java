@@ -0,0 +1,177 @@
+package lidar.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Tracks whether a connection is alive from the traffic that already flows on it:
+ * successful service responses, subscription notifications and keep-alives all
+ * count. A probe is only sent once nothing arrived for the idle timeout (or the
+ * subscription watchdog reported a missed publish); if the probe fails the
+ * connection is reported lost.
+ *
+ * Traffic alone does not prove the device is working: a server can keep
+ * answering with a frozen value. When the device's heartbeat counter is fed in
+ * and a heartbeat timeout is set, a counter that has not advanced for that long
+ * makes the connection suspect. If it has still not advanced after the probe,
+ * the connection is reported lost even though the probe got an answer.
+ */
+public class ConnectionLiveness {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionLiveness.class);
+
+    private volatile long lastTrafficNanos = System.nanoTime();
+    private volatile boolean lost;
+    private volatile boolean suspect;
+    private final AtomicBoolean probing = new AtomicBoolean(false);
+
+    private volatile long heartbeatTimeoutMs;
+    private volatile boolean heartbeatSeen;
+    private volatile long lastHeartbeat;
+    private volatile long lastHeartbeatChangeNanos = System.nanoTime();
+
+    private long idleTimeoutMs;
+    private Supplier<? extends CompletableFuture<?>> probe;
+    private Runnable onLost;
+    private ScheduledFuture<?> checkTask;
+
+    public void markAlive() {
+        lastTrafficNanos = System.nanoTime();
+        suspect = false;
+        lost = false;
+    }
+
+    /**
+     * An expected update did not arrive; probe on the next check instead of waiting
+     * for the full idle timeout.
+     */
+    public void markSuspect() {
+        suspect = true;
+    }
+
+    public boolean isAlive() {
+        return !lost;
+    }
+
+    /**
+     * Records the device heartbeat counter, from a poll, a notification or the
+     * probe. Only a new value restarts the heartbeat timeout.
+     */
+    public synchronized void heartbeat(long value) {
+        if (!heartbeatSeen || value != lastHeartbeat) {
+            lastHeartbeat = value;
+            lastHeartbeatChangeNanos = System.nanoTime();
+            heartbeatSeen = true;
+        }
+    }
+
+    /**
+     * How long the heartbeat may stay unchanged before the connection is
+     * suspect; 0 (the default) does not check it. Not checked until a first
+     * heartbeat was recorded, so servers without one are unaffected. Set it
+     * before start().
+     */
+    public void setHeartbeatTimeout(long heartbeatTimeoutMs) {
+        this.heartbeatTimeoutMs = Math.max(0, heartbeatTimeoutMs);
+    }
+
+    /**
+     * Gives the heartbeat a full timeout from now, e.g. on a new client, so a
+     * rebuilt connection is not judged by the frozen counter of the old one.
+     */
+    public void restartHeartbeatTimeout() {
+        lastHeartbeatChangeNanos = System.nanoTime();
+    }
+
+    public boolean isHeartbeatStale() {
+        long timeout = heartbeatTimeoutMs;
+        return timeout > 0 && heartbeatSeen
+                && TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastHeartbeatChangeNanos) >= timeout;
+    }
+
+    /**
+     * Sends the probe and fails unless it succeeds with the heartbeat advancing,
+     * e.g. to check a surviving session before trusting it again.
+     */
+    public CompletableFuture<Void> verify() {
+        CompletableFuture<?> request;
+        try {
+            request = probe != null ? probe.get() : CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        return request.thenApply(result -> {
+            if (isHeartbeatStale())
+                throw new IllegalStateException("Heartbeat has not advanced");
+            return null;
+        });
+    }
+
+    public long getIdleMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastTrafficNanos);
+    }
+
+    /**
+     * Starts checking on the given scheduler, which is not shut down by stop().
+     *
+     * @param idleTimeoutMs quiet time after which the probe is sent; the probe
+     *                      itself must answer within the same time
+     * @param probe         request whose success proves the connection is alive
+     * @param onLost        called once per loss, on a Milo or scheduler thread
+     */
+    public synchronized void start(ScheduledExecutorService scheduler, long idleTimeoutMs,
+            Supplier<? extends CompletableFuture<?>> probe, Runnable onLost) {
+        stop();
+        this.idleTimeoutMs = Math.max(1, idleTimeoutMs);
+        this.probe = probe;
+        this.onLost = onLost;
+        markAlive();
+
+        long shortest = heartbeatTimeoutMs > 0 ? Math.min(this.idleTimeoutMs, heartbeatTimeoutMs) : this.idleTimeoutMs;
+        long period = Math.max(100, shortest / 4);
+        checkTask = scheduler.scheduleAtFixedRate(this::check, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (checkTask != null) {
+            checkTask.cancel(false);
+            checkTask = null;
+        }
+    }
+
+    private void check() {
+        if (lost || (!suspect && !isHeartbeatStale() && getIdleMillis() < idleTimeoutMs))
+            return;
+        if (!probing.compareAndSet(false, true))
+            return;
+
+        CompletableFuture<?> request;
+        try {
+            request = probe.get();
+        } catch (Exception e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        request.orTimeout(idleTimeoutMs, TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+            probing.set(false);
+            boolean stale = isHeartbeatStale();
+            if (error == null && !stale) {
+                markAlive();
+            } else if (!lost) {
+                lost = true;
+                if (error != null) {
+                    logger.warn("No traffic for {} ms and probe failed: {}", getIdleMillis(), error.getMessage());
+                } else {
+                    logger.warn("Heartbeat stuck at {} for {} ms", lastHeartbeat,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastHeartbeatChangeNanos));
+                }
+                onLost.run();
+            }
+        });
+    }
+}
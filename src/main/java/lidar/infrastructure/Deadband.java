@@ -0,0 +1,57 @@
+package lidar.infrastructure;
+
+import java.util.Arrays;
+
+/**
+ * How far a value may move from the last recorded one before ChangeOnlyHistoryRepo
+ * records it again. Non-numeric values, and double[] profile frames, are recorded
+ * whenever they are not equal.
+ */
+public final class Deadband {
+
+    /** Records every change, however small. */
+    public static final Deadband EXACT = new Deadband(0, false);
+
+    private final double band;
+    private final boolean percent;
+
+    private Deadband(double band, boolean percent) {
+        if (!(band >= 0))
+            throw new IllegalArgumentException("Deadband must be >= 0: " + band);
+        this.band = band;
+        this.percent = percent;
+    }
+
+    public static Deadband absolute(double band) {
+        return new Deadband(band, false);
+    }
+
+    /**
+     * Band as a percentage of the last recorded value's magnitude.
+     */
+    public static Deadband percent(double percent) {
+        return new Deadband(percent, true);
+    }
+
+    /**
+     * True if value counts as unchanged from the recorded reference.
+     */
+    public boolean contains(Object reference, Object value) {
+        if (reference instanceof Number && value instanceof Number) {
+            double ref = ((Number) reference).doubleValue();
+            double v = ((Number) value).doubleValue();
+            if (Double.compare(ref, v) == 0)
+                return true;
+            double limit = percent ? Math.abs(ref) * band / 100 : band;
+            return Math.abs(v - ref) <= limit;
+        }
+        if (reference instanceof double[] && value instanceof double[])
+            return Arrays.equals((double[]) reference, (double[]) value);
+        return reference.equals(value);
+    }
+
+    @Override
+    public String toString() {
+        return percent ? band + "%" : String.valueOf(band);
+    }
+}
@@ -0,0 +1,79 @@
+package lidar.infrastructure;
+
+/**
+ * Chart-sized reductions of a history snapshot. Numeric series use
+ * Largest-Triangle-Three-Buckets, which keeps peaks and dips that evenly spaced
+ * picks would miss; other series keep the first sample of each bucket.
+ */
+final class Downsampling {
+
+    private Downsampling() {
+    }
+
+    static HistorySnapshot downsample(HistorySnapshot source, int maxPoints) {
+        int n = source.size();
+        if (maxPoints <= 0 || n <= maxPoints) {
+            return source;
+        }
+        int[] picked = source.isNumeric() && maxPoints >= 3 ? lttb(source, maxPoints) : firstPerBucket(n, maxPoints);
+        return source.select(picked);
+    }
+
+    static int[] lttb(HistorySnapshot source, int maxPoints) {
+        int n = source.size();
+        int[] picked = new int[maxPoints];
+        long t0 = source.getTimeNanos(0);
+
+        // First and last points are always kept; the rest is split into buckets
+        double every = (double) (n - 2) / (maxPoints - 2);
+        int a = 0;
+        picked[0] = 0;
+
+        for (int i = 0; i < maxPoints - 2; i++) {
+            // Average of the next bucket is the third triangle corner
+            int avgStart = (int) Math.floor((i + 1) * every) + 1;
+            int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgX += source.getTimeNanos(j) - t0;
+                avgY += source.getDouble(j);
+            }
+            int avgCount = avgEnd - avgStart;
+            avgX /= avgCount;
+            avgY /= avgCount;
+
+            int rangeStart = (int) Math.floor(i * every) + 1;
+            int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+            double ax = source.getTimeNanos(a) - t0;
+            double ay = source.getDouble(a);
+
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((ax - avgX) * (source.getDouble(j) - ay)
+                        - (ax - (source.getTimeNanos(j) - t0)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            picked[i + 1] = next;
+            a = next;
+        }
+
+        picked[maxPoints - 1] = n - 1;
+        return picked;
+    }
+
+    static int[] firstPerBucket(int n, int maxPoints) {
+        int[] picked = new int[maxPoints];
+        for (int i = 0; i < maxPoints; i++) {
+            picked[i] = (int) ((long) i * n / maxPoints);
+        }
+        if (maxPoints > 1) {
+            picked[maxPoints - 1] = n - 1;
+        }
+        return picked;
+    }
+}
@@ -0,0 +1,225 @@
+package lidar.infrastructure;
+
+/**
+ * Bit-level block encoding from Facebook's Gorilla paper: timestamps as
+ * delta-of-delta with variable-size buckets, values as the XOR with the previous
+ * value, storing only the meaningful bits. A sample that repeats the previous
+ * interval and value costs two bits.
+ *
+ * The timestamp buckets are sized for nanosecond timestamps taken from a wall
+ * clock, where a steady poll still jitters by micro- to milliseconds.
+ */
+final class Gorilla {
+
+    private Gorilla() {
+    }
+
+    /**
+     * Appends samples to a growing bit stream. Bits past the last published
+     * sample may change, bits before it never do, so a reader that knows the
+     * sample count can decode concurrently.
+     */
+    static final class Writer {
+        private volatile long[] words = new long[16];
+        private long bitPos;
+
+        private int count;
+        private long prevTime;
+        private long prevDelta;
+        private long prevValue;
+        private int prevLeading = -1;
+        private int prevTrailing;
+
+        long[] words() {
+            return words;
+        }
+
+        long sizeInBits() {
+            return bitPos;
+        }
+
+        void append(long time, long value) {
+            if (count == 0) {
+                writeBits(time, 64);
+                writeBits(value, 64);
+            } else {
+                writeTime(time);
+                writeValue(value);
+            }
+            prevTime = time;
+            prevValue = value;
+            count++;
+        }
+
+        /**
+         * Copy of the stream trimmed to the bits written so far.
+         */
+        long[] toArray() {
+            long[] trimmed = new long[(int) ((bitPos + 63) >>> 6)];
+            System.arraycopy(words, 0, trimmed, 0, trimmed.length);
+            return trimmed;
+        }
+
+        private void writeTime(long time) {
+            long delta = time - prevTime;
+            long dod = delta - prevDelta;
+            prevDelta = delta;
+            if (dod == 0) {
+                writeBits(0, 1);
+            } else if (fits(dod, 20)) {
+                writeBits(0b10, 2);
+                writeBits(dod, 20);
+            } else if (fits(dod, 27)) {
+                writeBits(0b110, 3);
+                writeBits(dod, 27);
+            } else if (fits(dod, 34)) {
+                writeBits(0b1110, 4);
+                writeBits(dod, 34);
+            } else {
+                writeBits(0b1111, 4);
+                writeBits(dod, 64);
+            }
+        }
+
+        private void writeValue(long value) {
+            long xor = value ^ prevValue;
+            if (xor == 0) {
+                writeBits(0, 1);
+                return;
+            }
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                // Meaningful bits fit the previous window
+                writeBits(0b10, 2);
+                writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                writeBits(0b11, 2);
+                writeBits(leading, 5);
+                writeBits(meaningful - 1, 6);
+                writeBits(xor >>> trailing, meaningful);
+                prevLeading = leading;
+                prevTrailing = trailing;
+            }
+        }
+
+        private void writeBits(long value, int bits) {
+            int remaining = bits;
+            while (remaining > 0) {
+                int index = (int) (bitPos >>> 6);
+                if (index == words.length) {
+                    long[] grown = new long[words.length * 2];
+                    System.arraycopy(words, 0, grown, 0, words.length);
+                    words = grown;
+                }
+                int free = 64 - (int) (bitPos & 63);
+                int take = Math.min(free, remaining);
+                long chunk = (value >>> (remaining - take)) & mask(take);
+                words[index] |= chunk << (free - take);
+                bitPos += take;
+                remaining -= take;
+            }
+        }
+    }
+
+    /**
+     * Streams the samples of a block back out; call next() before reading time()
+     * and value().
+     */
+    static final class Reader {
+        private final long[] words;
+        private final int count;
+        private long bitPos;
+
+        private int index;
+        private long time;
+        private long delta;
+        private long value;
+        private int leading;
+        private int trailing;
+
+        Reader(long[] words, int count) {
+            this.words = words;
+            this.count = count;
+        }
+
+        boolean next() {
+            if (index >= count)
+                return false;
+            if (index == 0) {
+                time = readBits(64);
+                value = readBits(64);
+            } else {
+                readTime();
+                readValue();
+            }
+            index++;
+            return true;
+        }
+
+        long time() {
+            return time;
+        }
+
+        long value() {
+            return value;
+        }
+
+        private void readTime() {
+            long dod;
+            if (readBits(1) == 0) {
+                dod = 0;
+            } else if (readBits(1) == 0) {
+                dod = signed(readBits(20), 20);
+            } else if (readBits(1) == 0) {
+                dod = signed(readBits(27), 27);
+            } else if (readBits(1) == 0) {
+                dod = signed(readBits(34), 34);
+            } else {
+                dod = readBits(64);
+            }
+            delta += dod;
+            time += delta;
+        }
+
+        private void readValue() {
+            if (readBits(1) == 0)
+                return;
+            if (readBits(1) == 1) {
+                leading = (int) readBits(5);
+                int meaningful = (int) readBits(6) + 1;
+                trailing = 64 - leading - meaningful;
+            }
+            value ^= readBits(64 - leading - trailing) << trailing;
+        }
+
+        private long readBits(int bits) {
+            long result = 0;
+            int remaining = bits;
+            while (remaining > 0) {
+                int index = (int) (bitPos >>> 6);
+                int available = 64 - (int) (bitPos & 63);
+                int take = Math.min(available, remaining);
+                long chunk = (words[index] >>> (available - take)) & mask(take);
+                result = take == 64 ? chunk : (result << take) | chunk;
+                bitPos += take;
+                remaining -= take;
+            }
+            return result;
+        }
+    }
+
+    private static boolean fits(long value, int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    private static long signed(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    private static long mask(int bits) {
+        return bits == 64 ? -1L : (1L << bits) - 1;
+    }
+}
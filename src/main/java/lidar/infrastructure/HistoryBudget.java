@@ -0,0 +1,75 @@
+package lidar.infrastructure;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memory budget for MemoryHistoryRepo. Attributes with a fixed quota get exactly
+ * that; the rest of the total is shared among the other attributes in proportion
+ * to their weight (1 unless set). When an attribute is over its share, its oldest
+ * samples are evicted on its next append, so the total stays within budget
+ * without one attribute's writer touching another attribute's history.
+ *
+ * Configure it before handing it to the repo.
+ */
+public final class HistoryBudget {
+
+    private final long totalBytes;
+    private final Map<String, Long> quotas = new HashMap<>();
+    private final Map<String, Double> weights = new HashMap<>();
+
+    public HistoryBudget(long totalBytes) {
+        if (totalBytes <= 0)
+            throw new IllegalArgumentException("Budget must be positive: " + totalBytes);
+        this.totalBytes = totalBytes;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Fixed number of bytes for one attribute, taken off the shared total.
+     */
+    public HistoryBudget quota(String attr, long bytes) {
+        quotas.put(attr, bytes);
+        return this;
+    }
+
+    /**
+     * Relative share of the remaining budget, e.g. 0.1 for a chatty string
+     * attribute that should not crowd out the numeric channels.
+     */
+    public HistoryBudget weight(String attr, double weight) {
+        if (!(weight > 0))
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        weights.put(attr, weight);
+        return this;
+    }
+
+    /**
+     * Byte allowance of each of the given attributes.
+     */
+    Map<String, Long> allocate(Collection<String> attrs) {
+        long shared = totalBytes;
+        double totalWeight = 0;
+        for (String attr : attrs) {
+            Long quota = quotas.get(attr);
+            if (quota != null) {
+                shared -= quota;
+            } else {
+                totalWeight += weights.getOrDefault(attr, 1.0);
+            }
+        }
+        shared = Math.max(0, shared);
+
+        Map<String, Long> allocation = new HashMap<>();
+        for (String attr : attrs) {
+            Long quota = quotas.get(attr);
+            allocation.put(attr, quota != null ? quota
+                    : (long) (shared * weights.getOrDefault(attr, 1.0) / totalWeight));
+        }
+        return allocation;
+    }
+}
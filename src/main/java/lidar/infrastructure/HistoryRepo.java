@@ -0,0 +1,71 @@
+package lidar.infrastructure;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Append/query surface shared by the in-memory and the disk-backed history.
+ * Each attribute is appended from one thread at a time; queries may run on any
+ * thread and never block the writer.
+ */
+public interface HistoryRepo {
+
+    void append(String attr, Object value, Instant timestamp);
+
+    /**
+     * Consistent columnar copy of the retained samples with from <= timestamp <= to.
+     */
+    HistorySnapshot getSnapshot(String attr, Instant from, Instant to);
+
+    /**
+     * Like getSnapshot, but also includes the newest sample before from, i.e. the
+     * value in effect at from, if it is still retained. Needed to draw a step
+     * function when samples are only stored on change.
+     */
+    HistorySnapshot getSnapshotWithPrevious(String attr, Instant from, Instant to);
+
+    /**
+     * Min, max, mean, standard deviation and last change time over the retention
+     * window, or null for an unknown attribute.
+     */
+    HistoryStats getStats(String attr);
+
+    /**
+     * Cheap change check: returns a number that grows with every appended sample,
+     * or 0 for an unknown attribute.
+     */
+    long getVersion(String attr);
+
+    /**
+     * How long samples are kept, or null when they are never dropped by age.
+     */
+    default Duration getRetention() {
+        return null;
+    }
+
+    default HistorySnapshot getSnapshot(String attr) {
+        return getSnapshot(attr, Instant.MIN, Instant.MAX);
+    }
+
+    /**
+     * Copies the retained samples into entries; values come back boxed as the
+     * attribute's type.
+     */
+    default List<MemoryHistoryRepo.HistoryEntry> getHistory(String attr) {
+        return getSnapshot(attr).toEntries();
+    }
+
+    default List<MemoryHistoryRepo.HistoryEntry> getHistory(String attr, Instant from, Instant to) {
+        return getSnapshot(attr, from, to).toEntries();
+    }
+
+    /**
+     * At most maxPoints samples of the range, chosen with Largest-Triangle-Three-
+     * Buckets for numeric attributes so the visible shape of the series is kept.
+     */
+    default List<MemoryHistoryRepo.HistoryEntry> getDownsampled(String attr, Instant from, Instant to,
+            int maxPoints) {
+        return Downsampling.downsample(getSnapshot(attr, from, to), maxPoints).toEntries();
+    }
+}
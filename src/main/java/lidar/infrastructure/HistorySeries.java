@@ -0,0 +1,429 @@
+package lidar.infrastructure;
+
+import java.time.Instant;
+
+/**
+ * Time-ordered samples of one attribute in a growable ring buffer. Timestamps are
+ * epoch nanoseconds in a long[]; numeric and boolean values live in a primitive
+ * column of their own, so a double sample costs 16 bytes instead of an entry, an
+ * Instant and a box. Only values that do not fit a primitive column are kept as
+ * objects.
+ *
+ * There is one writer per series (append and pruneBefore) and any number of
+ * readers. Samples are numbered by a running sequence; the writer fills a slot
+ * and then publishes it by advancing the volatile tail. Readers copy without
+ * locking and retry if the writer wrapped over the slots they were copying.
+ */
+final class HistorySeries implements TimeSeries {
+
+    enum Kind {
+        DOUBLE, LONG, BOOLEAN, OBJECT
+    }
+
+    private static final int MIN_CAPACITY = 16;
+
+    // Arrays are replaced, never resized in place, so a reader holding an old
+    // buffer keeps seeing the samples it had when it was current
+    private static final class Buffer {
+        final long[] times;
+        final double[] doubles;
+        final long[] longs;
+        final boolean[] booleans;
+        final Object[] objects;
+        final int mask;
+
+        Buffer(Kind kind, int capacity) {
+            times = new long[capacity];
+            doubles = kind == Kind.DOUBLE ? new double[capacity] : null;
+            longs = kind == Kind.LONG ? new long[capacity] : null;
+            booleans = kind == Kind.BOOLEAN ? new boolean[capacity] : null;
+            objects = kind == Kind.OBJECT ? new Object[capacity] : null;
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return times.length;
+        }
+    }
+
+    private final Kind kind;
+    private final Class<?> type;
+
+    private volatile Buffer buffer;
+    // Sequence of the oldest retained sample and of the next sample to be written
+    private volatile long head;
+    private volatile long tail;
+    // Estimated size of the retained object values; written by the writer only
+    private volatile long objectBytes;
+
+    private final RollingStats stats = new RollingStats();
+    // Writer only; the cutoff moves once per RetentionClock tick
+    private long lastCutoff = Long.MIN_VALUE;
+
+    /**
+     * @param type boxed type the values are returned as (Double, Integer, Long,
+     *             Boolean); anything else is stored as plain objects
+     */
+    HistorySeries(Class<?> type) {
+        this.type = type;
+        this.kind = kindOf(type);
+        this.buffer = new Buffer(kind, MIN_CAPACITY);
+    }
+
+    static Kind kindOf(Class<?> type) {
+        if (type == Double.class || type == Float.class)
+            return Kind.DOUBLE;
+        if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class)
+            return Kind.LONG;
+        if (type == Boolean.class)
+            return Kind.BOOLEAN;
+        return Kind.OBJECT;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * Aggregates over the retained samples, without scanning them.
+     */
+    @Override
+    public HistoryStats getStats() {
+        return stats.read();
+    }
+
+    /**
+     * Sequence number of the next sample; changes whenever a sample is appended.
+     */
+    @Override
+    public long getVersion() {
+        return tail;
+    }
+
+    /**
+     * Appends a sample; values that cannot be converted to the column type are
+     * dropped, the same way LIDAR ignores them. Returns whether it was stored.
+     * Writer thread only.
+     */
+    @Override
+    public boolean append(long epochNanos, Object value) {
+        try {
+            switch (kind) {
+                case DOUBLE: {
+                    double v = toDouble(value);
+                    Buffer b = bufferForAppend();
+                    int slot = (int) (tail & b.mask);
+                    b.times[slot] = epochNanos;
+                    b.doubles[slot] = v;
+                    stats.add(tail, epochNanos, v, null);
+                    break;
+                }
+                case LONG: {
+                    long v = toLong(value);
+                    Buffer b = bufferForAppend();
+                    int slot = (int) (tail & b.mask);
+                    b.times[slot] = epochNanos;
+                    b.longs[slot] = v;
+                    stats.add(tail, epochNanos, v, null);
+                    break;
+                }
+                case BOOLEAN: {
+                    boolean v = toBoolean(value);
+                    Buffer b = bufferForAppend();
+                    int slot = (int) (tail & b.mask);
+                    b.times[slot] = epochNanos;
+                    b.booleans[slot] = v;
+                    stats.add(tail, epochNanos, Double.NaN, v);
+                    break;
+                }
+                default: {
+                    Buffer b = bufferForAppend();
+                    int slot = (int) (tail & b.mask);
+                    b.times[slot] = epochNanos;
+                    b.objects[slot] = value;
+                    objectBytes = objectBytes + estimateBytes(value);
+                    stats.add(tail, epochNanos, Double.NaN, value);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // Publishes the slot written above
+        tail = tail + 1;
+        return true;
+    }
+
+    /**
+     * Drops samples older than the cutoff from the head of the buffer; returns at
+     * once if the cutoff did not move since the last call. Writer thread only.
+     */
+    @Override
+    public void pruneBefore(long cutoffNanos) {
+        if (cutoffNanos == lastCutoff)
+            return;
+        lastCutoff = cutoffNanos;
+        Buffer b = buffer;
+        long oldHead = head;
+        long t = tail;
+        long h = oldHead;
+        while (h < t && b.times[(int) (h & b.mask)] < cutoffNanos) {
+            h++;
+        }
+        dropHead(b, oldHead, h, t);
+    }
+
+    /**
+     * Drops the oldest samples until sizeInBytes() is at most maxBytes. Writer
+     * thread only.
+     */
+    @Override
+    public void evictOldest(long maxBytes) {
+        long usage = sizeInBytes();
+        if (usage <= maxBytes)
+            return;
+        Buffer b = buffer;
+        long oldHead = head;
+        long t = tail;
+        long h = oldHead;
+        while (h < t && usage > maxBytes) {
+            usage -= sampleBytes() + (b.objects != null ? estimateBytes(b.objects[(int) (h & b.mask)]) : 0);
+            h++;
+        }
+        dropHead(b, oldHead, h, t);
+    }
+
+    /**
+     * Drops the oldest samples beyond the newest maxSamples. Writer thread only.
+     */
+    @Override
+    public void keepNewest(int maxSamples) {
+        long h = head;
+        long t = tail;
+        if (t - h > maxSamples) {
+            dropHead(buffer, h, t - Math.max(0, maxSamples), t);
+        }
+    }
+
+    /**
+     * Retained samples at their column width plus the estimated size of object
+     * values. The ring buffer behind them may be up to twice as large, since it
+     * grows by doubling.
+     */
+    @Override
+    public long sizeInBytes() {
+        return (tail - head) * sampleBytes() + objectBytes;
+    }
+
+    private int sampleBytes() {
+        return kind == Kind.BOOLEAN ? 9 : 16;
+    }
+
+    private void dropHead(Buffer b, long oldHead, long h, long t) {
+        if (h == oldHead)
+            return;
+
+        for (long seq = oldHead; seq < h; seq++) {
+            int slot = (int) (seq & b.mask);
+            double v = b.doubles != null ? b.doubles[slot] : b.longs != null ? b.longs[slot] : Double.NaN;
+            stats.remove(seq + 1, v);
+        }
+
+        // Head moves first, so a reader still copying the cleared slots notices it
+        head = h;
+        if (b.objects != null) {
+            long freed = 0;
+            for (long seq = oldHead; seq < h; seq++) {
+                int slot = (int) (seq & b.mask);
+                freed += estimateBytes(b.objects[slot]);
+                b.objects[slot] = null;
+            }
+            objectBytes = objectBytes - freed;
+        }
+
+        // Give memory back after a burst, keeping room to grow again
+        if (b.capacity() > MIN_CAPACITY && t - h <= b.capacity() / 4) {
+            buffer = copyOf(b, h, t, Math.max(MIN_CAPACITY, b.capacity() / 2));
+        }
+    }
+
+    /**
+     * Consistent copy of the samples with fromNanos <= time <= toNanos, taken
+     * without blocking the writer. The range is found by binary search, relying
+     * on samples being appended in time order.
+     */
+    @Override
+    public HistorySnapshot snapshot(long fromNanos, long toNanos) {
+        while (true) {
+            Buffer b = buffer;
+            long t = tail;
+            long h = head;
+            if (b != buffer)
+                continue; // Buffer was replaced between the reads; try again
+
+            long first = lowerBound(b, h, t, fromNanos);
+            long end = toNanos == Long.MAX_VALUE ? t : lowerBound(b, first, t, toNanos + 1);
+            int n = (int) Math.max(0, end - first);
+
+            long[] times = new long[n];
+            double[] doubles = kind == Kind.DOUBLE ? new double[n] : null;
+            long[] longs = kind == Kind.LONG ? new long[n] : null;
+            boolean[] booleans = kind == Kind.BOOLEAN ? new boolean[n] : null;
+            Object[] objects = kind == Kind.OBJECT ? new Object[n] : null;
+
+            for (int i = 0; i < n; i++) {
+                int slot = (int) ((first + i) & b.mask);
+                times[i] = b.times[slot];
+                switch (kind) {
+                    case DOUBLE:
+                        doubles[i] = b.doubles[slot];
+                        break;
+                    case LONG:
+                        longs[i] = b.longs[slot];
+                        break;
+                    case BOOLEAN:
+                        booleans[i] = b.booleans[slot];
+                        break;
+                    default:
+                        objects[i] = b.objects[slot];
+                }
+            }
+
+            // The writer only reuses the slot of seq when writing seq + capacity, and
+            // only clears objects below the published head
+            if (tail - h >= b.capacity() || (objects != null && head > first))
+                continue;
+
+            return new HistorySnapshot(type, n, times, doubles, longs, booleans, objects, t);
+        }
+    }
+
+    @Override
+    public long lastTimeBefore(long nanos) {
+        while (true) {
+            Buffer b = buffer;
+            long t = tail;
+            long h = head;
+            if (b != buffer)
+                continue;
+            long seq = lowerBound(b, h, t, nanos) - 1;
+            long time = seq >= h ? b.times[(int) (seq & b.mask)] : Long.MIN_VALUE;
+            if (tail - h >= b.capacity())
+                continue;
+            return time;
+        }
+    }
+
+    // First sequence in [from, to) whose time is >= nanos
+    private static long lowerBound(Buffer b, long from, long to, long nanos) {
+        long lo = from;
+        long hi = to;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (b.times[(int) (mid & b.mask)] < nanos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private Buffer bufferForAppend() {
+        Buffer b = buffer;
+        if (tail - head == b.capacity()) {
+            b = copyOf(b, head, tail, b.capacity() * 2);
+            buffer = b;
+        }
+        return b;
+    }
+
+    // Capacity stays a power of two so slots wrap with a mask; sequence numbers
+    // keep their meaning, only the slots move
+    private Buffer copyOf(Buffer from, long h, long t, int capacity) {
+        Buffer to = new Buffer(kind, capacity);
+        for (long seq = h; seq < t; seq++) {
+            int src = (int) (seq & from.mask);
+            int dst = (int) (seq & to.mask);
+            to.times[dst] = from.times[src];
+            switch (kind) {
+                case DOUBLE:
+                    to.doubles[dst] = from.doubles[src];
+                    break;
+                case LONG:
+                    to.longs[dst] = from.longs[src];
+                    break;
+                case BOOLEAN:
+                    to.booleans[dst] = from.booleans[src];
+                    break;
+                default:
+                    to.objects[dst] = from.objects[src];
+            }
+        }
+        return to;
+    }
+
+    // Conversions mirror LIDAR's convertTo* helpers; unusable values throw
+    // IllegalArgumentException (NumberFormatException for bad strings)
+    static double toDouble(Object value) {
+        if (value instanceof Number)
+            return ((Number) value).doubleValue();
+        if (value instanceof String)
+            return Double.parseDouble((String) value);
+        throw new IllegalArgumentException("Not a number: " + value);
+    }
+
+    static long toLong(Object value) {
+        if (value instanceof Number)
+            return ((Number) value).longValue();
+        if (value instanceof String)
+            return Long.parseLong((String) value);
+        throw new IllegalArgumentException("Not an integer: " + value);
+    }
+
+    static boolean toBoolean(Object value) {
+        if (value instanceof Boolean)
+            return (Boolean) value;
+        if (value instanceof Number)
+            return ((Number) value).intValue() != 0;
+        if (value instanceof String) {
+            String str = ((String) value).trim().toLowerCase();
+            return str.equals("true") || str.equals("1") || str.equals("yes");
+        }
+        throw new IllegalArgumentException("Not a boolean: " + value);
+    }
+
+    /**
+     * Rough heap size of a value kept as an object, for memory budgets.
+     */
+    static long estimateBytes(Object value) {
+        if (value instanceof String)
+            return 40 + ((String) value).length();
+        if (value instanceof double[])
+            return 16 + 8L * ((double[]) value).length;
+        if (value instanceof float[])
+            return 16 + 4L * ((float[]) value).length;
+        return value == null ? 0 : 16;
+    }
+
+    // Saturates, so Instant.MIN/MAX can be used as open range bounds
+    static long toEpochNanos(Instant instant) {
+        try {
+            return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+        } catch (ArithmeticException e) {
+            return instant.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    static Instant toInstant(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+                Math.floorMod(epochNanos, 1_000_000_000L));
+    }
+}
@@ -0,0 +1,189 @@
+package lidar.infrastructure;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, consistent copy of one attribute's history in columnar form.
+ * Timestamps are epoch nanoseconds; use the accessor matching the attribute's
+ * type (getDouble for Double, getLong for Integer, getBoolean for Boolean) to
+ * read values without boxing, or getValue for any type.
+ */
+public final class HistorySnapshot {
+    static final HistorySnapshot EMPTY = new HistorySnapshot(Object.class, 0, new long[0], null, null, null,
+            new Object[0], 0);
+
+    private final Class<?> type;
+    private final int size;
+    private final long[] times;
+    private final double[] doubles;
+    private final long[] longs;
+    private final boolean[] booleans;
+    private final Object[] objects;
+    private final long version;
+
+    HistorySnapshot(Class<?> type, int size, long[] times, double[] doubles, long[] longs, boolean[] booleans,
+            Object[] objects, long version) {
+        this.type = type;
+        this.size = size;
+        this.times = times;
+        this.doubles = doubles;
+        this.longs = longs;
+        this.booleans = booleans;
+        this.objects = objects;
+        this.version = version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Number of samples ever appended to the attribute when the snapshot was
+     * taken; equal versions mean nothing new arrived.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public long getTimeNanos(int index) {
+        checkIndex(index);
+        return times[index];
+    }
+
+    public Instant getTimestamp(int index) {
+        return HistorySeries.toInstant(getTimeNanos(index));
+    }
+
+    public double getDouble(int index) {
+        checkIndex(index);
+        if (doubles != null)
+            return doubles[index];
+        if (longs != null)
+            return longs[index];
+        throw new IllegalStateException("Attribute history is not numeric");
+    }
+
+    public long getLong(int index) {
+        checkIndex(index);
+        if (longs != null)
+            return longs[index];
+        if (doubles != null)
+            return (long) doubles[index];
+        throw new IllegalStateException("Attribute history is not numeric");
+    }
+
+    public boolean getBoolean(int index) {
+        checkIndex(index);
+        if (booleans == null)
+            throw new IllegalStateException("Attribute history is not boolean");
+        return booleans[index];
+    }
+
+    /**
+     * Value boxed as the attribute's type.
+     */
+    public Object getValue(int index) {
+        checkIndex(index);
+        if (doubles != null)
+            return type == Float.class ? (Object) (float) doubles[index] : (Object) doubles[index];
+        if (longs != null) {
+            long v = longs[index];
+            if (type == Integer.class)
+                return (int) v;
+            if (type == Short.class)
+                return (short) v;
+            if (type == Byte.class)
+                return (byte) v;
+            return v;
+        }
+        if (booleans != null)
+            return booleans[index];
+        return objects[index];
+    }
+
+    /**
+     * True for Double and Integer style attributes, which getDouble can read.
+     */
+    public boolean isNumeric() {
+        return doubles != null || longs != null;
+    }
+
+    // Subset at the given ascending indices, same type and version
+    HistorySnapshot select(int[] indices) {
+        int n = indices.length;
+        long[] t = new long[n];
+        double[] d = doubles != null ? new double[n] : null;
+        long[] l = longs != null ? new long[n] : null;
+        boolean[] b = booleans != null ? new boolean[n] : null;
+        Object[] o = objects != null ? new Object[n] : null;
+        for (int i = 0; i < n; i++) {
+            int src = indices[i];
+            checkIndex(src);
+            t[i] = times[src];
+            if (d != null)
+                d[i] = doubles[src];
+            if (l != null)
+                l[i] = longs[src];
+            if (b != null)
+                b[i] = booleans[src];
+            if (o != null)
+                o[i] = objects[src];
+        }
+        return new HistorySnapshot(type, n, t, d, l, b, o, version);
+    }
+
+    /**
+     * Copy read as a step function over [fromNanos, endNanos]: a first sample older
+     * than fromNanos is moved to fromNanos (or dropped if another sample is at
+     * fromNanos), and the last value is repeated at endNanos if that is later than
+     * the last sample.
+     */
+    HistorySnapshot stepped(long fromNanos, long endNanos) {
+        if (size == 0)
+            return this;
+        int skip = size > 1 && times[0] < fromNanos && times[1] <= fromNanos ? 1 : 0;
+        boolean extend = endNanos > times[size - 1];
+        int last = size - 1 - skip;
+        int n = extend ? last + 2 : last + 1;
+        long[] t = Arrays.copyOfRange(times, skip, skip + n);
+        double[] d = doubles != null ? Arrays.copyOfRange(doubles, skip, skip + n) : null;
+        long[] l = longs != null ? Arrays.copyOfRange(longs, skip, skip + n) : null;
+        boolean[] b = booleans != null ? Arrays.copyOfRange(booleans, skip, skip + n) : null;
+        Object[] o = objects != null ? Arrays.copyOfRange(objects, skip, skip + n) : null;
+        if (t[0] < fromNanos) {
+            t[0] = fromNanos;
+        }
+        if (extend) {
+            t[n - 1] = endNanos;
+            if (d != null)
+                d[n - 1] = d[last];
+            if (l != null)
+                l[n - 1] = l[last];
+            if (b != null)
+                b[n - 1] = b[last];
+            if (o != null)
+                o[n - 1] = o[last];
+        }
+        return new HistorySnapshot(type, n, t, d, l, b, o, version);
+    }
+
+    public List<MemoryHistoryRepo.HistoryEntry> toEntries() {
+        List<MemoryHistoryRepo.HistoryEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new MemoryHistoryRepo.HistoryEntry(getTimestamp(i), getValue(i)));
+        }
+        return entries;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+}
@@ -0,0 +1,69 @@
+package lidar.infrastructure;
+
+import java.time.Instant;
+
+/**
+ * Rolling aggregates of one attribute over the retained history. Numeric values
+ * are NaN when the attribute is not numeric or has no samples; the standard
+ * deviation is the population one.
+ */
+public final class HistoryStats {
+    private final long count;
+    private final double min;
+    private final double max;
+    private final double mean;
+    private final double stdDev;
+    private final Instant lastTimestamp;
+    private final Instant lastChange;
+
+    HistoryStats(long count, double min, double max, double mean, double stdDev, Instant lastTimestamp,
+            Instant lastChange) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.stdDev = stdDev;
+        this.lastTimestamp = lastTimestamp;
+        this.lastChange = lastChange;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStdDev() {
+        return stdDev;
+    }
+
+    /**
+     * Timestamp of the newest sample, or null if none was recorded.
+     */
+    public Instant getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Timestamp of the newest sample whose value differed from the one before it.
+     */
+    public Instant getLastChange() {
+        return lastChange;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " min=" + min + " max=" + max + " mean=" + mean + " stdDev=" + stdDev
+                + " lastChange=" + lastChange;
+    }
+}
@@ -0,0 +1,216 @@
+package lidar.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Disk-backed history with the same append/query surface as MemoryHistoryRepo,
+ * for retention measured in days. Each attribute is a directory of memory-mapped
+ * segment files with fixed-width records, so the heap does not grow with the
+ * retained data and queries read straight from the mapped pages. Everything that
+ * was fully written before a crash or restart is recovered on open.
+ *
+ * Expired segments are deleted by RetentionClock's thread after every tick, so
+ * attributes that are no longer written give their files back as well.
+ */
+public class MappedHistoryRepo implements HistoryRepo, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MappedHistoryRepo.class);
+
+    /** 64k records of 24 bytes, i.e. 1.5 MiB per segment file. */
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 65536;
+    private static final String META_FILE = "meta.properties";
+
+    private final Path directory;
+    private final Duration retention;
+    private final Function<String, Class<?>> typeResolver;
+    private final int recordsPerSegment;
+    private final Map<String, MappedSeries> store = new ConcurrentHashMap<>();
+
+    public MappedHistoryRepo(Path directory, Duration retention, Function<String, Class<?>> typeResolver)
+            throws IOException {
+        this(directory, retention, typeResolver, DEFAULT_RECORDS_PER_SEGMENT);
+    }
+
+    public MappedHistoryRepo(Path directory, Duration retention, Function<String, Class<?>> typeResolver,
+            int recordsPerSegment) throws IOException {
+        this.directory = directory;
+        this.retention = retention;
+        this.typeResolver = typeResolver;
+        this.recordsPerSegment = recordsPerSegment;
+        Files.createDirectories(directory);
+        recover();
+        RetentionClock.register(this, MappedHistoryRepo::pruneExpired);
+    }
+
+    @Override
+    public void append(String attr, Object value, Instant timestamp) {
+        // Records are fixed-width, so array values such as range profile frames
+        // are only kept by the in-memory repo
+        if (value == null || value.getClass().isArray())
+            return;
+        try {
+            MappedSeries series = store.get(attr);
+            if (series == null) {
+                series = store.computeIfAbsent(attr, k -> createSeries(k, value));
+            }
+            series.append(HistorySeries.toEpochNanos(timestamp), value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write history of " + attr, e);
+        }
+    }
+
+    /**
+     * Retention is enforced per segment, so up to one segment of samples older
+     * than the window may still be on disk; they are left out here.
+     */
+    @Override
+    public HistorySnapshot getSnapshot(String attr, Instant from, Instant to) {
+        MappedSeries series = store.get(attr);
+        if (series == null) {
+            return HistorySnapshot.EMPTY;
+        }
+        return series.snapshot(Math.max(HistorySeries.toEpochNanos(from), cutoffNanos()),
+                HistorySeries.toEpochNanos(to));
+    }
+
+    @Override
+    public HistorySnapshot getSnapshotWithPrevious(String attr, Instant from, Instant to) {
+        MappedSeries series = store.get(attr);
+        if (series == null) {
+            return HistorySnapshot.EMPTY;
+        }
+        long fromNanos = HistorySeries.toEpochNanos(from);
+        long previous = series.lastTimeBefore(fromNanos);
+        return series.snapshot(Math.max(previous != Long.MIN_VALUE ? previous : fromNanos, cutoffNanos()),
+                HistorySeries.toEpochNanos(to));
+    }
+
+    /**
+     * Covers the samples in the retained segments.
+     */
+    @Override
+    public HistoryStats getStats(String attr) {
+        MappedSeries series = store.get(attr);
+        return series != null ? series.getStats() : null;
+    }
+
+    @Override
+    public Duration getRetention() {
+        return retention;
+    }
+
+    @Override
+    public long getVersion(String attr) {
+        MappedSeries series = store.get(attr);
+        return series != null ? series.getVersion() : 0;
+    }
+
+    /**
+     * Forces the mapped segments to disk. Appends are otherwise written back by the
+     * OS, and a segment is forced when it is full.
+     */
+    public void flush() {
+        for (MappedSeries series : store.values()) {
+            series.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (MappedSeries series : store.values()) {
+            series.close();
+        }
+    }
+
+    private long cutoffNanos() {
+        return RetentionClock.cutoffNanos(retention.toNanos());
+    }
+
+    // On the clock thread after every tick; a closed series ignores it
+    private void pruneExpired(long nowNanos) {
+        long cutoff = nowNanos - retention.toNanos();
+        for (Map.Entry<String, MappedSeries> entry : store.entrySet()) {
+            try {
+                entry.getValue().pruneBefore(cutoff);
+            } catch (IOException e) {
+                logger.warn("Cannot prune history of {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private MappedSeries createSeries(String attr, Object firstValue) {
+        Class<?> type = typeResolver.apply(attr);
+        if (type == null) {
+            type = firstValue.getClass();
+        }
+        Path seriesDir = directory.resolve(directoryName(attr));
+        try {
+            Files.createDirectories(seriesDir);
+            Properties meta = new Properties();
+            meta.setProperty("attr", attr);
+            meta.setProperty("type", type.getName());
+            try (Writer writer = Files.newBufferedWriter(seriesDir.resolve(META_FILE), StandardCharsets.UTF_8)) {
+                meta.store(writer, null);
+            }
+            return new MappedSeries(seriesDir, type, recordsPerSegment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create history of " + attr, e);
+        }
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> dirs = Files.list(directory)) {
+            for (Path seriesDir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                Path metaFile = seriesDir.resolve(META_FILE);
+                if (!Files.exists(metaFile))
+                    continue;
+
+                Properties meta = new Properties();
+                try (Reader reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+                    meta.load(reader);
+                }
+                String attr = meta.getProperty("attr");
+                Class<?> type;
+                try {
+                    type = Class.forName(meta.getProperty("type"));
+                } catch (ClassNotFoundException | NullPointerException e) {
+                    logger.warn("Skipping history in {}: unknown type", seriesDir);
+                    continue;
+                }
+                MappedSeries series = new MappedSeries(seriesDir, type, recordsPerSegment);
+                series.pruneBefore(cutoffNanos());
+                store.put(attr, series);
+            }
+        }
+        logger.info("Recovered history of {} attributes from {}", store.size(), directory);
+    }
+
+    // Attribute names are used as directory names; anything unusual is escaped
+    private static String directoryName(String attr) {
+        StringBuilder name = new StringBuilder(attr.length());
+        for (char c : attr.toCharArray()) {
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-') {
+                name.append(c);
+            } else {
+                name.append('%').append(String.format("%04x", (int) c));
+            }
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,549 @@
+package lidar.infrastructure;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * One attribute of a MappedHistoryRepo: a directory of fixed-size segment files,
+ * each a memory-mapped array of 24-byte records (time nanos, value bits, check).
+ * Segments are named after the sequence number of their first record; the first
+ * timestamp of every segment is the time index used to find a range. String
+ * values are stored as ids into an append-only dictionary file kept next to each
+ * segment and deleted with it, so distinct strings are dropped with their records.
+ *
+ * Single writer, many readers: a record is fully written before the segment's
+ * volatile count is advanced past it. The retention clock prunes under the same
+ * lock as append, so the two never change the segment list at once.
+ */
+final class MappedSeries implements Closeable {
+
+    static final int RECORD_BYTES = 24;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String DICTIONARY_SUFFIX = ".dict";
+    private static final long CHECK_MAGIC = 0x4C494441524A5631L;
+
+    private static final class Segment {
+        final Path path;
+        final long firstSeq;
+        final int capacity;
+        final MappedByteBuffer buffer;
+        // String attributes only
+        SegmentDictionary dictionary;
+        volatile int count;
+
+        Segment(Path path, long firstSeq, int capacity, MappedByteBuffer buffer) {
+            this.path = path;
+            this.firstSeq = firstSeq;
+            this.capacity = capacity;
+            this.buffer = buffer;
+        }
+
+        long timeAt(int index) {
+            return buffer.getLong(index * RECORD_BYTES);
+        }
+
+        long valueAt(int index) {
+            return buffer.getLong(index * RECORD_BYTES + 8);
+        }
+
+        boolean isValid(int index) {
+            int offset = index * RECORD_BYTES;
+            return buffer.getLong(offset + 16) == check(buffer.getLong(offset), buffer.getLong(offset + 8));
+        }
+
+        // First index in [from, to) whose time is >= nanos
+        int lowerBound(int from, int to, long nanos) {
+            int lo = from;
+            int hi = to;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (timeAt(mid) < nanos) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * Strings referenced by one segment, by id. The file is a sequence of
+     * length-prefixed UTF-8 entries with a CRC each; only the segment being
+     * written keeps it open.
+     */
+    private static final class SegmentDictionary {
+        final Path path;
+        // Readers see an entry through the segment count published after it
+        private volatile String[] strings = new String[16];
+        private int size;
+        private Map<String, Integer> ids = new HashMap<>();
+        private FileChannel channel;
+
+        private SegmentDictionary(Path path) {
+            this.path = path;
+        }
+
+        String get(long id) {
+            String[] current = strings;
+            return id >= 0 && id < current.length ? current[(int) id] : null;
+        }
+
+        // Writer thread only
+        int size() {
+            return size;
+        }
+
+        static SegmentDictionary open(Path path) throws IOException {
+            SegmentDictionary dictionary = new SegmentDictionary(path);
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            dictionary.channel = channel;
+            long size = channel.size();
+            long valid = 0;
+            // Streamed, so the file size never decides the size of a buffer
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            try {
+                while (size - valid >= 8) {
+                    int length = in.readInt();
+                    if (length < 0 || length > size - valid - 8)
+                        break;
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    if (in.readInt() != crc(bytes))
+                        break;
+                    dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+                    valid += 8 + length;
+                }
+            } catch (EOFException e) {
+                // Torn last entry
+            }
+            // Drop a torn last entry so the next one is appended at a clean offset
+            channel.truncate(valid);
+            channel.position(valid);
+            return dictionary;
+        }
+
+        // Writer thread only
+        int idOf(String text) throws IOException {
+            Integer id = ids.get(text);
+            if (id != null) {
+                return id;
+            }
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer entry = ByteBuffer.allocate(8 + bytes.length);
+            entry.putInt(bytes.length).put(bytes).putInt(crc(bytes)).flip();
+            while (entry.hasRemaining()) {
+                channel.write(entry);
+            }
+            return add(text);
+        }
+
+        private int add(String text) {
+            String[] current = strings;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = text;
+            strings = current;
+            ids.put(text, size);
+            return size++;
+        }
+
+        // No more appends: the lookup map and the file handle are released
+        void seal() throws IOException {
+            ids = null;
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    private final Path directory;
+    private final HistorySeries.Kind kind;
+    private final Class<?> type;
+    private final int recordsPerSegment;
+    private final RollingStats stats = new RollingStats();
+
+    private volatile Segment[] segments = new Segment[0];
+    private volatile long nextSeq;
+    // Held by append, pruneBefore and close; closed is only read under it
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private boolean closed;
+
+    MappedSeries(Path directory, Class<?> type, int recordsPerSegment) throws IOException {
+        this.directory = directory;
+        this.type = type;
+        this.kind = HistorySeries.kindOf(type);
+        this.recordsPerSegment = recordsPerSegment;
+        Files.createDirectories(directory);
+        recoverSegments();
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    long getVersion() {
+        return nextSeq;
+    }
+
+    HistoryStats getStats() {
+        return stats.read();
+    }
+
+    /**
+     * Writer thread only. Returns false if the value does not fit the attribute type.
+     */
+    boolean append(long epochNanos, Object value) throws IOException {
+        long bits;
+        double numeric = Double.NaN;
+        Object object = null;
+        try {
+            switch (kind) {
+                case DOUBLE:
+                    numeric = HistorySeries.toDouble(value);
+                    bits = Double.doubleToRawLongBits(numeric);
+                    break;
+                case LONG:
+                    bits = HistorySeries.toLong(value);
+                    numeric = bits;
+                    break;
+                case BOOLEAN:
+                    boolean flag = HistorySeries.toBoolean(value);
+                    bits = flag ? 1 : 0;
+                    object = flag;
+                    break;
+                default:
+                    object = String.valueOf(value);
+                    bits = 0;
+            }
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        writeLock.lock();
+        try {
+            Segment segment = writableSegment();
+            if (kind == HistorySeries.Kind.OBJECT) {
+                bits = segment.dictionary.idOf((String) object);
+            }
+            int index = segment.count;
+            int offset = index * RECORD_BYTES;
+            segment.buffer.putLong(offset, epochNanos);
+            segment.buffer.putLong(offset + 8, bits);
+            segment.buffer.putLong(offset + 16, check(epochNanos, bits));
+            long seq = nextSeq;
+            stats.add(seq, epochNanos, numeric, object);
+            // Publishes the record
+            segment.count = index + 1;
+            nextSeq = seq + 1;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes whole segments whose newest record is older than the cutoff. The
+     * segment being written is always kept. Waits for an append in progress.
+     */
+    void pruneBefore(long cutoffNanos) throws IOException {
+        writeLock.lock();
+        try {
+            if (!closed) {
+                dropBefore(cutoffNanos);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void dropBefore(long cutoffNanos) throws IOException {
+        Segment[] current = segments;
+        int drop = 0;
+        while (drop < current.length - 1) {
+            Segment segment = current[drop];
+            if (segment.count > 0 && segment.timeAt(segment.count - 1) >= cutoffNanos)
+                break;
+            for (int i = 0; i < segment.count; i++) {
+                stats.remove(segment.firstSeq + i + 1, numericAt(segment, i));
+            }
+            drop++;
+        }
+        if (drop == 0)
+            return;
+
+        segments = Arrays.copyOfRange(current, drop, current.length);
+        // Readers still holding the old array keep a valid mapping after the delete
+        for (int i = 0; i < drop; i++) {
+            Files.deleteIfExists(current[i].path);
+            if (current[i].dictionary != null) {
+                current[i].dictionary.seal();
+                Files.deleteIfExists(current[i].dictionary.path);
+            }
+        }
+    }
+
+    /**
+     * Copies the records with fromNanos <= time <= toNanos, reading them straight
+     * from the mapped segments.
+     */
+    HistorySnapshot snapshot(long fromNanos, long toNanos) {
+        Segment[] current = segments;
+        long version = nextSeq;
+        int[] starts = new int[current.length];
+        int[] ends = new int[current.length];
+        int n = 0;
+        for (int s = 0; s < current.length; s++) {
+            Segment segment = current[s];
+            int count = segment.count;
+            if (count == 0 || segment.timeAt(count - 1) < fromNanos || segment.timeAt(0) > toNanos)
+                continue;
+            starts[s] = segment.lowerBound(0, count, fromNanos);
+            ends[s] = toNanos == Long.MAX_VALUE ? count : segment.lowerBound(starts[s], count, toNanos + 1);
+            n += ends[s] - starts[s];
+        }
+
+        long[] times = new long[n];
+        double[] doubles = kind == HistorySeries.Kind.DOUBLE ? new double[n] : null;
+        long[] longs = kind == HistorySeries.Kind.LONG ? new long[n] : null;
+        boolean[] booleans = kind == HistorySeries.Kind.BOOLEAN ? new boolean[n] : null;
+        Object[] objects = kind == HistorySeries.Kind.OBJECT ? new Object[n] : null;
+
+        int k = 0;
+        for (int s = 0; s < current.length; s++) {
+            Segment segment = current[s];
+            for (int i = starts[s]; i < ends[s]; i++, k++) {
+                times[k] = segment.timeAt(i);
+                long bits = segment.valueAt(i);
+                switch (kind) {
+                    case DOUBLE:
+                        doubles[k] = Double.longBitsToDouble(bits);
+                        break;
+                    case LONG:
+                        longs[k] = bits;
+                        break;
+                    case BOOLEAN:
+                        booleans[k] = bits != 0;
+                        break;
+                    default:
+                        objects[k] = segment.dictionary.get(bits);
+                }
+            }
+        }
+        return new HistorySnapshot(type, n, times, doubles, longs, booleans, objects, version);
+    }
+
+    /**
+     * Time of the newest record older than nanos, or Long.MIN_VALUE.
+     */
+    long lastTimeBefore(long nanos) {
+        Segment[] current = segments;
+        for (int s = current.length - 1; s >= 0; s--) {
+            Segment segment = current[s];
+            int count = segment.count;
+            if (count > 0 && segment.timeAt(0) < nanos) {
+                return segment.timeAt(segment.lowerBound(0, count, nanos) - 1);
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    void flush() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            closed = true;
+            flush();
+            for (Segment segment : segments) {
+                if (segment.dictionary != null) {
+                    segment.dictionary.seal();
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private double numericAt(Segment segment, int index) {
+        long bits = segment.valueAt(index);
+        switch (kind) {
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            case LONG:
+                return bits;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    private Segment writableSegment() throws IOException {
+        Segment[] current = segments;
+        Segment last = current.length > 0 ? current[current.length - 1] : null;
+        if (last != null && last.count < last.capacity) {
+            return last;
+        }
+        if (last != null) {
+            last.buffer.force();
+            if (last.dictionary != null) {
+                last.dictionary.seal();
+            }
+        }
+        Segment segment = mapSegment(directory.resolve(String.format("%020d%s", nextSeq, SEGMENT_SUFFIX)),
+                nextSeq, recordsPerSegment);
+        if (kind == HistorySeries.Kind.OBJECT) {
+            segment.dictionary = SegmentDictionary.open(dictionaryPath(segment.path));
+        }
+        Segment[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = segment;
+        segments = grown;
+        return segment;
+    }
+
+    private static Segment mapSegment(Path path, long firstSeq, int records) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            long length = file.length();
+            if (length < RECORD_BYTES) {
+                length = (long) records * RECORD_BYTES;
+                file.setLength(length);
+            }
+            int capacity = (int) (length / RECORD_BYTES);
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    (long) capacity * RECORD_BYTES);
+            return new Segment(path, firstSeq, capacity, buffer);
+        }
+    }
+
+    // Startup scan: every segment is valid up to its first record with a bad check
+    // or an unknown string id, which is where a crash interrupted the writer
+    private void recoverSegments() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+
+        List<Segment> recovered = new ArrayList<>();
+        boolean trusted = true;
+        for (Path path : files) {
+            String name = path.getFileName().toString();
+            long firstSeq = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            if (trusted && !recovered.isEmpty()) {
+                Segment previous = recovered.get(recovered.size() - 1);
+                // A gap means the previous segment lost its tail; later data is not trusted
+                trusted = firstSeq == previous.firstSeq + previous.count;
+            }
+            if (!trusted) {
+                Files.deleteIfExists(path);
+                Files.deleteIfExists(dictionaryPath(path));
+                continue;
+            }
+            Segment segment = mapSegment(path, firstSeq, recordsPerSegment);
+            if (kind == HistorySeries.Kind.OBJECT) {
+                segment.dictionary = SegmentDictionary.open(dictionaryPath(path));
+            }
+            int count = 0;
+            while (count < segment.capacity && segment.isValid(count) && hasString(segment, count)) {
+                count++;
+            }
+            // Clear what follows so stale records can never look valid after a later crash
+            for (int offset = count * RECORD_BYTES; offset < segment.capacity * RECORD_BYTES; offset += 8) {
+                if (segment.buffer.getLong(offset) != 0) {
+                    segment.buffer.putLong(offset, 0);
+                }
+            }
+            segment.count = count;
+            if (count == 0) {
+                if (segment.dictionary != null) {
+                    segment.dictionary.seal();
+                }
+                Files.deleteIfExists(path);
+                Files.deleteIfExists(dictionaryPath(path));
+                continue;
+            }
+            recovered.add(segment);
+        }
+        // Only the last segment is still written to
+        for (int i = 0; i < recovered.size() - 1; i++) {
+            if (recovered.get(i).dictionary != null) {
+                recovered.get(i).dictionary.seal();
+            }
+        }
+
+        segments = recovered.toArray(new Segment[0]);
+        if (!recovered.isEmpty()) {
+            Segment last = recovered.get(recovered.size() - 1);
+            nextSeq = last.firstSeq + last.count;
+        }
+        for (Segment segment : segments) {
+            for (int i = 0; i < segment.count; i++) {
+                Object object = null;
+                if (kind == HistorySeries.Kind.BOOLEAN) {
+                    object = segment.valueAt(i) != 0;
+                } else if (kind == HistorySeries.Kind.OBJECT) {
+                    object = segment.dictionary.get(segment.valueAt(i));
+                }
+                stats.add(segment.firstSeq + i, segment.timeAt(i), numericAt(segment, i), object);
+            }
+        }
+    }
+
+    // Records reach the disk through the mapping and dictionary entries through the
+    // channel, so after a power loss a record may refer to an entry that was lost
+    private static boolean hasString(Segment segment, int index) {
+        if (segment.dictionary == null)
+            return true;
+        long id = segment.valueAt(index);
+        return id >= 0 && id < segment.dictionary.size();
+    }
+
+    private static Path dictionaryPath(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return segmentPath.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length())
+                + DICTIONARY_SUFFIX);
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    // Mixes both fields so a zeroed or half-written record never matches
+    static long check(long time, long value) {
+        long h = time * 0x9E3779B97F4A7C15L + value;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+        return h ^ CHECK_MAGIC;
+    }
+}
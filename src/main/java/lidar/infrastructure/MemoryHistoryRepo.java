@@ -1,38 +1,321 @@
 package lidar.infrastructure;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
-public class MemoryHistoryRepo {
-    private final Map<String, Deque<HistoryEntry>> store = new ConcurrentHashMap<>();
-    private final long retentionMinutes;
+public class MemoryHistoryRepo implements HistoryRepo {
+
+    // Raw samples of an attribute plus its rollup tiers, finest first
+    private static final class Attribute {
+        final TimeSeries series;
+        final RollupSeries[] rollups;
+        // Held by the writer while it appends and by the clock while it prunes
+        final ReentrantLock writeLock = new ReentrantLock();
+
+        Attribute(TimeSeries series, RollupSeries[] rollups) {
+            this.series = series;
+            this.rollups = rollups;
+        }
+
+        long sizeInBytes() {
+            long bytes = series.sizeInBytes();
+            for (RollupSeries rollup : rollups) {
+                bytes += rollup.sizeInBytes();
+            }
+            return bytes;
+        }
+    }
+
+    private final Map<String, Attribute> store = new ConcurrentHashMap<>();
+    private final long retentionNanos;
+    private final Function<String, Class<?>> typeResolver;
+    private final boolean compressed;
+
+    private volatile HistoryBudget budget;
+    // Byte allowance per attribute under the budget; replaced when attributes appear
+    private volatile Map<String, Long> allocation = Collections.emptyMap();
+    private volatile List<RollupTier> rollupTiers = Collections.emptyList();
+    private final Map<String, Integer> sampleLimits = new ConcurrentHashMap<>();
 
     public MemoryHistoryRepo(long retentionMinutes) {
-        this.retentionMinutes = retentionMinutes;
+        this(retentionMinutes, attr -> null);
+    }
+
+    /**
+     * @param typeResolver declared type of an attribute (e.g. LIDAR::attrType), used
+     *                     to pick a primitive column; when it returns null the type
+     *                     of the first value appended is used
+     */
+    public MemoryHistoryRepo(long retentionMinutes, Function<String, Class<?>> typeResolver) {
+        this(retentionMinutes, typeResolver, false);
+    }
+
+    /**
+     * @param compressed keep numeric, boolean and string attributes as
+     *                   Gorilla-encoded blocks (delta-of-delta timestamps, XOR
+     *                   values, dictionary ids for strings). Slowly changing
+     *                   channels then take a few bits per sample instead of 16
+     *                   bytes, at the cost of decoding on every query, and
+     *                   retention is enforced per block of
+     *                   CompressedSeries.BLOCK_SAMPLES samples.
+     */
+    public MemoryHistoryRepo(long retentionMinutes, Function<String, Class<?>> typeResolver, boolean compressed) {
+        this.retentionNanos = TimeUnit.MINUTES.toNanos(retentionMinutes);
+        this.typeResolver = typeResolver;
+        this.compressed = compressed;
+        RetentionClock.register(this, MemoryHistoryRepo::pruneExpired);
+    }
+
+    /**
+     * Caps the memory held by this repo, on top of time-based retention. Each
+     * attribute evicts its own oldest samples on append once it is over its share.
+     * Pass null to remove the cap. Cannot be combined with rollups, which the
+     * budget would not evict.
+     */
+    public void setBudget(HistoryBudget budget) {
+        if (budget != null && !rollupTiers.isEmpty())
+            throw new IllegalStateException("A memory budget cannot be combined with rollups");
+        this.budget = budget;
+        reallocate();
     }
 
+    /**
+     * Keeps at most the newest maxSamples samples of an attribute, on top of
+     * time-based retention, e.g. for range profile frames of thousands of bins
+     * each. Enforced on append.
+     */
+    public void setMaxSamples(String attr, int maxSamples) {
+        if (maxSamples < 0)
+            throw new IllegalArgumentException("Sample limit must not be negative: " + maxSamples);
+        sampleLimits.put(attr, maxSamples);
+    }
+
+    /**
+     * Keeps min/max/mean/count rollups of numeric attributes at the given tiers
+     * (e.g. RollupTier.DEFAULTS), updated on every append. Applies to attributes
+     * first appended after the call.
+     *
+     * Each tier is a ring of 40-byte buckets that grows by doubling until it
+     * holds the retention: with the defaults about 5.2 MB for 1 s over 24 h
+     * (131072 slots) plus 2.6 MB for 1 min over 30 days, so about 7.9 MB per
+     * numeric attribute. Rollups are bounded by their retention only, so they
+     * cannot be combined with a budget.
+     */
+    public void setRollupTiers(List<RollupTier> tiers) {
+        if (budget != null && !tiers.isEmpty())
+            throw new IllegalStateException("Rollups cannot be combined with a memory budget");
+        List<RollupTier> sorted = new ArrayList<>(tiers);
+        sorted.sort(Comparator.comparing(RollupTier::getResolution));
+        this.rollupTiers = List.copyOf(sorted);
+    }
+
+    /**
+     * Estimated bytes held per attribute, rollups included.
+     */
+    public Map<String, Long> getMemoryUsage() {
+        Map<String, Long> usage = new TreeMap<>();
+        for (Map.Entry<String, Attribute> entry : store.entrySet()) {
+            usage.put(entry.getKey(), entry.getValue().sizeInBytes());
+        }
+        return usage;
+    }
+
+    public long getMemoryUsage(String attr) {
+        Attribute attribute = store.get(attr);
+        return attribute != null ? attribute.sizeInBytes() : 0;
+    }
+
+    public long getTotalMemoryUsage() {
+        long total = 0;
+        for (Attribute attribute : store.values()) {
+            total += attribute.sizeInBytes();
+        }
+        return total;
+    }
+
+    /**
+     * Records a sample. Each attribute must be appended from one thread at a time
+     * (a monitor's poll or notification path); readers never block it.
+     *
+     * Retention is left to RetentionClock: after every tick its thread drops what
+     * expired from all attributes in bulk. The attribute's lock only keeps that
+     * sweep out of an append, so the writer otherwise finds it free.
+     */
+    @Override
     public void append(String attr, Object value, Instant timestamp) {
-        Deque<HistoryEntry> queue = store.computeIfAbsent(attr, k -> new ArrayDeque<>());
-        queue.add(new HistoryEntry(timestamp, value));
-        prune(attr);
+        if (value == null)
+            return;
+        Attribute attribute = store.get(attr);
+        if (attribute == null) {
+            attribute = store.computeIfAbsent(attr, k -> createAttribute(k, value));
+            if (budget != null) {
+                reallocate();
+            }
+        }
+        long nanos = HistorySeries.toEpochNanos(timestamp);
+        TimeSeries series = attribute.series;
+        attribute.writeLock.lock();
+        try {
+            if (!series.append(nanos, value))
+                return;
+            if (!sampleLimits.isEmpty()) {
+                Integer limit = sampleLimits.get(attr);
+                if (limit != null) {
+                    series.keepNewest(limit);
+                }
+            }
+            if (budget != null) {
+                Long allowance = allocation.get(attr);
+                if (allowance != null) {
+                    series.evictOldest(allowance);
+                }
+            }
+            if (attribute.rollups.length > 0) {
+                double v = HistorySeries.toDouble(value);
+                for (RollupSeries rollup : attribute.rollups) {
+                    rollup.add(nanos, v);
+                }
+            }
+        } finally {
+            attribute.writeLock.unlock();
+        }
+    }
+
+    // On the clock thread after every tick; waits at most for one append
+    private void pruneExpired(long nowNanos) {
+        long cutoff = nowNanos - retentionNanos;
+        for (Attribute attribute : store.values()) {
+            attribute.writeLock.lock();
+            try {
+                attribute.series.pruneBefore(cutoff);
+                for (RollupSeries rollup : attribute.rollups) {
+                    rollup.prune();
+                }
+            } finally {
+                attribute.writeLock.unlock();
+            }
+        }
+    }
+
+    private synchronized void reallocate() {
+        HistoryBudget current = budget;
+        allocation = current != null ? current.allocate(store.keySet()) : Collections.emptyMap();
+    }
+
+    private Attribute createAttribute(String attr, Object firstValue) {
+        Class<?> type = typeResolver.apply(attr);
+        if (type == null) {
+            type = firstValue.getClass();
+        }
+        HistorySeries.Kind kind = HistorySeries.kindOf(type);
+        TimeSeries series;
+        // Other objects are rarely repeated, so a dictionary would not help
+        if (compressed && (kind != HistorySeries.Kind.OBJECT || type == String.class)) {
+            series = new CompressedSeries(type);
+        } else {
+            series = new HistorySeries(type);
+        }
+
+        RollupSeries[] rollups = new RollupSeries[0];
+        if (kind == HistorySeries.Kind.DOUBLE || kind == HistorySeries.Kind.LONG) {
+            List<RollupTier> tiers = rollupTiers;
+            rollups = new RollupSeries[tiers.size()];
+            for (int i = 0; i < rollups.length; i++) {
+                rollups[i] = new RollupSeries(tiers.get(i));
+            }
+        }
+        return new Attribute(series, rollups);
+    }
+
+    private long cutoffNanos() {
+        return RetentionClock.cutoffNanos(retentionNanos);
+    }
+
+    /**
+     * Samples past retention that were not pruned yet are left out. The range is
+     * located by binary search, so only the requested samples are copied.
+     */
+    @Override
+    public HistorySnapshot getSnapshot(String attr, Instant from, Instant to) {
+        Attribute attribute = store.get(attr);
+        if (attribute == null) {
+            return HistorySnapshot.EMPTY;
+        }
+        return attribute.series.snapshot(Math.max(HistorySeries.toEpochNanos(from), cutoffNanos()),
+                HistorySeries.toEpochNanos(to));
     }
 
-    private void prune(String attr) {
-        Instant cutoff = Instant.now().minus(retentionMinutes, ChronoUnit.MINUTES);
-        Deque<HistoryEntry> queue = store.get(attr);
-        if (queue != null) {
-            while (!queue.isEmpty() && queue.peekFirst().timestamp.isBefore(cutoff)) {
-                queue.removeFirst();
+    @Override
+    public HistorySnapshot getSnapshotWithPrevious(String attr, Instant from, Instant to) {
+        Attribute attribute = store.get(attr);
+        if (attribute == null) {
+            return HistorySnapshot.EMPTY;
+        }
+        TimeSeries series = attribute.series;
+        long fromNanos = HistorySeries.toEpochNanos(from);
+        long previous = series.lastTimeBefore(fromNanos);
+        return series.snapshot(Math.max(previous != Long.MIN_VALUE ? previous : fromNanos, cutoffNanos()),
+                HistorySeries.toEpochNanos(to));
+    }
+
+    /**
+     * Min/max/mean/count buckets over [from, to] at no finer than the requested
+     * resolution, read from the coarsest rollup tier whose buckets are at most
+     * that wide and whose retention still covers from. When no tier qualifies the
+     * buckets are computed from the raw samples (still in retention); when from is
+     * older than every qualifying tier the longest-kept one is used. Buckets
+     * appear in a tier once complete. Returns an empty snapshot for non-numeric
+     * or unknown attributes.
+     */
+    public RollupSnapshot getRollup(String attr, Instant from, Instant to, Duration resolution) {
+        Attribute attribute = store.get(attr);
+        if (attribute == null)
+            return RollupSnapshot.EMPTY;
+        long fromNanos = HistorySeries.toEpochNanos(from);
+        long toNanos = HistorySeries.toEpochNanos(to);
+        long resolutionNanos = resolution.toNanos();
+
+        RollupSeries chosen = null;
+        for (RollupSeries rollup : attribute.rollups) {
+            if (rollup.getResolutionNanos() > resolutionNanos)
+                break;
+            boolean covers = fromNanos >= RetentionClock.cutoffNanos(rollup.getRetentionNanos());
+            if (chosen == null || covers || rollup.getRetentionNanos() > chosen.getRetentionNanos()) {
+                chosen = rollup;
             }
         }
+        if (chosen != null)
+            return chosen.snapshot(fromNanos, toNanos);
+
+        HistorySnapshot raw = getSnapshot(attr, from, to);
+        if (!raw.isNumeric())
+            return RollupSnapshot.EMPTY;
+        return RollupSnapshot.aggregate(raw, resolutionNanos);
+    }
+
+    @Override
+    public Duration getRetention() {
+        return Duration.ofNanos(retentionNanos);
+    }
+
+    /**
+     * Kept up to date on append and prune, so this is O(1) per attribute.
+     */
+    @Override
+    public HistoryStats getStats(String attr) {
+        Attribute attribute = store.get(attr);
+        return attribute != null ? attribute.series.getStats() : null;
     }
 
-    public List<HistoryEntry> getHistory(String attr) {
-        prune(attr);
-        Deque<HistoryEntry> queue = store.get(attr);
-        return queue != null ? new ArrayList<>(queue) : Collections.emptyList();
+    @Override
+    public long getVersion(String attr) {
+        Attribute attribute = store.get(attr);
+        return attribute != null ? attribute.series.getVersion() : 0;
     }
 
     public static class HistoryEntry {
@@ -44,4 +327,4 @@ public class MemoryHistoryRepo {
             this.value = value;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,88 @@
+package lidar.infrastructure;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the object and method NodeIds found by browsing, keyed by
+ * (namespace, object, method), so a method call only needs the Call round trip.
+ * Every entry stores the namespace URI it was resolved against; if the server's
+ * namespace table no longer matches, the whole cache is dropped.
+ */
+public class MethodNodeCache {
+
+    public static final class MethodTarget {
+        public final NodeId objectId;
+        public final NodeId methodId;
+
+        public MethodTarget(NodeId objectId, NodeId methodId) {
+            this.objectId = objectId;
+            this.methodId = methodId;
+        }
+    }
+
+    private static final class Entry {
+        final String namespaceUri;
+        final MethodTarget target;
+
+        Entry(String namespaceUri, MethodTarget target) {
+            this.namespaceUri = namespaceUri;
+            this.target = target;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public MethodTarget get(int namespaceIndex, String objectName, String methodName, String namespaceUri) {
+        Entry entry = entries.get(key(namespaceIndex, objectName, methodName));
+        if (entry != null && !Objects.equals(entry.namespaceUri, namespaceUri)) {
+            // Namespace table changed under us: none of the cached ids can be trusted
+            invalidate();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.target;
+    }
+
+    public void put(int namespaceIndex, String objectName, String methodName, String namespaceUri,
+            MethodTarget target) {
+        entries.put(key(namespaceIndex, objectName, methodName), new Entry(namespaceUri, target));
+    }
+
+    public void invalidate() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    // Browse names are matched case-insensitively, so keys are too
+    private static String key(int namespaceIndex, String objectName, String methodName) {
+        return namespaceIndex + "|" + objectName.toLowerCase(Locale.ROOT) + "|" + methodName.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,106 @@
+package lidar.infrastructure;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.structured.RegisterNodesResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parses each "ns=2;s=..." node id string once and keeps the typed NodeId.
+ * Nodes marked for registration are sent to the RegisterNodes service so the
+ * server can hand back optimized aliases; those aliases are valid for the
+ * current session only and must be registered again after a reconnect.
+ */
+public class NodeRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(NodeRegistry.class);
+
+    private final Map<String, NodeId> parsed = new ConcurrentHashMap<>();
+    private final Map<String, NodeId> registered = new ConcurrentHashMap<>();
+    private final Set<String> toRegister = ConcurrentHashMap.newKeySet();
+
+    public NodeId parse(String nodeId) {
+        return parsed.computeIfAbsent(nodeId, NodeId::parse);
+    }
+
+    public NodeId resolve(String nodeId) {
+        NodeId alias = registered.get(nodeId);
+        return alias != null ? alias : parse(nodeId);
+    }
+
+    public List<NodeId> resolveAll(List<String> nodeIds) {
+        List<NodeId> nodes = new ArrayList<>(nodeIds.size());
+        for (String nodeId : nodeIds) {
+            nodes.add(resolve(nodeId));
+        }
+        return nodes;
+    }
+
+    public void markForRegistration(Collection<String> nodeIds) {
+        for (String nodeId : nodeIds) {
+            parse(nodeId);
+            toRegister.add(nodeId);
+        }
+    }
+
+    public int register(OpcUaClient client) {
+        return register(client, 0);
+    }
+
+    /**
+     * Registers every marked node on the given session, at most maxPerCall nodes
+     * per request (0 for no limit). On failure the parsed ids keep being used, so
+     * registration is only ever an optimization.
+     */
+    public int register(OpcUaClient client, int maxPerCall) {
+        registered.clear();
+        if (toRegister.isEmpty()) {
+            return 0;
+        }
+
+        List<String> keys = new ArrayList<>(toRegister);
+        int chunk = maxPerCall > 0 ? maxPerCall : keys.size();
+
+        try {
+            for (int from = 0; from < keys.size(); from += chunk) {
+                List<String> chunkKeys = keys.subList(from, Math.min(from + chunk, keys.size()));
+                List<NodeId> nodes = new ArrayList<>(chunkKeys.size());
+                for (String key : chunkKeys) {
+                    nodes.add(parse(key));
+                }
+
+                RegisterNodesResponse response = client.registerNodes(nodes);
+                NodeId[] aliases = response.getRegisteredNodeIds();
+                if (aliases == null || aliases.length != chunkKeys.size()) {
+                    logger.warn("RegisterNodes returned an unexpected number of ids; using parsed node ids");
+                    registered.clear();
+                    return 0;
+                }
+                for (int i = 0; i < chunkKeys.size(); i++) {
+                    registered.put(chunkKeys.get(i), aliases[i]);
+                }
+            }
+            logger.info("Registered {} nodes with the server", registered.size());
+            return registered.size();
+        } catch (Exception e) {
+            logger.warn("RegisterNodes failed, using parsed node ids: {}", e.getMessage());
+            registered.clear();
+            return 0;
+        }
+    }
+
+    public void clearRegistrations() {
+        registered.clear();
+    }
+
+    public int getRegisteredCount() {
+        return registered.size();
+    }
+}
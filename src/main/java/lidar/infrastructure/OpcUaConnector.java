@@ -3,22 +3,34 @@ package lidar.infrastructure;
 import org.eclipse.milo.opcua.sdk.client.DiscoveryClient;
 import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
 import org.eclipse.milo.opcua.sdk.client.OpcUaClientConfig;
+import org.eclipse.milo.opcua.sdk.client.OpcUaSession;
+import org.eclipse.milo.opcua.sdk.client.OperationLimits;
+import org.eclipse.milo.opcua.sdk.client.SessionActivityListener;
 import org.eclipse.milo.opcua.sdk.client.identity.AnonymousProvider;
+import org.eclipse.milo.opcua.sdk.client.subscriptions.OpcUaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.subscriptions.OpcUaSubscription;
 import org.eclipse.milo.opcua.stack.core.AttributeId;
 import org.eclipse.milo.opcua.stack.core.types.builtin.*;
 import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseDirection;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DataChangeTrigger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DeadbandType;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.MessageSecurityMode;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
 import org.eclipse.milo.opcua.stack.core.types.structured.*;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.NodeIds;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
 import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.CompletableFuture; // Still necessary for CompletableFuture<?> in disconnect
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import java.io.FileInputStream;
 import java.nio.file.Files;
@@ -33,15 +45,69 @@ import java.util.*;
 
 public class OpcUaConnector {
     private static final Logger logger = LoggerFactory.getLogger(OpcUaConnector.class);
+    private static final String METHODS_OBJECT = "SI3";
 
     private String endpointUrl;
     private boolean isSecure;
     private String certPath;
     private String keyPath;
 
-    private OpcUaClient client;
-    private Object subscription; // We will use Object for now until finding the correct type
-    private final List<Object> monitoredItems = new ArrayList<>();
+    private volatile OpcUaClient client;
+    private final NodeRegistry nodeRegistry = new NodeRegistry();
+    private final MethodNodeCache methodCache = new MethodNodeCache();
+    private final ConnectionLiveness liveness = new ConnectionLiveness();
+    private final List<SessionActivityListener> sessionListeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> transferFailureListeners = new CopyOnWriteArrayList<>();
+    private OpcUaSubscription subscription;
+    private final List<OpcUaMonitoredItem> monitoredItems = new ArrayList<>();
+
+    // What the caller subscribed to, kept so reconnect() can rebuild it in one step
+    private double subscriptionInterval = -1;
+    private final List<SubscriptionRequest> subscriptionRequests = new ArrayList<>();
+
+    private static class SubscriptionRequest {
+        final List<String> nodeIds;
+        final double samplingInterval;
+        final int queueSize;
+        final DataChangeFilter filter;
+        final DataBatchListener onData;
+
+        SubscriptionRequest(List<String> nodeIds, double samplingInterval, int queueSize,
+                DataChangeFilter filter, DataBatchListener onData) {
+            this.nodeIds = List.copyOf(nodeIds);
+            this.samplingInterval = samplingInterval;
+            this.queueSize = queueSize;
+            this.filter = filter;
+            this.onData = onData;
+        }
+    }
+
+    // User object of each monitored item
+    private static class MonitoredNode {
+        final String nodeId;
+        final SubscriptionRequest request;
+
+        MonitoredNode(String nodeId, SubscriptionRequest request) {
+            this.nodeId = nodeId;
+            this.request = request;
+        }
+    }
+
+    /**
+     * Receives the values of one publish notification together, in the order the
+     * server sent them.
+     */
+    public interface DataBatchListener {
+        void onData(List<String> nodeIds, List<DataValue> values);
+    }
+
+    // Server OperationLimits read on connect; 0 means the server reports no limit
+    private volatile int maxNodesPerRead;
+    private volatile int maxNodesPerWrite;
+    private volatile int maxNodesPerRegisterNodes;
+    private volatile int maxMonitoredItemsPerCall;
+    // Optional client-side cap to keep single messages small; 0 disables it
+    private volatile int maxNodesPerRequest;
 
     public OpcUaConnector(String endpointUrl, boolean isSecure, String certPath, String keyPath) {
         this.endpointUrl = endpointUrl;
@@ -62,16 +128,154 @@ public class OpcUaConnector {
         connect();
     }
 
+    /**
+     * Drops the current client and connects again, then recreates the subscription
+     * and monitored items that were active before. Registered nodes are renewed by
+     * connect() itself.
+     */
+    public synchronized void reconnect() throws Exception {
+        closeClient();
+        connect();
+        restoreSubscriptions();
+    }
+
+    /**
+     * Listeners are attached to every client this connector creates, so they keep
+     * working across reconnects.
+     */
+    public void addSessionActivityListener(SessionActivityListener listener) {
+        sessionListeners.add(listener);
+        if (client != null) {
+            client.addSessionActivityListener(listener);
+        }
+    }
+
+    /**
+     * Called when a new session could not take over the subscription, which then
+     * needs restoreSubscriptions(). The connector does not recover by itself, so
+     * that only one thread (the ReconnectManager's) talks to the server to recover.
+     */
+    public void addTransferFailureListener(Runnable listener) {
+        transferFailureListeners.add(listener);
+    }
+
+    public NodeId getSessionId() {
+        OpcUaClient current = client;
+        if (current == null) {
+            return null;
+        }
+        try {
+            OpcUaSession session = current.getSessionAsync().getNow(null);
+            return session != null ? session.getSessionId() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     public OpcUaClient getClient() {
         return client;
     }
 
+    public NodeRegistry getNodeRegistry() {
+        return nodeRegistry;
+    }
+
+    public MethodNodeCache getMethodCache() {
+        return methodCache;
+    }
+
+    /**
+     * Marked by every successful response and subscription notification, so callers
+     * can check the connection without sending requests of their own.
+     */
+    public ConnectionLiveness getLiveness() {
+        return liveness;
+    }
+
+    public int getMaxNodesPerRead() {
+        return maxNodesPerRead;
+    }
+
+    public int getMaxNodesPerWrite() {
+        return maxNodesPerWrite;
+    }
+
+    /**
+     * Caps the number of nodes per Read/Write request regardless of what the server
+     * allows, e.g. to stay below its message size. Use 0 to only follow the server.
+     */
+    public void setMaxNodesPerRequest(int maxNodesPerRequest) {
+        this.maxNodesPerRequest = Math.max(0, maxNodesPerRequest);
+    }
+
+    /**
+     * Marks the nodes for the RegisterNodes service and registers them right away
+     * when connected. They are registered again on every later connect.
+     */
+    public void registerNodes(Collection<String> nodeIds) {
+        nodeRegistry.markForRegistration(nodeIds);
+        if (client != null) {
+            nodeRegistry.register(client, maxNodesPerRegisterNodes);
+        }
+    }
+
+    /**
+     * Registers the marked nodes again, e.g. after the client got a new session
+     * without a full reconnect. Returns the number of aliases obtained.
+     */
+    public int renewNodeRegistrations() {
+        OpcUaClient current = client;
+        return current != null ? nodeRegistry.register(current, maxNodesPerRegisterNodes) : 0;
+    }
+
     public void connect() throws Exception {
         if (isSecure) {
             connectSecure();
         } else {
             connectInsecure();
         }
+        for (SessionActivityListener listener : sessionListeners) {
+            client.addSessionActivityListener(listener);
+        }
+        methodCache.invalidate();
+        loadOperationLimits();
+        nodeRegistry.register(client, maxNodesPerRegisterNodes);
+        liveness.markAlive();
+        liveness.restartHeartbeatTimeout();
+    }
+
+    private void loadOperationLimits() {
+        maxNodesPerRead = 0;
+        maxNodesPerWrite = 0;
+        maxNodesPerRegisterNodes = 0;
+        maxMonitoredItemsPerCall = 0;
+        try {
+            OperationLimits limits = client.readOperationLimits();
+            if (limits == null) {
+                return;
+            }
+            maxNodesPerRead = limitOf(limits.maxNodesPerRead());
+            maxNodesPerWrite = limitOf(limits.maxNodesPerWrite());
+            maxNodesPerRegisterNodes = limitOf(limits.maxNodesPerRegisterNodes());
+            maxMonitoredItemsPerCall = limitOf(limits.maxMonitoredItemsPerCall());
+            logger.info("Server operation limits: read={}, write={}, registerNodes={}, monitoredItems={}",
+                    maxNodesPerRead, maxNodesPerWrite, maxNodesPerRegisterNodes, maxMonitoredItemsPerCall);
+        } catch (Exception e) {
+            logger.warn("Could not read server operation limits, sending unchunked requests: {}", e.getMessage());
+        }
+    }
+
+    private static int limitOf(Optional<UInteger> limit) {
+        long value = limit.map(UInteger::longValue).orElse(0L);
+        return value <= 0 || value > Integer.MAX_VALUE ? 0 : (int) value;
+    }
+
+    private int chunkSize(int serverLimit) {
+        int clientLimit = maxNodesPerRequest;
+        if (serverLimit == 0) {
+            return clientLimit;
+        }
+        return clientLimit == 0 ? serverLimit : Math.min(serverLimit, clientLimit);
     }
 
     private void connectInsecure() throws Exception {
@@ -149,25 +353,9 @@ public class OpcUaConnector {
     }
 
     public void disconnect() throws Exception {
-        if (subscription != null) {
-            // Attempt to remove subscription if it has delete method
-            try {
-                if (subscription instanceof CompletableFuture) {
-                    ((CompletableFuture<?>) subscription).thenAccept(s -> {
-                        try {
-                            // Attempt delete if exists
-                            subscription.getClass().getMethod("delete").invoke(s);
-                        } catch (Exception e) {
-                            // Ignore
-                        }
-                    });
-                }
-            } catch (Exception e) {
-                // Ignore
-            }
-            subscription = null;
-            monitoredItems.clear();
-        }
+        deleteSubscription();
+        nodeRegistry.clearRegistrations();
+        methodCache.invalidate();
         if (client != null) {
             client.disconnect();
             client = null;
@@ -175,40 +363,103 @@ public class OpcUaConnector {
         logger.info("Disconnected from OPC UA server");
     }
 
-    public DataValue readNode(String nodeId) throws Exception {
-        NodeId node = NodeId.parse(nodeId);
+    // Like disconnect() but keeps the subscription requests for restoreSubscriptions()
+    private void closeClient() {
+        subscription = null;
+        monitoredItems.clear();
+        nodeRegistry.clearRegistrations();
+        methodCache.invalidate();
+        OpcUaClient old = client;
+        client = null;
+        if (old != null) {
+            for (SessionActivityListener listener : sessionListeners) {
+                old.removeSessionActivityListener(listener);
+            }
+            try {
+                old.disconnect();
+            } catch (Exception e) {
+                // Connection is already broken
+            }
+        }
+    }
 
-        return client.readValue(0.0, TimestampsToReturn.Both, node);
+    public DataValue readNode(String nodeId) throws Exception {
+        NodeId node = nodeRegistry.resolve(nodeId);
 
+        DataValue value = client.readValue(0.0, TimestampsToReturn.Both, node);
+        liveness.markAlive();
+        return value;
     }
 
     public List<DataValue> readNodes(List<String> nodeIds) throws Exception {
-        List<NodeId> nodes = new ArrayList<>();
-        for (String nodeId : nodeIds) {
-            nodes.add(NodeId.parse(nodeId));
+        int chunk = chunkSize(maxNodesPerRead);
+        if (chunk > 0 && nodeIds.size() > chunk) {
+            return await(readNodesAsync(nodeIds));
         }
-        ReadValueId[] readValueIds = new ReadValueId[nodes.size()];
-        for (int i = 0; i < nodes.size(); i++) {
-            readValueIds[i] = new ReadValueId(nodes.get(i), AttributeId.Value.uid(), null, QualifiedName.NULL_VALUE);
+
+        ReadResponse response = client.read(0.0, TimestampsToReturn.Both, toReadValueIds(nodeIds));
+        liveness.markAlive();
+        return Arrays.asList(response.getResults());
+    }
+
+    /**
+     * Reads the server state on the current session. Success proves the server
+     * still answers requests, not just that a session object exists.
+     */
+    public CompletableFuture<DataValue> readServerStateAsync() {
+        OpcUaClient c = client;
+        if (c == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Not connected"));
         }
+        ReadValueId state = new ReadValueId(NodeIds.Server_ServerStatus_State, AttributeId.Value.uid(), null,
+                QualifiedName.NULL_VALUE);
+        return tracked(c.readAsync(0.0, TimestampsToReturn.Neither, List.of(state))
+                .thenApply(response -> response.getResults()[0]));
+    }
 
-        ReadResponse response = client.read(0.0, TimestampsToReturn.Both, Arrays.asList(readValueIds));
+    public CompletableFuture<DataValue> readNodeAsync(String nodeId) {
+        return readNodesAsync(List.of(nodeId)).thenApply(values -> values.get(0));
+    }
 
-        List<DataValue> values = new ArrayList<>();
-        for (DataValue dv : response.getResults()) {
-            values.add(dv);
+    /**
+     * Non-blocking variant of readNodes. Several requests can be in flight on the
+     * same session; the future completes on a Milo I/O thread.
+     */
+    public CompletableFuture<List<DataValue>> readNodesAsync(List<String> nodeIds) {
+        // Read once: a reconnect may replace or clear the field while chunks are sent
+        OpcUaClient c = client;
+        if (c == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Not connected"));
+        }
+        List<ReadValueId> readValueIds;
+        try {
+            readValueIds = toReadValueIds(nodeIds);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
         }
-        return values;
+        return tracked(dispatchChunked(readValueIds, chunkSize(maxNodesPerRead),
+                chunk -> c.readAsync(0.0, TimestampsToReturn.Both, chunk)
+                        .thenApply(response -> Arrays.asList(response.getResults()))));
+    }
+
+    private List<ReadValueId> toReadValueIds(List<String> nodeIds) {
+        List<ReadValueId> readValueIds = new ArrayList<>(nodeIds.size());
+        for (String nodeId : nodeIds) {
+            readValueIds.add(new ReadValueId(nodeRegistry.resolve(nodeId), AttributeId.Value.uid(), null,
+                    QualifiedName.NULL_VALUE));
+        }
+        return readValueIds;
     }
 
     public void writeNode(String nodeId, Object value) throws Exception {
-        NodeId node = NodeId.parse(nodeId);
+        NodeId node = nodeRegistry.resolve(nodeId);
         Variant variant = new Variant(value);
         DataValue dataValue = new DataValue(variant, StatusCode.GOOD, null);
 
         WriteValue writeValue = new WriteValue(node, AttributeId.Value.uid(), null, dataValue);
 
         WriteResponse response = client.write(Arrays.asList(writeValue));
+        liveness.markAlive();
 
         StatusCode code = response.getResults()[0];
         if (!code.isGood()) {
@@ -216,40 +467,355 @@ public class OpcUaConnector {
         }
     }
 
-    public void createSubscription(double publishingInterval) throws Exception {
-        subscription = publishingInterval;
-        logger.info("Subscription configured with publishing interval: {} ms", publishingInterval);
+    /**
+     * Writes several nodes in a single Write request. Unlike writeNode this does not
+     * throw on a bad status; the per-node codes are returned in request order.
+     */
+    public List<StatusCode> writeNodes(List<String> nodeIds, List<?> values) throws Exception {
+        if (nodeIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        int chunk = chunkSize(maxNodesPerWrite);
+        if (chunk > 0 && nodeIds.size() > chunk) {
+            return await(writeNodesAsync(nodeIds, values));
+        }
+
+        WriteResponse response = client.write(toWriteValues(nodeIds, values));
+        liveness.markAlive();
+        return Arrays.asList(response.getResults());
+    }
+
+    public CompletableFuture<List<StatusCode>> writeNodesAsync(List<String> nodeIds, List<?> values) {
+        OpcUaClient c = client;
+        if (c == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Not connected"));
+        }
+        if (nodeIds.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        List<WriteValue> writeValues;
+        try {
+            writeValues = toWriteValues(nodeIds, values);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return tracked(dispatchChunked(writeValues, chunkSize(maxNodesPerWrite),
+                chunk -> c.writeAsync(chunk)
+                        .thenApply(response -> Arrays.asList(response.getResults()))));
+    }
+
+    // Any answer from the server, good or bad status, proves the session is alive
+    private <T> CompletableFuture<T> tracked(CompletableFuture<T> future) {
+        return future.whenComplete((result, error) -> {
+            if (error == null) {
+                liveness.markAlive();
+            }
+        });
+    }
+
+    /**
+     * Splits the request into chunks of at most chunkSize items, sends them all at
+     * once and joins the per-chunk results back in the original order.
+     */
+    private static <T, R> CompletableFuture<List<R>> dispatchChunked(List<T> items, int chunkSize,
+            Function<List<T>, CompletableFuture<List<R>>> send) {
+        if (chunkSize <= 0 || items.size() <= chunkSize) {
+            return send.apply(items);
+        }
+
+        List<CompletableFuture<List<R>>> futures = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, items.size());
+            futures.add(send.apply(new ArrayList<>(items.subList(from, to))));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> {
+                    List<R> results = new ArrayList<>(items.size());
+                    for (CompletableFuture<List<R>> future : futures) {
+                        results.addAll(future.join());
+                    }
+                    return results;
+                });
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private List<WriteValue> toWriteValues(List<String> nodeIds, List<?> values) {
+        if (nodeIds.size() != values.size()) {
+            throw new IllegalArgumentException("nodeIds and values must have the same size");
+        }
+
+        List<WriteValue> writeValues = new ArrayList<>(nodeIds.size());
+        for (int i = 0; i < nodeIds.size(); i++) {
+            DataValue dataValue = new DataValue(new Variant(values.get(i)), StatusCode.GOOD, null);
+            writeValues.add(new WriteValue(nodeRegistry.resolve(nodeIds.get(i)), AttributeId.Value.uid(), null,
+                    dataValue));
+        }
+        return writeValues;
+    }
+
+    public synchronized void createSubscription(double publishingInterval) throws Exception {
+        deleteSubscription();
+        openSubscription(publishingInterval);
+        subscriptionInterval = publishingInterval;
+    }
+
+    private void openSubscription(double publishingInterval) throws Exception {
+        subscription = new OpcUaSubscription(client, publishingInterval);
+        if (maxMonitoredItemsPerCall > 0) {
+            subscription.setMaxMonitoredItemsPerCall(UInteger.valueOf(maxMonitoredItemsPerCall));
+        }
+        subscription.setSubscriptionListener(new OpcUaSubscription.SubscriptionListener() {
+            @Override
+            public void onDataReceived(OpcUaSubscription sub, List<OpcUaMonitoredItem> items,
+                    List<DataValue> values) {
+                liveness.markAlive();
+                dispatch(items, values);
+            }
+
+            @Override
+            public void onKeepAliveReceived(OpcUaSubscription sub) {
+                liveness.markAlive();
+            }
+
+            @Override
+            public void onWatchdogTimerElapsed(OpcUaSubscription sub) {
+                // An expected publish or keep-alive is overdue
+                liveness.markSuspect();
+            }
+
+            @Override
+            public void onTransferFailed(OpcUaSubscription failed, StatusCode status) {
+                // Milo could not move the subscription to the new session
+                logger.warn("Subscription transfer failed ({})", status);
+                for (Runnable listener : transferFailureListeners) {
+                    listener.run();
+                }
+            }
+        });
+        subscription.create();
+        logger.info("Subscription created with publishing interval: {} ms (revised: {} ms)",
+                publishingInterval, subscription.getRevisedPublishingInterval().orElse(publishingInterval));
+    }
+
+    public synchronized void deleteSubscription() {
+        subscriptionInterval = -1;
+        subscriptionRequests.clear();
+        if (subscription == null) {
+            return;
+        }
+        try {
+            subscription.delete();
+        } catch (Exception e) {
+            // Session may already be gone; the server discards the subscription on its own
+        }
+        subscription = null;
+        monitoredItems.clear();
+    }
+
+    /**
+     * Recreates the subscription and all monitored items from the recorded requests,
+     * e.g. after a new session could not take over the old subscription.
+     */
+    public synchronized void restoreSubscriptions() throws Exception {
+        if (subscriptionInterval < 0) {
+            return;
+        }
+        if (subscription != null) {
+            try {
+                subscription.delete();
+            } catch (Exception e) {
+                // Old session is gone
+            }
+            monitoredItems.clear();
+        }
+        openSubscription(subscriptionInterval);
+        for (SubscriptionRequest request : subscriptionRequests) {
+            addMonitoredItems(request);
+        }
+        logger.info("Restored subscription with {} monitored items", monitoredItems.size());
+    }
+
+    /**
+     * Subscribes to the given nodes using the subscription publishing interval as
+     * sampling interval, a queue size of 1 and a status/value data-change filter.
+     */
+    public void subscribeToNodes(
+            List<String> nodeIds,
+            BiConsumer<Object, DataValue> onValueChange) throws Exception {
+        subscribeToNodesBatched(nodeIds, perValue(onValueChange));
+    }
+
+    /**
+     * Like subscribeToNodes(nodeIds, onValueChange), but the values of each publish
+     * notification arrive in one call, e.g. to apply them as one update.
+     */
+    public void subscribeToNodesBatched(
+            List<String> nodeIds,
+            DataBatchListener onData) throws Exception {
+
+        if (subscription == null) {
+            throw new IllegalStateException("Subscription not created. Call createSubscription first.");
+        }
+
+        subscribeToNodesBatched(nodeIds, subscription.getPublishingInterval(), 1,
+                dataChangeFilter(DataChangeTrigger.StatusValue, DeadbandType.None, 0.0), onData);
     }
 
+    /**
+     * Creates one monitored item per node with the given sampling interval, queue
+     * size and filter. The callback receives the original node id string and the
+     * notified value. Call repeatedly with different settings to tune groups of nodes.
+     */
     public void subscribeToNodes(
             List<String> nodeIds,
+            double samplingInterval,
+            int queueSize,
+            DataChangeFilter filter,
             BiConsumer<Object, DataValue> onValueChange) throws Exception {
+        subscribeToNodesBatched(nodeIds, samplingInterval, queueSize, filter, perValue(onValueChange));
+    }
+
+    /**
+     * Like the per-value variant, but the values of each publish notification
+     * arrive in one call.
+     */
+    public synchronized void subscribeToNodesBatched(
+            List<String> nodeIds,
+            double samplingInterval,
+            int queueSize,
+            DataChangeFilter filter,
+            DataBatchListener onData) throws Exception {
 
         if (subscription == null) {
             throw new IllegalStateException("Subscription not created. Call createSubscription first.");
         }
 
-        logger.info("Subscribed to {} nodes (using polling mode)", nodeIds.size());
-        monitoredItems.addAll(nodeIds);
+        SubscriptionRequest request = new SubscriptionRequest(nodeIds, samplingInterval, queueSize, filter,
+                onData);
+        addMonitoredItems(request);
+        subscriptionRequests.add(request);
+    }
+
+    private void addMonitoredItems(SubscriptionRequest request) throws Exception {
+        List<OpcUaMonitoredItem> items = new ArrayList<>();
+        for (String nodeId : request.nodeIds) {
+            // Parsed id, not the registered alias: a transferred subscription outlives the session
+            OpcUaMonitoredItem item = OpcUaMonitoredItem.newDataItem(nodeRegistry.parse(nodeId));
+            item.setSamplingInterval(request.samplingInterval);
+            item.setQueueSize(UInteger.valueOf(Math.max(1, request.queueSize)));
+            item.setDiscardOldest(true);
+            if (request.filter != null) {
+                item.setFilter(request.filter);
+            }
+            // Values are delivered per publish notification by dispatch()
+            item.setUserObject(new MonitoredNode(nodeId, request));
+            items.add(item);
+        }
+
+        subscription.addMonitoredItems(items);
+        subscription.synchronizeMonitoredItems();
+        monitoredItems.addAll(items);
+
+        long failed = items.stream()
+                .filter(i -> i.getCreateResult().map(sc -> !sc.isGood()).orElse(true))
+                .count();
+        if (failed > 0) {
+            logger.warn("{} of {} monitored items could not be created", failed, items.size());
+        }
+        logger.info("Subscribed to {} nodes (sampling {} ms, queue {})", items.size(), request.samplingInterval,
+                request.queueSize);
+    }
+
+    private static DataBatchListener perValue(BiConsumer<Object, DataValue> onValueChange) {
+        return (nodeIds, values) -> {
+            for (int i = 0; i < nodeIds.size(); i++) {
+                onValueChange.accept(nodeIds.get(i), values.get(i));
+            }
+        };
+    }
+
+    // Splits one publish notification by subscription request, keeping the order
+    // within each; usually all items belong to the same request
+    private static void dispatch(List<OpcUaMonitoredItem> items, List<DataValue> values) {
+        Map<SubscriptionRequest, List<Integer>> byRequest = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            Object tag = items.get(i).getUserObject().orElse(null);
+            if (tag instanceof MonitoredNode) {
+                byRequest.computeIfAbsent(((MonitoredNode) tag).request, r -> new ArrayList<>()).add(i);
+            }
+        }
+        for (Map.Entry<SubscriptionRequest, List<Integer>> entry : byRequest.entrySet()) {
+            List<Integer> indices = entry.getValue();
+            List<String> nodeIds = new ArrayList<>(indices.size());
+            List<DataValue> batch = new ArrayList<>(indices.size());
+            for (int i : indices) {
+                nodeIds.add(((MonitoredNode) items.get(i).getUserObject().get()).nodeId);
+                batch.add(values.get(i));
+            }
+            try {
+                entry.getKey().onData.onData(nodeIds, batch);
+            } catch (RuntimeException e) {
+                logger.warn("Subscription listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    public static DataChangeFilter dataChangeFilter(DataChangeTrigger trigger, DeadbandType deadbandType,
+            double deadbandValue) {
+        return new DataChangeFilter(trigger, UInteger.valueOf(deadbandType.getValue()), deadbandValue);
     }
 
     public Variant[] callMethod(int namespaceIndex, String methodName, Variant... inputArguments) throws Exception {
-        NodeId objectsNodeId = Identifiers.ObjectsFolder;
-        NodeId si3NodeId = findObjectNode(objectsNodeId, namespaceIndex, "SI3");
-        NodeId methodNodeId = findMethodNode(si3NodeId, methodName);
+        MethodNodeCache.MethodTarget target = resolveMethod(namespaceIndex, METHODS_OBJECT, methodName);
 
         CallMethodRequest request = new CallMethodRequest(
-                si3NodeId,
-                methodNodeId,
+                target.objectId,
+                target.methodId,
                 inputArguments);
 
         CallResponse response = client.call(Arrays.asList(request));
+        liveness.markAlive();
+
+        return outputArguments(response);
+    }
+
+    /**
+     * Non-blocking variant of callMethod. On a cache miss the two browses are
+     * chained asynchronously before the Call is sent.
+     */
+    public CompletableFuture<Variant[]> callMethodAsync(int namespaceIndex, String methodName,
+            Variant... inputArguments) {
+        if (client == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Not connected"));
+        }
+        return resolveMethodAsync(namespaceIndex, METHODS_OBJECT, methodName)
+                .thenCompose(target -> tracked(client.callAsync(
+                        List.of(new CallMethodRequest(target.objectId, target.methodId, inputArguments)))))
+                .thenApply(this::outputArguments);
+    }
 
+    private Variant[] outputArguments(CallResponse response) {
         if (response.getResults() != null && response.getResults().length > 0) {
             CallMethodResult result = response.getResults()[0];
             if (result.getStatusCode().isGood()) {
                 return result.getOutputArguments();
             } else {
+                long code = result.getStatusCode().getValue();
+                if (code == StatusCodes.Bad_NodeIdUnknown || code == StatusCodes.Bad_MethodInvalid) {
+                    // Server address space changed; browse again on the next call
+                    methodCache.invalidate();
+                }
                 throw new RuntimeException("Method call failed: " + result.getStatusCode());
             }
         } else {
@@ -257,16 +823,83 @@ public class OpcUaConnector {
         }
     }
 
+    /**
+     * Browses the object once and caches every method it exposes, so later calls
+     * skip both browse round trips. Returns the number of methods cached.
+     */
+    public int warmMethodCache(int namespaceIndex) throws Exception {
+        String namespaceUri = client.getNamespaceTable().get(namespaceIndex);
+        NodeId objectNodeId = findObjectNode(Identifiers.ObjectsFolder, namespaceIndex, METHODS_OBJECT);
+        Map<String, NodeId> methods = browseMethods(objectNodeId);
+        for (Map.Entry<String, NodeId> method : methods.entrySet()) {
+            methodCache.put(namespaceIndex, METHODS_OBJECT, method.getKey(), namespaceUri,
+                    new MethodNodeCache.MethodTarget(objectNodeId, method.getValue()));
+        }
+        logger.info("Method cache warmed with {} methods of {}", methods.size(), METHODS_OBJECT);
+        return methods.size();
+    }
+
+    private MethodNodeCache.MethodTarget resolveMethod(int namespaceIndex, String objectName, String methodName)
+            throws Exception {
+        String namespaceUri = client.getNamespaceTable().get(namespaceIndex);
+        MethodNodeCache.MethodTarget cached = methodCache.get(namespaceIndex, objectName, methodName, namespaceUri);
+        if (cached != null) {
+            return cached;
+        }
+
+        NodeId objectNodeId = findObjectNode(Identifiers.ObjectsFolder, namespaceIndex, objectName);
+        NodeId methodNodeId = findMethodNode(objectNodeId, methodName);
+        MethodNodeCache.MethodTarget target = new MethodNodeCache.MethodTarget(objectNodeId, methodNodeId);
+        methodCache.put(namespaceIndex, objectName, methodName, namespaceUri, target);
+        return target;
+    }
+
+    private CompletableFuture<MethodNodeCache.MethodTarget> resolveMethodAsync(int namespaceIndex,
+            String objectName, String methodName) {
+        String namespaceUri = client.getNamespaceTable().get(namespaceIndex);
+        MethodNodeCache.MethodTarget cached = methodCache.get(namespaceIndex, objectName, methodName, namespaceUri);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return client.browseAsync(browseDescription(NodeIds.ObjectsFolder, NodeIds.Organizes))
+                .thenApply(result -> objectFromBrowse(result, namespaceIndex, objectName))
+                .thenCompose(objectNodeId -> client
+                        .browseAsync(browseDescription(objectNodeId, NodeIds.HasComponent))
+                        .thenApply(result -> {
+                            NodeId methodNodeId = methodFromBrowse(methodsFromBrowse(result), methodName);
+                            MethodNodeCache.MethodTarget target = new MethodNodeCache.MethodTarget(objectNodeId,
+                                    methodNodeId);
+                            methodCache.put(namespaceIndex, objectName, methodName, namespaceUri, target);
+                            return target;
+                        }));
+    }
+
     private NodeId findObjectNode(NodeId parentNodeId, int namespaceIndex, String objectName) throws Exception {
-        BrowseDescription browseDesc = new BrowseDescription(
+        BrowseResult browseResult = client.browse(browseDescription(parentNodeId, Identifiers.Organizes));
+        return objectFromBrowse(browseResult, namespaceIndex, objectName);
+    }
+
+    private NodeId findMethodNode(NodeId parentNodeId, String methodName) throws Exception {
+        return methodFromBrowse(browseMethods(parentNodeId), methodName);
+    }
+
+    private Map<String, NodeId> browseMethods(NodeId parentNodeId) throws Exception {
+        BrowseResult browseResult = client.browse(browseDescription(parentNodeId, Identifiers.HasComponent));
+        return methodsFromBrowse(browseResult);
+    }
+
+    private static BrowseDescription browseDescription(NodeId parentNodeId, NodeId referenceTypeId) {
+        return new BrowseDescription(
                 parentNodeId,
                 BrowseDirection.Forward,
-                Identifiers.Organizes,
+                referenceTypeId,
                 true,
                 UInteger.valueOf(0),
                 UInteger.valueOf(0));
+    }
 
-        BrowseResult browseResult = client.browse(browseDesc);
+    private NodeId objectFromBrowse(BrowseResult browseResult, int namespaceIndex, String objectName) {
         ReferenceDescription[] refs = browseResult.getReferences();
 
         for (ReferenceDescription ref : refs) {
@@ -281,31 +914,27 @@ public class OpcUaConnector {
         throw new RuntimeException("Object not found: " + objectName + " in namespace " + namespaceIndex);
     }
 
-    private NodeId findMethodNode(NodeId parentNodeId, String methodName) throws Exception {
-        BrowseDescription browseDesc = new BrowseDescription(
-                parentNodeId,
-                BrowseDirection.Forward,
-                Identifiers.HasComponent,
-                true,
-                UInteger.valueOf(0),
-                UInteger.valueOf(0));
-
-        BrowseResult browseResult = client.browse(browseDesc);
-
+    private Map<String, NodeId> methodsFromBrowse(BrowseResult browseResult) {
         ReferenceDescription[] refs = browseResult.getReferences();
-        List<String> availableMethods = new ArrayList<>();
+        Map<String, NodeId> methods = new LinkedHashMap<>();
 
         for (ReferenceDescription ref : refs) {
             if (ref.getNodeClass() == NodeClass.Method) {
-                String methodNameFound = ref.getBrowseName().getName();
-                availableMethods.add(methodNameFound);
-                if (methodNameFound.equalsIgnoreCase(methodName)) {
-                    return (NodeId) ref.getNodeId().toNodeId(client.getNamespaceTable()).get();
-                }
+                methods.put(ref.getBrowseName().getName(),
+                        ref.getNodeId().toNodeId(client.getNamespaceTable()).get());
+            }
+        }
+        return methods;
+    }
+
+    private static NodeId methodFromBrowse(Map<String, NodeId> methods, String methodName) {
+        for (Map.Entry<String, NodeId> method : methods.entrySet()) {
+            if (method.getKey().equalsIgnoreCase(methodName)) {
+                return method.getValue();
             }
         }
 
-        String availableList = availableMethods.isEmpty() ? "(ninguno)" : String.join(", ", availableMethods);
+        String availableList = methods.isEmpty() ? "(ninguno)" : String.join(", ", methods.keySet());
         throw new RuntimeException(String.format(
                 "Method not found: '%s'. Métodos disponibles en SI3: %s",
                 methodName, availableList));
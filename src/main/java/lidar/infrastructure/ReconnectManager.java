@@ -0,0 +1,296 @@
+package lidar.infrastructure;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.SessionActivityListener;
+import org.eclipse.milo.opcua.sdk.client.UaSession;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Keeps an OpcUaConnector connected. When the link drops it first gives Milo's
+ * session state machine a short window to reactivate the session (and transfer
+ * its subscriptions) on its own; only if that fails is the client rebuilt through
+ * OpcUaConnector.reconnect(), retried with exponential backoff and jitter. After a
+ * loss reported by a caller, the session Milo still holds only counts as
+ * recovered once a request on it succeeds, so a server that keeps the socket
+ * open but stops answering gets the client rebuilt.
+ * State changes run one at a time, on an internal thread or on a scheduler
+ * shared with other managers.
+ */
+public class ReconnectManager {
+    private static final Logger logger = LoggerFactory.getLogger(ReconnectManager.class);
+
+    public interface Listener {
+        /**
+         * @param sessionReactivated true when the previous session survived, so
+         *                           registered nodes and subscriptions are unchanged
+         */
+        default void onConnected(boolean sessionReactivated) {
+        }
+
+        default void onDisconnected() {
+        }
+    }
+
+    private final OpcUaConnector connector;
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final long reactivationWindowMs;
+    private final ScheduledExecutorService executor;
+    private final boolean sharedExecutor;
+    private final Object lock = new Object();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile Supplier<? extends CompletableFuture<?>> sessionCheck;
+
+    // Only touched while holding lock
+    private boolean connected;
+    private long nextDelayMs;
+    private NodeId lastSessionId;
+    // Also read by stop()
+    private volatile ScheduledFuture<?> pendingAttempt;
+
+    private volatile CompletableFuture<Void> connectedSignal = new CompletableFuture<>();
+
+    public ReconnectManager(OpcUaConnector connector, long initialDelayMs, long maxDelayMs) {
+        this(connector, initialDelayMs, maxDelayMs, 2000);
+    }
+
+    public ReconnectManager(OpcUaConnector connector, long initialDelayMs, long maxDelayMs,
+            long reactivationWindowMs) {
+        this(connector, initialDelayMs, maxDelayMs, reactivationWindowMs, null);
+    }
+
+    /**
+     * Schedules attempts on the given executor, e.g. a fleet-wide one; stop() then
+     * cancels only this manager's pending attempt.
+     */
+    public ReconnectManager(OpcUaConnector connector, long initialDelayMs, long maxDelayMs,
+            long reactivationWindowMs, ScheduledExecutorService sharedExecutor) {
+        this.connector = connector;
+        this.initialDelayMs = Math.max(1, initialDelayMs);
+        this.maxDelayMs = Math.max(this.initialDelayMs, maxDelayMs);
+        this.reactivationWindowMs = Math.max(0, reactivationWindowMs);
+        this.nextDelayMs = this.initialDelayMs;
+        this.sessionCheck = connector::readServerStateAsync;
+        this.sharedExecutor = sharedExecutor != null;
+        this.executor = sharedExecutor != null ? sharedExecutor : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "opcua-reconnect");
+            t.setDaemon(true);
+            return t;
+        });
+
+        connector.addSessionActivityListener(new SessionActivityListener() {
+            @Override
+            public void onSessionActive(UaSession session) {
+                submit(() -> sessionActive(session.getSessionId(), true));
+            }
+
+            @Override
+            public void onSessionInactive(UaSession session) {
+                connectionLost();
+            }
+        });
+        connector.addTransferFailureListener(() -> submit(this::restoreSubscriptions));
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Request that must succeed on a surviving session before it is trusted
+     * again after a reported loss; by default a read of the server state.
+     */
+    public void setSessionCheck(Supplier<? extends CompletableFuture<?>> sessionCheck) {
+        this.sessionCheck = sessionCheck;
+    }
+
+    public void start() {
+        if (running.compareAndSet(false, true)) {
+            submit(() -> scheduleAttempt(0));
+        }
+    }
+
+    public void stop() {
+        running.set(false);
+        if (sharedExecutor) {
+            // Not under the lock, which an attempt holds for the whole connect
+            ScheduledFuture<?> pending = pendingAttempt;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+        } else {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isConnected() {
+        return connectedSignal.isDone();
+    }
+
+    /**
+     * Blocks until connected or the timeout elapses.
+     */
+    public boolean awaitConnected(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            connectedSignal.get(timeout, unit);
+            return true;
+        } catch (java.util.concurrent.TimeoutException e) {
+            return false;
+        } catch (java.util.concurrent.ExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reports a failure seen by a caller (e.g. a missed heartbeat). Safe to call
+     * from any thread and any number of times.
+     */
+    public void connectionLost() {
+        if (!running.get())
+            return;
+        submit(this::handleConnectionLost);
+    }
+
+    private void handleConnectionLost() {
+        if (!connected || pendingAttempt != null)
+            return;
+
+        markDisconnected();
+
+        // Give Milo a chance to reactivate the existing session before rebuilding.
+        // getSessionAsync returns a cached session as long as Milo believes it is
+        // active, so the session must also answer a request within the window.
+        OpcUaClient client = connector.getClient();
+        if (client == null) {
+            scheduleAttempt(0);
+            return;
+        }
+        client.getSessionAsync()
+                .thenCompose(session -> sessionCheck.get().thenApply(result -> session))
+                .orTimeout(reactivationWindowMs, TimeUnit.MILLISECONDS)
+                .whenComplete((session, error) -> submit(() -> {
+                    if (error == null) {
+                        sessionActive(session.getSessionId(), false);
+                    } else if (!connected && pendingAttempt == null) {
+                        logger.info("Session did not answer within {} ms, reconnecting", reactivationWindowMs);
+                        scheduleAttempt(0);
+                    }
+                }));
+    }
+
+    /**
+     * @param activated true when Milo just activated the session, which is itself
+     *                  traffic; otherwise the session check already counted
+     */
+    private void sessionActive(NodeId sessionId, boolean activated) {
+        if (connected || pendingAttempt != null || !running.get())
+            return;
+
+        boolean reactivated = Objects.equals(sessionId, lastSessionId);
+        if (!reactivated) {
+            // New session: aliases from RegisterNodes belonged to the old one
+            connector.renewNodeRegistrations();
+        }
+        if (activated) {
+            connector.getLiveness().markAlive();
+        }
+        markConnected(reactivated, sessionId);
+    }
+
+    // The session survived but its subscription did not; a reconnect would
+    // restore it anyway, and a failed restore is handled like a lost connection
+    private void restoreSubscriptions() {
+        if (!running.get() || pendingAttempt != null)
+            return;
+        try {
+            connector.restoreSubscriptions();
+        } catch (Exception e) {
+            logger.warn("Could not recreate subscription ({}), reconnecting", e.getMessage());
+            if (connected) {
+                markDisconnected();
+            }
+            scheduleAttempt(0);
+        }
+    }
+
+    private void scheduleAttempt(long delayMs) {
+        if (!running.get())
+            return;
+        pendingAttempt = executor.schedule(() -> serialized(this::attempt), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(() -> serialized(task));
+        } catch (RejectedExecutionException e) {
+            // Stopped
+        }
+    }
+
+    // On a shared pool tasks of this manager may run on different threads at once
+    private void serialized(Runnable task) {
+        synchronized (lock) {
+            task.run();
+        }
+    }
+
+    private void attempt() {
+        pendingAttempt = null;
+        if (!running.get() || connected)
+            return;
+
+        try {
+            connector.reconnect();
+            markConnected(false, connector.getSessionId());
+        } catch (Exception e) {
+            long delay = jitter(nextDelayMs);
+            nextDelayMs = Math.min(maxDelayMs, nextDelayMs * 2);
+            logger.warn("Reconnect failed ({}), next attempt in {} ms", e.getMessage(), delay);
+            scheduleAttempt(delay);
+        }
+    }
+
+    private void markConnected(boolean reactivated, NodeId sessionId) {
+        connected = true;
+        nextDelayMs = initialDelayMs;
+        lastSessionId = sessionId;
+        logger.info(reactivated ? "Session reactivated" : "Connected with a new session");
+        for (Listener listener : listeners) {
+            listener.onConnected(reactivated);
+        }
+        // Waiters are released only after the listeners ran
+        connectedSignal.complete(null);
+    }
+
+    private void markDisconnected() {
+        connected = false;
+        if (connectedSignal.isDone()) {
+            connectedSignal = new CompletableFuture<>();
+        }
+        for (Listener listener : listeners) {
+            listener.onDisconnected();
+        }
+    }
+
+    // +/-20% so devices that dropped together do not retry in lockstep
+    private static long jitter(long delayMs) {
+        double factor = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return Math.max(1, (long) (delayMs * factor));
+    }
+}
@@ -0,0 +1,104 @@
+package lidar.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Coarse wall clock for history retention, advanced by one background thread
+ * every TICK_MS. Appends compare against a cutoff derived from it instead of
+ * reading the system clock per sample, and because the cutoff only moves once a
+ * tick, expired samples are dropped in bulk once per tick rather than one by one
+ * on every append. Repos registered with the clock also get a call on every tick,
+ * so series that are no longer appended to still release what expired.
+ */
+final class RetentionClock {
+    private static final Logger logger = LoggerFactory.getLogger(RetentionClock.class);
+
+    static final long TICK_MS = 1000;
+
+    // Holds its owner weakly, so an unused repo is not kept alive by the clock
+    private static final class Registration<T> {
+        final WeakReference<T> owner;
+        final ObjLongConsumer<? super T> onTick;
+
+        Registration(T owner, ObjLongConsumer<? super T> onTick) {
+            this.owner = new WeakReference<>(owner);
+            this.onTick = onTick;
+        }
+
+        // False once the owner was collected
+        boolean run(long epochNanos) {
+            T current = owner.get();
+            if (current == null)
+                return false;
+            onTick.accept(current, epochNanos);
+            return true;
+        }
+    }
+
+    private static volatile long nowNanos = HistorySeries.toEpochNanos(Instant.now());
+    private static final List<Registration<?>> registrations = new CopyOnWriteArrayList<>();
+
+    static {
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "history-retention-clock");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(() -> tick(HistorySeries.toEpochNanos(Instant.now())), TICK_MS, TICK_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private RetentionClock() {
+    }
+
+    /**
+     * Current time as of the last tick, in epoch nanoseconds.
+     */
+    static long nowNanos() {
+        return nowNanos;
+    }
+
+    /**
+     * Oldest timestamp still inside a retention window, as of the last tick.
+     */
+    static long cutoffNanos(long retentionNanos) {
+        return nowNanos - retentionNanos;
+    }
+
+    /**
+     * Calls onTick with the owner and the new time on the clock thread after
+     * every tick, until the owner is garbage collected. onTick must not hold on
+     * to the owner.
+     */
+    static <T> void register(T owner, ObjLongConsumer<? super T> onTick) {
+        registrations.add(new Registration<>(owner, onTick));
+    }
+
+    /**
+     * Moves the clock to the given time and runs the registered callbacks. Called
+     * by the ticker thread; tests call it to move the clock.
+     */
+    static void tick(long epochNanos) {
+        nowNanos = epochNanos;
+        for (Registration<?> registration : registrations) {
+            try {
+                if (!registration.run(epochNanos)) {
+                    registrations.remove(registration);
+                }
+            } catch (RuntimeException e) {
+                // The ticker must survive a failing callback
+                logger.warn("Retention tick failed: {}", e.getMessage());
+            }
+        }
+    }
+}
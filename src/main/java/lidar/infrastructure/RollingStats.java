@@ -0,0 +1,179 @@
+package lidar.infrastructure;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Aggregates over the samples currently retained by a HistorySeries, kept up to
+ * date as samples are appended and pruned so a query never scans the raw data.
+ * Min and max come from monotonic deques, mean and variance from Welford's
+ * running moments (with the inverse update on removal). NaN values are counted
+ * but left out of the numeric aggregates.
+ *
+ * Updated by the series' single writer; readers take a seqlock-validated copy.
+ */
+final class RollingStats {
+
+    // Deque of (seq, value) pairs whose values are monotonic from front to back
+    private static final class MonotonicDeque {
+        private final boolean keepMin;
+        private long[] seqs = new long[16];
+        private double[] values = new double[16];
+        private int first;
+        private int size;
+
+        MonotonicDeque(boolean keepMin) {
+            this.keepMin = keepMin;
+        }
+
+        void add(long seq, double value) {
+            // Values that can never be the extreme again leave from the back
+            while (size > 0) {
+                double back = values[(first + size - 1) & (values.length - 1)];
+                if (keepMin ? back >= value : back <= value) {
+                    size--;
+                } else {
+                    break;
+                }
+            }
+            if (size == values.length) {
+                grow();
+            }
+            int slot = (first + size) & (values.length - 1);
+            seqs[slot] = seq;
+            values[slot] = value;
+            size++;
+        }
+
+        void expireBefore(long seq) {
+            while (size > 0 && seqs[first] < seq) {
+                first = (first + 1) & (values.length - 1);
+                size--;
+            }
+        }
+
+        double front() {
+            return size > 0 ? values[first] : Double.NaN;
+        }
+
+        private void grow() {
+            long[] newSeqs = new long[seqs.length * 2];
+            double[] newValues = new double[values.length * 2];
+            for (int i = 0; i < size; i++) {
+                int slot = (first + i) & (values.length - 1);
+                newSeqs[i] = seqs[slot];
+                newValues[i] = values[slot];
+            }
+            seqs = newSeqs;
+            values = newValues;
+            first = 0;
+        }
+    }
+
+    private final MonotonicDeque minDeque = new MonotonicDeque(true);
+    private final MonotonicDeque maxDeque = new MonotonicDeque(false);
+
+    // Even when stable, odd while the writer is updating the fields below
+    private volatile long version;
+
+    private long count;
+    private long numericCount;
+    private double mean;
+    private double m2;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private long lastTimeNanos;
+    private long lastChangeNanos;
+    private boolean hasLast;
+    private double lastDouble;
+    private Object lastObject;
+
+    /**
+     * Adds a sample. For numeric series pass the value as a double and null as
+     * object; for other series pass NaN and the value.
+     */
+    void add(long seq, long timeNanos, double value, Object objectValue) {
+        boolean changed = !hasLast || (objectValue != null
+                ? !objectValue.equals(lastObject)
+                : Double.doubleToLongBits(value) != Double.doubleToLongBits(lastDouble));
+
+        beginWrite();
+        count++;
+        if (!Double.isNaN(value)) {
+            numericCount++;
+            double delta = value - mean;
+            mean += delta / numericCount;
+            m2 += delta * (value - mean);
+            minDeque.add(seq, value);
+            maxDeque.add(seq, value);
+            min = minDeque.front();
+            max = maxDeque.front();
+        }
+        if (changed) {
+            lastChangeNanos = timeNanos;
+        }
+        lastTimeNanos = timeNanos;
+        lastDouble = value;
+        lastObject = objectValue;
+        hasLast = true;
+        endWrite();
+    }
+
+    /**
+     * Removes a pruned sample; newHead is the sequence of the oldest sample left.
+     */
+    void remove(long newHead, double value) {
+        beginWrite();
+        count--;
+        if (!Double.isNaN(value)) {
+            numericCount--;
+            if (numericCount == 0) {
+                mean = 0;
+                m2 = 0;
+            } else {
+                double delta = value - mean;
+                mean -= delta / numericCount;
+                m2 = Math.max(0, m2 - delta * (value - mean));
+            }
+        }
+        minDeque.expireBefore(newHead);
+        maxDeque.expireBefore(newHead);
+        min = minDeque.front();
+        max = maxDeque.front();
+        endWrite();
+    }
+
+    HistoryStats read() {
+        while (true) {
+            long before = version;
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long c = count;
+            long n = numericCount;
+            double mn = min;
+            double mx = max;
+            double avg = mean;
+            double var = n > 0 ? m2 / n : Double.NaN;
+            long lastTime = lastTimeNanos;
+            long lastChange = lastChangeNanos;
+            boolean any = hasLast;
+            VarHandle.acquireFence();
+            if (version != before)
+                continue;
+
+            return new HistoryStats(c, n > 0 ? mn : Double.NaN, n > 0 ? mx : Double.NaN, n > 0 ? avg : Double.NaN,
+                    Math.sqrt(var), any ? HistorySeries.toInstant(lastTime) : null,
+                    any ? HistorySeries.toInstant(lastChange) : null);
+        }
+    }
+
+    private void beginWrite() {
+        version = version + 1;
+        VarHandle.storeStoreFence();
+    }
+
+    private void endWrite() {
+        version = version + 1;
+    }
+}
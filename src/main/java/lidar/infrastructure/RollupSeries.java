@@ -0,0 +1,188 @@
+package lidar.infrastructure;
+
+/**
+ * One rollup tier of one numeric attribute: a growable ring of fixed-width
+ * buckets, each holding min, max, sum and count. The writer folds every sample
+ * into the bucket at the tail and publishes it by advancing the tail once a
+ * sample for a later bucket arrives, so readers only ever see complete buckets.
+ * Same single-writer, lock-free-reader scheme as HistorySeries.
+ */
+final class RollupSeries {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final class Buffer {
+        final long[] starts;
+        final double[] mins;
+        final double[] maxs;
+        final double[] sums;
+        final long[] counts;
+        final int mask;
+
+        Buffer(int capacity) {
+            starts = new long[capacity];
+            mins = new double[capacity];
+            maxs = new double[capacity];
+            sums = new double[capacity];
+            counts = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return starts.length;
+        }
+    }
+
+    private final long resolutionNanos;
+    private final long retentionNanos;
+
+    private volatile Buffer buffer = new Buffer(MIN_CAPACITY);
+    private volatile long head;
+    private volatile long tail;
+    // Writer only: whether the slot at tail holds the bucket being filled
+    private boolean open;
+    private long openStart;
+    private long lastCutoff = Long.MIN_VALUE;
+
+    RollupSeries(RollupTier tier) {
+        this.resolutionNanos = tier.getResolution().toNanos();
+        this.retentionNanos = tier.getRetention().toNanos();
+    }
+
+    long getResolutionNanos() {
+        return resolutionNanos;
+    }
+
+    long getRetentionNanos() {
+        return retentionNanos;
+    }
+
+    /**
+     * Folds a sample into its bucket. A sample older than the open bucket is
+     * counted in the open bucket rather than reopening a published one. Writer
+     * thread only.
+     */
+    void add(long epochNanos, double value) {
+        if (Double.isNaN(value))
+            return;
+        long start = Math.floorDiv(epochNanos, resolutionNanos) * resolutionNanos;
+        Buffer b = buffer;
+        if (open && start > openStart) {
+            // Publishes the finished bucket
+            tail = tail + 1;
+            open = false;
+        }
+        if (!open) {
+            if (tail - head == b.capacity() - 1) {
+                b = copyOf(b, head, tail + 1, b.capacity() * 2);
+                buffer = b;
+            }
+            int slot = (int) (tail & b.mask);
+            b.starts[slot] = start;
+            b.mins[slot] = value;
+            b.maxs[slot] = value;
+            b.sums[slot] = value;
+            b.counts[slot] = 1;
+            open = true;
+            openStart = start;
+            return;
+        }
+        int slot = (int) (tail & b.mask);
+        b.mins[slot] = Math.min(b.mins[slot], value);
+        b.maxs[slot] = Math.max(b.maxs[slot], value);
+        b.sums[slot] += value;
+        b.counts[slot]++;
+    }
+
+    /**
+     * Drops complete buckets that ended before the tier's retention window, once
+     * per RetentionClock tick. Writer thread only.
+     */
+    void prune() {
+        long cutoff = RetentionClock.cutoffNanos(retentionNanos);
+        if (cutoff == lastCutoff)
+            return;
+        lastCutoff = cutoff;
+        Buffer b = buffer;
+        long h = head;
+        long t = tail;
+        while (h < t && b.starts[(int) (h & b.mask)] + resolutionNanos <= cutoff) {
+            h++;
+        }
+        head = h;
+        // Keep one slot beyond the tail for the open bucket
+        if (b.capacity() > MIN_CAPACITY && t + 1 - h <= b.capacity() / 4) {
+            buffer = copyOf(b, h, t + 1, Math.max(MIN_CAPACITY, b.capacity() / 2));
+        }
+    }
+
+    long sizeInBytes() {
+        return buffer.capacity() * 40L;
+    }
+
+    /**
+     * Complete buckets overlapping [fromNanos, toNanos], copied without blocking
+     * the writer.
+     */
+    RollupSnapshot snapshot(long fromNanos, long toNanos) {
+        while (true) {
+            Buffer b = buffer;
+            long t = tail;
+            long h = head;
+            if (b != buffer)
+                continue;
+
+            long first = lowerBound(b, h, t,
+                    fromNanos == Long.MIN_VALUE ? Long.MIN_VALUE : fromNanos - resolutionNanos + 1);
+            long end = lowerBound(b, first, t, toNanos == Long.MAX_VALUE ? Long.MAX_VALUE : toNanos + 1);
+            int n = (int) Math.max(0, end - first);
+            long[] starts = new long[n];
+            double[] mins = new double[n];
+            double[] maxs = new double[n];
+            double[] sums = new double[n];
+            long[] counts = new long[n];
+            for (int i = 0; i < n; i++) {
+                int slot = (int) ((first + i) & b.mask);
+                starts[i] = b.starts[slot];
+                mins[i] = b.mins[slot];
+                maxs[i] = b.maxs[slot];
+                sums[i] = b.sums[slot];
+                counts[i] = b.counts[slot];
+            }
+            // The open bucket's slot is at tail, so a slot below tail is rewritten
+            // only after the writer wrapped around
+            if (tail - h >= b.capacity() - 1)
+                continue;
+            return new RollupSnapshot(resolutionNanos, n, starts, mins, maxs, sums, counts);
+        }
+    }
+
+    // First sequence in [from, to) whose bucket starts at or after nanos
+    private static long lowerBound(Buffer b, long from, long to, long nanos) {
+        long lo = from;
+        long hi = to;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (b.starts[(int) (mid & b.mask)] < nanos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static Buffer copyOf(Buffer from, long h, long end, int capacity) {
+        Buffer to = new Buffer(capacity);
+        for (long seq = h; seq < end; seq++) {
+            int src = (int) (seq & from.mask);
+            int dst = (int) (seq & to.mask);
+            to.starts[dst] = from.starts[src];
+            to.mins[dst] = from.mins[src];
+            to.maxs[dst] = from.maxs[src];
+            to.sums[dst] = from.sums[src];
+            to.counts[dst] = from.counts[src];
+        }
+        return to;
+    }
+}
@@ -0,0 +1,110 @@
+package lidar.infrastructure;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Immutable min/max/mean/count buckets of one numeric attribute. Bucket i covers
+ * [getBucketStart(i), getBucketStart(i) + getResolution()).
+ */
+public final class RollupSnapshot {
+    static final RollupSnapshot EMPTY = new RollupSnapshot(0, 0, new long[0], new double[0], new double[0],
+            new double[0], new long[0]);
+
+    private final long resolutionNanos;
+    private final int size;
+    private final long[] starts;
+    private final double[] mins;
+    private final double[] maxs;
+    private final double[] sums;
+    private final long[] counts;
+
+    RollupSnapshot(long resolutionNanos, int size, long[] starts, double[] mins, double[] maxs, double[] sums,
+            long[] counts) {
+        this.resolutionNanos = resolutionNanos;
+        this.size = size;
+        this.starts = starts;
+        this.mins = mins;
+        this.maxs = maxs;
+        this.sums = sums;
+        this.counts = counts;
+    }
+
+    /**
+     * Buckets of the given width computed from raw samples, for ranges finer than
+     * any rollup tier. Samples must be numeric and in time order.
+     */
+    static RollupSnapshot aggregate(HistorySnapshot raw, long resolutionNanos) {
+        int n = raw.size();
+        long[] starts = new long[n];
+        double[] mins = new double[n];
+        double[] maxs = new double[n];
+        double[] sums = new double[n];
+        long[] counts = new long[n];
+        int k = -1;
+        for (int i = 0; i < n; i++) {
+            long start = Math.floorDiv(raw.getTimeNanos(i), resolutionNanos) * resolutionNanos;
+            double v = raw.getDouble(i);
+            if (k < 0 || starts[k] != start) {
+                k++;
+                starts[k] = start;
+                mins[k] = v;
+                maxs[k] = v;
+                sums[k] = v;
+                counts[k] = 1;
+            } else {
+                mins[k] = Math.min(mins[k], v);
+                maxs[k] = Math.max(maxs[k], v);
+                sums[k] += v;
+                counts[k]++;
+            }
+        }
+        return new RollupSnapshot(resolutionNanos, k + 1, starts, mins, maxs, sums, counts);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Duration getResolution() {
+        return Duration.ofNanos(resolutionNanos);
+    }
+
+    public long getBucketStartNanos(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    public Instant getBucketStart(int index) {
+        return HistorySeries.toInstant(getBucketStartNanos(index));
+    }
+
+    public double getMin(int index) {
+        checkIndex(index);
+        return mins[index];
+    }
+
+    public double getMax(int index) {
+        checkIndex(index);
+        return maxs[index];
+    }
+
+    public double getMean(int index) {
+        checkIndex(index);
+        return sums[index] / counts[index];
+    }
+
+    public long getCount(int index) {
+        checkIndex(index);
+        return counts[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+}
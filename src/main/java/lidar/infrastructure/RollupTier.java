@@ -0,0 +1,39 @@
+package lidar.infrastructure;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * One resolution of rolled-up history: min/max/mean/count per bucket of the
+ * given width, kept for the given retention.
+ */
+public final class RollupTier {
+
+    /** 1-second buckets for a day and 1-minute buckets for 30 days. */
+    public static final List<RollupTier> DEFAULTS = List.of(
+            new RollupTier(Duration.ofSeconds(1), Duration.ofHours(24)),
+            new RollupTier(Duration.ofMinutes(1), Duration.ofDays(30)));
+
+    private final Duration resolution;
+    private final Duration retention;
+
+    public RollupTier(Duration resolution, Duration retention) {
+        if (resolution.isNegative() || resolution.isZero())
+            throw new IllegalArgumentException("Resolution must be positive: " + resolution);
+        this.resolution = resolution;
+        this.retention = retention;
+    }
+
+    public Duration getResolution() {
+        return resolution;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    @Override
+    public String toString() {
+        return resolution + " for " + retention;
+    }
+}
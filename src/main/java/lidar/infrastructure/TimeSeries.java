@@ -0,0 +1,44 @@
+package lidar.infrastructure;
+
+/**
+ * Storage of one attribute's samples inside MemoryHistoryRepo. Changes come from
+ * one thread at a time (the attribute's writer, or the retention clock pruning
+ * under the attribute's lock); any thread may take snapshots.
+ */
+interface TimeSeries {
+
+    /**
+     * Returns false if the value does not fit the attribute type and was dropped.
+     */
+    boolean append(long epochNanos, Object value);
+
+    void pruneBefore(long cutoffNanos);
+
+    /**
+     * Drops the oldest samples until sizeInBytes() is at most maxBytes, or as close
+     * as the storage allows.
+     */
+    void evictOldest(long maxBytes);
+
+    /**
+     * Drops the oldest samples beyond the newest maxSamples, or as close as the
+     * storage allows.
+     */
+    void keepNewest(int maxSamples);
+
+    /**
+     * Estimated memory held by the retained samples.
+     */
+    long sizeInBytes();
+
+    HistorySnapshot snapshot(long fromNanos, long toNanos);
+
+    /**
+     * Time of the newest retained sample older than nanos, or Long.MIN_VALUE.
+     */
+    long lastTimeBefore(long nanos);
+
+    HistoryStats getStats();
+
+    long getVersion();
+}
@@ -0,0 +1,89 @@
+package lidar.application.monitor;
+
+import lidar.client.domain.LIDAR;
+import lidar.client.domain.RangeProfile;
+import lidar.infrastructure.HistorySnapshot;
+import lidar.infrastructure.MemoryHistoryRepo;
+import lidar.infrastructure.OpcUaConnector;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class PollingMonitorTest {
+
+    @Test
+    void testPoll_KeepsRunningAfterReadThrows() throws Exception {
+        OpcUaConnector connector = mock(OpcUaConnector.class);
+        when(connector.readNodesAsync(anyList()))
+                .thenThrow(new NullPointerException("client cleared by reconnect"))
+                .thenReturn(CompletableFuture.completedFuture(List.of(new DataValue(new Variant(7)))));
+
+        LIDAR lidar = new LIDAR();
+        CountDownLatch polled = new CountDownLatch(1);
+        lidar.addListener(changes -> polled.countDown(), "heartbeat");
+        PollingMonitor monitor = new PollingMonitor(connector, Map.of("heartbeat", "ns=2;s=hb"), lidar,
+                new MemoryHistoryRepo(10), 0.01);
+        monitor.start();
+        try {
+            assertTrue(polled.await(5, TimeUnit.SECONDS));
+        } finally {
+            monitor.stop();
+        }
+        assertEquals(Integer.valueOf(7), lidar.getHeartbeat());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testProfileHistory_IsOptInAndBounded() throws Exception {
+        String attr = "backscatter_coefficient_beta_z";
+        String frames = attr + RangeProfile.HISTORY_SUFFIX;
+        OpcUaConnector connector = mock(OpcUaConnector.class);
+        when(connector.readNodesAsync(anyList())).thenReturn(
+                profileRead(new double[] { 1, 2 }),
+                profileRead(new double[] { 3, 4 }),
+                profileRead(new double[] { 5, 6 }));
+
+        // Off by default: the profile is decoded into the LIDAR, but not recorded
+        MemoryHistoryRepo history = new MemoryHistoryRepo(10);
+        pollCycles(connector, attr, history, false, 2);
+        assertEquals(0, history.getSnapshot(frames).size());
+        assertEquals(0, history.getSnapshot(attr).size());
+
+        // A fourth cycle starts only after the third was recorded
+        history = new MemoryHistoryRepo(10);
+        history.setMaxSamples(frames, 2);
+        pollCycles(connector, attr, history, true, 4);
+        HistorySnapshot snapshot = history.getSnapshot(frames);
+        assertEquals(2, snapshot.size());
+        assertArrayEquals(new double[] { 5, 6 }, (double[]) snapshot.getValue(1));
+    }
+
+    private static CompletableFuture<List<DataValue>> profileRead(double[] bins) {
+        return CompletableFuture.completedFuture(List.of(new DataValue(new Variant(bins))));
+    }
+
+    private static void pollCycles(OpcUaConnector connector, String attr, MemoryHistoryRepo history,
+            boolean profileHistory, int cycles) throws InterruptedException {
+        LIDAR lidar = new LIDAR();
+        CountDownLatch polled = new CountDownLatch(cycles);
+        lidar.addListener(changes -> polled.countDown(), attr);
+        PollingMonitor monitor = new PollingMonitor(connector, Map.of(attr, "ns=2;s=beta"), lidar, history, 0.01);
+        monitor.setProfileHistory(profileHistory);
+        monitor.start();
+        try {
+            assertTrue(polled.await(5, TimeUnit.SECONDS));
+        } finally {
+            monitor.stop();
+        }
+    }
+}
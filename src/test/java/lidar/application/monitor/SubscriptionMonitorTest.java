@@ -0,0 +1,52 @@
+package lidar.application.monitor;
+
+import lidar.client.domain.LIDAR;
+import lidar.client.domain.LIDARChangeSet;
+import lidar.infrastructure.MemoryHistoryRepo;
+import lidar.infrastructure.OpcUaConnector;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class SubscriptionMonitorTest {
+
+    @Test
+    void testPublishNotification_IsOneCycle() throws Exception {
+        OpcUaConnector connector = mock(OpcUaConnector.class);
+        Map<String, String> attrMap = new LinkedHashMap<>();
+        attrMap.put("heartbeat", "ns=2;s=hb");
+        attrMap.put("device_status", "ns=2;s=status");
+
+        LIDAR lidar = new LIDAR();
+        List<LIDARChangeSet> cycles = new ArrayList<>();
+        List<Boolean> bothChanged = new ArrayList<>();
+        lidar.addListener(changes -> {
+            cycles.add(changes);
+            bothChanged.add(changes.isChanged("heartbeat") && changes.isChanged("device_status"));
+        }, "heartbeat", "device_status");
+
+        SubscriptionMonitor monitor = new SubscriptionMonitor(connector, attrMap, lidar,
+                new MemoryHistoryRepo(10), 500.0);
+        monitor.start();
+        ArgumentCaptor<OpcUaConnector.DataBatchListener> listener =
+                ArgumentCaptor.forClass(OpcUaConnector.DataBatchListener.class);
+        verify(connector).subscribeToNodesBatched(anyList(), listener.capture());
+
+        listener.getValue().onData(List.of("ns=2;s=hb", "ns=2;s=status"),
+                List.of(new DataValue(new Variant(7)), new DataValue(new Variant(1))));
+
+        assertEquals(1, cycles.size());
+        assertTrue(bothChanged.get(0));
+        assertEquals(Integer.valueOf(7), lidar.getHeartbeat());
+    }
+}
@@ -0,0 +1,239 @@
+package lidar.client.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LIDARTest {
+
+    @Test
+    void testAttrId_RoundTripsEveryAttribute() {
+        assertEquals(108, LIDAR.attrCount());
+        for (int id = 0; id < LIDAR.attrCount(); id++) {
+            assertEquals(id, LIDAR.attrId(LIDAR.attrName(id)));
+            assertNotNull(LIDAR.attrType(id));
+        }
+        assertEquals(-1, LIDAR.attrId("no_such_attribute"));
+        assertNull(LIDAR.attrType("no_such_attribute"));
+    }
+
+    @Test
+    void testSetAttr_ByIdConvertsToFieldType() {
+        LIDAR lidar = new LIDAR();
+
+        lidar.setAttr(LIDAR.attrId("pbl_height"), 1234.5f);
+        lidar.setAttr(LIDAR.attrId("web_port"), "8080");
+        lidar.setAttr(LIDAR.attrId("verbose_status"), 1);
+        lidar.setAttr(LIDAR.attrId("serial_number"), 42);
+        lidar.setAttr(LIDAR.attrId("web_port"), null);
+        lidar.setAttr("no_such_attribute", 1.0);
+
+        assertEquals(1234.5, lidar.getPblHeight());
+        assertEquals(Integer.valueOf(8080), lidar.getWebPort());
+        assertEquals(Boolean.TRUE, lidar.getVerboseStatus());
+        assertEquals("42", lidar.getSerialNumber());
+    }
+
+    @Test
+    void testPrimitiveAccess_TracksPresence() {
+        LIDAR lidar = new LIDAR();
+        int pbl = LIDAR.attrId("pbl_height");
+        int port = LIDAR.attrId("web_port");
+
+        assertFalse(lidar.isSet(pbl));
+        assertNull(lidar.getPblHeight());
+        assertNull(lidar.getAllValues().get("pbl_height"));
+
+        lidar.setAttr(pbl, 812.25);
+        lidar.setAttr(port, 8080);
+        assertTrue(lidar.isSet(pbl));
+        assertEquals(812.25, lidar.getDouble(pbl));
+        assertEquals(8080L, lidar.getLong(port));
+        assertEquals(812.25, lidar.getAllValues().get("pbl_height"));
+        assertEquals(LIDAR.attrCount(), lidar.getAllValues().size());
+
+        // A value that does not convert clears the attribute, as before
+        lidar.setAttr(pbl, "not a number");
+        assertFalse(lidar.isSet(pbl));
+        assertNull(lidar.getPblHeight());
+        assertEquals(Integer.valueOf(8080), lidar.getWebPort());
+    }
+
+    @Test
+    void testSnapshot_NeverMixesCycles() throws Exception {
+        LIDAR lidar = new LIDAR();
+        int az = LIDAR.attrId("pointing_az_deg");
+        int el = LIDAR.attrId("pointing_el_deg");
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        Thread writer = new Thread(() -> {
+            for (int cycle = 1; running.get(); cycle++) {
+                lidar.beginCycle();
+                lidar.setAttr(az, (double) cycle);
+                lidar.setAttr(el, (double) cycle);
+                lidar.endCycle(Instant.ofEpochSecond(cycle));
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 100_000; i++) {
+                LIDARSnapshot frame = lidar.snapshot();
+                if (frame.getCycle() == 0)
+                    continue;
+                assertEquals(frame.getDouble(az), frame.getDouble(el));
+                assertEquals((long) frame.getDouble(az), frame.getSourceTime().getEpochSecond());
+                assertEquals(frame.getCycle(), frame.getLong(az));
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    @Test
+    void testVisitorAndCursor_WalkEveryAttributeInIdOrder() {
+        LIDAR lidar = new LIDAR();
+        lidar.setAttr("pbl_height", 812.25);
+        lidar.setAttr("web_port", 8080);
+        lidar.setAttr("verbose_status", true);
+        lidar.setAttr("device_status", "OK");
+
+        double[] doubles = new double[LIDAR.attrCount()];
+        long[] longs = new long[LIDAR.attrCount()];
+        String[] strings = new String[LIDAR.attrCount()];
+        int[] nulls = new int[1];
+        LIDARCursor cursor = lidar.read(new LIDARCursor());
+        cursor.accept(new LIDARVisitor() {
+            @Override
+            public void onDouble(int id, double value) {
+                doubles[id] = value;
+            }
+
+            @Override
+            public void onLong(int id, long value) {
+                longs[id] = value;
+            }
+
+            @Override
+            public void onString(int id, String value) {
+                strings[id] = value;
+            }
+
+            @Override
+            public void onNull(int id) {
+                nulls[0]++;
+            }
+        });
+        assertEquals(812.25, doubles[LIDAR.attrId("pbl_height")]);
+        assertEquals(8080, longs[LIDAR.attrId("web_port")]);
+        assertEquals(1, longs[LIDAR.attrId("verbose_status")]);
+        assertEquals("OK", strings[LIDAR.attrId("device_status")]);
+        assertEquals(LIDAR.attrCount() - 4, nulls[0]);
+
+        int visited = 0;
+        int set = 0;
+        while (cursor.next()) {
+            assertEquals(visited++, cursor.getId());
+            if (cursor.isSet()) {
+                set++;
+                assertEquals(lidar.getValue(cursor.getId()), cursor.getValue());
+            }
+        }
+        assertEquals(LIDAR.attrCount(), visited);
+        assertEquals(4, set);
+
+        // Refilling the same cursor picks up the next cycle and rewinds it
+        lidar.setAttr("pbl_height", 900.0);
+        lidar.read(cursor);
+        assertTrue(cursor.next());
+        assertEquals(900.0, cursor.getDouble(LIDAR.attrId("pbl_height")));
+        assertEquals(lidar.getCycle(), cursor.getCycle());
+    }
+
+    @Test
+    void testListeners_CoalesceChangesPerCycle() {
+        LIDAR lidar = new LIDAR();
+        int error = LIDAR.attrId("error_number");
+        int status = LIDAR.attrId("device_status");
+        int pbl = LIDAR.attrId("pbl_height");
+        List<String> events = new ArrayList<>();
+        lidar.addListener(changes -> {
+            StringBuilder event = new StringBuilder("cycle " + changes.getCycle());
+            for (int id = changes.nextChanged(0); id >= 0; id = changes.nextChanged(id + 1)) {
+                event.append(' ').append(LIDAR.attrName(id)).append('=')
+                        .append(changes.getPreviousValue(id)).append("->").append(lidar.getValue(id));
+            }
+            events.add(event.toString());
+        }, "error_number", "device_status");
+
+        lidar.beginCycle();
+        lidar.setAttr(error, 0);
+        lidar.setAttr(status, "OK");
+        lidar.setAttr(pbl, 800.0);
+        lidar.endCycle(Instant.ofEpochSecond(1));
+
+        // Unchanged values and changes outside the registered attributes are quiet
+        lidar.beginCycle();
+        lidar.setAttr(error, 0);
+        lidar.setAttr(status, "OK");
+        lidar.setAttr(pbl, 810.0);
+        lidar.endCycle(Instant.ofEpochSecond(2));
+
+        // Several updates in one cycle give one callback with the value before it
+        lidar.beginCycle();
+        lidar.setAttr(status, "WARN");
+        lidar.setAttr(status, "FAULT");
+        lidar.setAttr(error, "not a number");
+        lidar.endCycle(Instant.ofEpochSecond(3));
+
+        assertEquals(List.of(
+                "cycle 1 error_number=null->0 pbl_height=null->800.0 device_status=null->OK",
+                "cycle 3 error_number=0->null device_status=OK->FAULT"), events);
+    }
+
+    @Test
+    void testProfiles_DecodeArraysIntoReusedBuffers() {
+        LIDAR lidar = new LIDAR();
+        int beta = LIDAR.attrId("backscatter_coefficient_beta_z");
+        assertTrue(LIDAR.isProfile(beta));
+        assertFalse(LIDAR.isProfile(LIDAR.attrId("pbl_height")));
+
+        RangeProfile profile = new RangeProfile();
+        assertFalse(lidar.readProfile(beta, profile));
+
+        lidar.beginCycle();
+        lidar.setAttr("vertical_resolution_bin_size", 7.5);
+        lidar.setAttr(beta, new Double[] { 1.0, 2.0, null, 4.0 });
+        lidar.endCycle(Instant.ofEpochSecond(1));
+
+        assertTrue(lidar.readProfile(beta, profile));
+        assertEquals(4, profile.length());
+        assertEquals(2.0, profile.get(1));
+        assertTrue(Double.isNaN(profile.get(2)));
+        assertEquals(7.5, profile.getBinSize());
+        assertEquals(22.5, profile.getRange(3));
+        assertNull(lidar.getBackscatterCoefficientBetaZ());
+
+        // A shorter profile is read into the same buffer without shrinking it
+        lidar.setAttr(beta, new float[] { 5f, 6f });
+        assertTrue(lidar.readProfile(beta, profile));
+        assertEquals(2, profile.length());
+        assertEquals(4, profile.capacity());
+        assertArrayEquals(new double[] { 5, 6 }, profile.toArray());
+
+        // Scalars still work for the same attribute and replace the profile
+        lidar.setAttr(beta, 0.25);
+        assertEquals(0.25, lidar.getBackscatterCoefficientBetaZ());
+        assertFalse(lidar.readProfile(beta, profile));
+        assertNull(lidar.copyProfile(beta));
+
+        lidar.setAttr(beta, new double[] { 8 });
+        assertTrue(lidar.readProfile(beta, profile));
+        assertArrayEquals(new double[] { 8 }, lidar.copyProfile(beta));
+    }
+}
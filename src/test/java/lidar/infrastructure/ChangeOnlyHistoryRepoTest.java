@@ -0,0 +1,85 @@
+package lidar.infrastructure;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeOnlyHistoryRepoTest {
+
+    @Test
+    void testAppend_StaticValueIsOneRun() {
+        MemoryHistoryRepo memory = new MemoryHistoryRepo(10);
+        ChangeOnlyHistoryRepo repo = new ChangeOnlyHistoryRepo(memory, attr -> Deadband.EXACT);
+        Instant start = Instant.now().minusSeconds(100);
+
+        for (int i = 0; i < 100; i++) {
+            repo.append("serial_number", "SN-1234", start.plusSeconds(i));
+        }
+
+        assertEquals(1, memory.getSnapshot("serial_number").size());
+        List<MemoryHistoryRepo.HistoryEntry> history = repo.getHistory("serial_number");
+        assertEquals(2, history.size());
+        assertEquals(start, history.get(0).timestamp);
+        assertEquals(start.plusSeconds(99), history.get(1).timestamp);
+        assertEquals("SN-1234", history.get(1).value);
+    }
+
+    @Test
+    void testAppend_RunOlderThanRetentionStaysInHistory() {
+        MemoryHistoryRepo memory = new MemoryHistoryRepo(10);
+        ChangeOnlyHistoryRepo repo = new ChangeOnlyHistoryRepo(memory, attr -> Deadband.EXACT);
+        Instant now = Instant.now();
+        Instant start = now.minus(Duration.ofMinutes(30));
+
+        // One value for three retention windows, polled every 10 s
+        for (Instant t = start; !t.isAfter(now); t = t.plusSeconds(10)) {
+            repo.append("serial_number", "SN-1234", t);
+        }
+
+        // The run was recorded again every half window, so it outlives its start
+        assertTrue(memory.getSnapshot("serial_number").size() <= 4);
+        List<MemoryHistoryRepo.HistoryEntry> history = repo.getHistory("serial_number",
+                now.minus(Duration.ofMinutes(5)), now);
+        assertEquals(2, history.size());
+        assertEquals(now.minus(Duration.ofMinutes(5)), history.get(0).timestamp);
+        assertEquals("SN-1234", history.get(0).value);
+        assertEquals(now, history.get(1).timestamp);
+    }
+
+    @Test
+    void testGetHistory_ReconstructsStepFunctionWithinDeadband() {
+        MemoryHistoryRepo memory = new MemoryHistoryRepo(10);
+        ChangeOnlyHistoryRepo repo = new ChangeOnlyHistoryRepo(memory, attr -> Deadband.percent(1));
+        Instant start = Instant.now().minusSeconds(100);
+
+        double[] values = { 20.0, 20.1, 20.15, 25.0, 25.0, 25.2, 30.0 };
+        for (int i = 0; i < values.length; i++) {
+            repo.append("internal_temperatures", values[i], start.plusSeconds(i));
+        }
+
+        // Runs 20.0 [0, 2], 25.0 [3, 5] and 30.0 [6]
+        assertEquals(5, memory.getSnapshot("internal_temperatures").size());
+
+        // From inside the first run: the value in effect is carried to from
+        List<MemoryHistoryRepo.HistoryEntry> range = repo.getHistory("internal_temperatures",
+                start.plusSeconds(1), start.plusSeconds(4));
+        assertEquals(3, range.size());
+        assertEquals(start.plusSeconds(1), range.get(0).timestamp);
+        assertEquals(20.0, range.get(0).value);
+        assertEquals(start.plusSeconds(2), range.get(1).timestamp);
+        assertEquals(20.0, range.get(1).value);
+        assertEquals(start.plusSeconds(3), range.get(2).timestamp);
+        assertEquals(25.0, range.get(2).value);
+
+        repo.append("internal_temperatures", 30.1, start.plusSeconds(7));
+        List<MemoryHistoryRepo.HistoryEntry> tail = repo.getHistory("internal_temperatures",
+                start.plusSeconds(6), Instant.MAX);
+        assertEquals(2, tail.size());
+        assertEquals(30.0, tail.get(1).value);
+        assertEquals(start.plusSeconds(7), tail.get(1).timestamp);
+    }
+}
@@ -0,0 +1,104 @@
+package lidar.infrastructure;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionLivenessTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testTraffic_AvoidsProbe() throws Exception {
+        ConnectionLiveness liveness = new ConnectionLiveness();
+        AtomicInteger probes = new AtomicInteger();
+        AtomicInteger losses = new AtomicInteger();
+        liveness.start(scheduler, 400, () -> {
+            probes.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }, losses::incrementAndGet);
+
+        for (int i = 0; i < 10; i++) {
+            liveness.markAlive();
+            Thread.sleep(100);
+        }
+
+        assertEquals(0, probes.get());
+        assertEquals(0, losses.get());
+        assertTrue(liveness.isAlive());
+        liveness.stop();
+    }
+
+    @Test
+    void testIdle_FailedProbeReportsLost() throws Exception {
+        ConnectionLiveness liveness = new ConnectionLiveness();
+        CountDownLatch lost = new CountDownLatch(1);
+        liveness.start(scheduler, 200, () -> CompletableFuture.failedFuture(new RuntimeException("timeout")),
+                lost::countDown);
+
+        assertTrue(lost.await(5, TimeUnit.SECONDS));
+        assertFalse(liveness.isAlive());
+
+        liveness.markAlive();
+        assertTrue(liveness.isAlive());
+        liveness.stop();
+    }
+
+    @Test
+    void testFrozenHeartbeat_ReportsLostDespiteTraffic() throws Exception {
+        ConnectionLiveness liveness = new ConnectionLiveness();
+        liveness.setHeartbeatTimeout(300);
+        CountDownLatch lost = new CountDownLatch(1);
+        // The server answers every probe, but the counter never moves
+        liveness.start(scheduler, 10_000, () -> CompletableFuture.completedFuture(null), lost::countDown);
+        liveness.heartbeat(41);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (lost.getCount() > 0 && System.nanoTime() < deadline) {
+            liveness.markAlive();
+            liveness.heartbeat(41);
+            Thread.sleep(50);
+        }
+
+        assertEquals(0, lost.getCount());
+        assertTrue(liveness.isHeartbeatStale());
+        ExecutionException error = assertThrows(ExecutionException.class, () -> liveness.verify().get());
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+
+        liveness.heartbeat(42);
+        assertFalse(liveness.isHeartbeatStale());
+        liveness.verify().get();
+        liveness.stop();
+    }
+
+    @Test
+    void testAdvancingHeartbeat_StaysAlive() throws Exception {
+        ConnectionLiveness liveness = new ConnectionLiveness();
+        liveness.setHeartbeatTimeout(300);
+        AtomicInteger losses = new AtomicInteger();
+        liveness.start(scheduler, 10_000, () -> CompletableFuture.completedFuture(null), losses::incrementAndGet);
+
+        for (int i = 0; i < 15; i++) {
+            liveness.heartbeat(i);
+            Thread.sleep(50);
+        }
+
+        assertEquals(0, losses.get());
+        assertTrue(liveness.isAlive());
+        liveness.stop();
+    }
+}
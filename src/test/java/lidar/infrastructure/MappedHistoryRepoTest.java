@@ -0,0 +1,194 @@
+package lidar.infrastructure;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedHistoryRepoTest {
+
+    @TempDir
+    Path dir;
+
+    private static Class<?> type(String attr) {
+        return attr.equals("scan_mode") ? String.class : Double.class;
+    }
+
+    @Test
+    void testReopen_RecoversSamplesAcrossSegments() throws Exception {
+        Instant start = Instant.now();
+        try (MappedHistoryRepo repo = new MappedHistoryRepo(dir, Duration.ofDays(1),
+                MappedHistoryRepoTest::type, 8)) {
+            for (int i = 0; i < 20; i++) {
+                repo.append("pbl_height", (double) i, start.plusSeconds(i));
+            }
+            repo.append("scan_mode", "stare", start);
+            repo.append("scan_mode", "raster", start.plusSeconds(1));
+        }
+
+        try (MappedHistoryRepo repo = new MappedHistoryRepo(dir, Duration.ofDays(1),
+                MappedHistoryRepoTest::type, 8)) {
+            assertEquals(20, repo.getHistory("pbl_height").size());
+            assertEquals(20, repo.getVersion("pbl_height"));
+
+            List<MemoryHistoryRepo.HistoryEntry> range = repo.getHistory("pbl_height", start.plusSeconds(6),
+                    start.plusSeconds(9));
+            assertEquals(4, range.size());
+            assertEquals(6.0, range.get(0).value);
+            assertEquals(start.plusSeconds(9), range.get(3).timestamp);
+            assertEquals(19.0, repo.getStats("pbl_height").getMax());
+
+            List<MemoryHistoryRepo.HistoryEntry> modes = repo.getHistory("scan_mode");
+            assertEquals("stare", modes.get(0).value);
+            assertEquals("raster", modes.get(1).value);
+
+            // Appending continues after the recovered records
+            repo.append("pbl_height", 20.0, start.plusSeconds(20));
+            assertEquals(21, repo.getHistory("pbl_height").size());
+        }
+    }
+
+    @Test
+    void testReopen_DropsTornRecord() throws Exception {
+        Instant start = Instant.now();
+        try (MappedHistoryRepo repo = new MappedHistoryRepo(dir, Duration.ofDays(1),
+                MappedHistoryRepoTest::type, 8)) {
+            for (int i = 0; i < 3; i++) {
+                repo.append("global_snr", (double) i, start.plusSeconds(i));
+            }
+        }
+
+        // Simulate a crash in the middle of writing the third record
+        Path segment;
+        try (Stream<Path> files = Files.list(dir.resolve("global_snr"))) {
+            segment = files.filter(p -> p.toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putLong(0, 12345L), 2L * MappedSeries.RECORD_BYTES + 8);
+        }
+
+        try (MappedHistoryRepo repo = new MappedHistoryRepo(dir, Duration.ofDays(1),
+                MappedHistoryRepoTest::type, 8)) {
+            List<MemoryHistoryRepo.HistoryEntry> history = repo.getHistory("global_snr");
+            assertEquals(2, history.size());
+            assertEquals(1.0, history.get(1).value);
+        }
+    }
+
+    @Test
+    void testReopen_DropsRecordWhoseStringWasLost() throws Exception {
+        Instant start = Instant.now();
+        try (MappedHistoryRepo repo = new MappedHistoryRepo(dir, Duration.ofDays(1),
+                MappedHistoryRepoTest::type, 8)) {
+            repo.append("scan_mode", "a", start);
+            repo.append("scan_mode", "b", start.plusSeconds(1));
+            repo.append("scan_mode", "c", start.plusSeconds(2));
+        }
+
+        // Power loss: the third record reached the disk, its dictionary entry did not
+        Path dictionary;
+        try (Stream<Path> files = Files.list(dir.resolve("scan_mode"))) {
+            dictionary = files.filter(p -> p.toString().endsWith(".dict")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(dictionary, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - (8 + "c".length()));
+        }
+
+        try (MappedHistoryRepo repo = new MappedHistoryRepo(dir, Duration.ofDays(1),
+                MappedHistoryRepoTest::type, 8)) {
+            List<MemoryHistoryRepo.HistoryEntry> history = repo.getHistory("scan_mode");
+            assertEquals(2, history.size());
+            assertEquals("b", history.get(1).value);
+
+            repo.append("scan_mode", "d", start.plusSeconds(3));
+            history = repo.getHistory("scan_mode");
+            assertEquals(3, history.size());
+            assertEquals("d", history.get(2).value);
+        }
+    }
+
+    @Test
+    void testTick_DeletesExpiredSegmentsOfQuietAttribute() throws Exception {
+        Instant old = Instant.now().minus(Duration.ofHours(2));
+        try (MappedHistoryRepo repo = new MappedHistoryRepo(dir, Duration.ofHours(1),
+                MappedHistoryRepoTest::type, 8)) {
+            for (int i = 0; i < 40; i++) {
+                repo.append("global_snr", (double) i, old.plusSeconds(i));
+            }
+            assertEquals(5, segmentFiles("global_snr"));
+
+            // Nothing is appended any more; the tick alone deletes what expired,
+            // except the segment that is still being written
+            RetentionClock.tick(HistorySeries.toEpochNanos(Instant.now()));
+            assertEquals(1, segmentFiles("global_snr"));
+            assertEquals(0, repo.getHistory("global_snr").size());
+        }
+    }
+
+    @Test
+    void testPrune_DropsStringsWithTheirSegments() throws Exception {
+        Instant now = Instant.now();
+        Instant old = now.minus(Duration.ofHours(2));
+        try (MappedHistoryRepo repo = new MappedHistoryRepo(dir, Duration.ofHours(1),
+                MappedHistoryRepoTest::type, 8)) {
+            // Every value distinct, like a timestamp string; all of these expire
+            for (int i = 0; i < 200; i++) {
+                repo.append("scan_mode", "expired-" + i, old.plusMillis(i));
+            }
+            for (int i = 0; i < 20; i++) {
+                repo.append("scan_mode", "kept-" + i, now.plusMillis(i));
+            }
+            RetentionClock.tick(HistorySeries.toEpochNanos(Instant.now()));
+        }
+
+        Path series = dir.resolve("scan_mode");
+        long segments;
+        long dictionaries;
+        long dictionaryBytes = 0;
+        try (Stream<Path> files = Files.list(series)) {
+            List<Path> all = files.toList();
+            segments = all.stream().filter(p -> p.toString().endsWith(".seg")).count();
+            dictionaries = all.stream().filter(p -> p.toString().endsWith(".dict")).count();
+            for (Path p : all) {
+                if (p.toString().endsWith(".dict")) {
+                    dictionaryBytes += Files.size(p);
+                }
+            }
+        }
+        // One dictionary per remaining segment, holding at most its own 8 strings
+        assertEquals(segments, dictionaries);
+        assertTrue(segments <= 4, "segments: " + segments);
+        assertTrue(dictionaryBytes <= segments * 8 * (8 + "expired-199".length()), "bytes: " + dictionaryBytes);
+
+        try (MappedHistoryRepo repo = new MappedHistoryRepo(dir, Duration.ofHours(1),
+                MappedHistoryRepoTest::type, 8)) {
+            List<MemoryHistoryRepo.HistoryEntry> history = repo.getHistory("scan_mode", now, now.plusSeconds(1));
+            assertEquals(20, history.size());
+            assertEquals("kept-0", history.get(0).value);
+            assertEquals("kept-19", history.get(19).value);
+
+            // The reopened last segment keeps its ids
+            repo.append("scan_mode", "kept-19", now.plusMillis(20));
+            repo.append("scan_mode", "kept-20", now.plusMillis(21));
+            history = repo.getHistory("scan_mode", now, now.plusSeconds(1));
+            assertEquals("kept-19", history.get(20).value);
+            assertEquals("kept-20", history.get(21).value);
+        }
+    }
+
+    private long segmentFiles(String attr) throws Exception {
+        try (Stream<Path> files = Files.list(dir.resolve(attr))) {
+            return files.filter(p -> p.toString().endsWith(".seg")).count();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package lidar.infrastructure;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryHistoryRepoTest {
+
+    @Test
+    void testGetHistory_ReturnsDeclaredTypesInOrder() {
+        MemoryHistoryRepo repo = new MemoryHistoryRepo(10,
+                attr -> attr.equals("heartbeat") ? Integer.class : attr.equals("pbl_height") ? Double.class : null);
+        Instant start = Instant.now();
+
+        // More samples than the initial capacity so the ring buffer has to grow
+        for (int i = 0; i < 100; i++) {
+            repo.append("heartbeat", i, start.plusMillis(i));
+            repo.append("pbl_height", (float) i, start.plusMillis(i));
+        }
+        repo.append("pbl_height", "not a number", start.plusMillis(100));
+        repo.append("scan_mode", "stare", start);
+
+        List<MemoryHistoryRepo.HistoryEntry> heartbeat = repo.getHistory("heartbeat");
+        assertEquals(100, heartbeat.size());
+        assertEquals(Integer.valueOf(42), heartbeat.get(42).value);
+        assertEquals(start.plusMillis(42), heartbeat.get(42).timestamp);
+
+        List<MemoryHistoryRepo.HistoryEntry> pbl = repo.getHistory("pbl_height");
+        assertEquals(100, pbl.size());
+        assertEquals(Double.valueOf(99.0), pbl.get(99).value);
+
+        assertEquals("stare", repo.getHistory("scan_mode").get(0).value);
+        assertTrue(repo.getHistory("unknown").isEmpty());
+    }
+
+    @Test
+    void testAppend_PrunesExpiredSamples() {
+        MemoryHistoryRepo repo = new MemoryHistoryRepo(1);
+        Instant now = Instant.now();
+
+        repo.append("global_snr", 1.0, now.minus(5, ChronoUnit.MINUTES));
+        repo.append("global_snr", 2.0, now.minus(2, ChronoUnit.MINUTES));
+        repo.append("global_snr", 3.0, now);
+
+        List<MemoryHistoryRepo.HistoryEntry> history = repo.getHistory("global_snr");
+        assertEquals(1, history.size());
+        assertEquals(3.0, history.get(0).value);
+    }
+
+    @Test
+    void testGetSnapshot_ConsistentWhileWriterAppends() throws Exception {
+        MemoryHistoryRepo repo = new MemoryHistoryRepo(10);
+        Instant start = Instant.now();
+        AtomicBoolean done = new AtomicBoolean(false);
+
+        Thread writer = new Thread(() -> {
+            for (long i = 0; i < 200_000; i++) {
+                repo.append("heartbeat", i, start.plusNanos(i));
+            }
+            done.set(true);
+        });
+        writer.start();
+
+        // Every snapshot must be a gap-free run where each value matches its timestamp
+        while (!done.get()) {
+            HistorySnapshot snapshot = repo.getSnapshot("heartbeat");
+            for (int i = 0; i < snapshot.size(); i++) {
+                long value = snapshot.getLong(i);
+                assertEquals(HistorySeries.toEpochNanos(start) + value, snapshot.getTimeNanos(i));
+                if (i > 0) {
+                    assertEquals(snapshot.getLong(i - 1) + 1, value);
+                }
+            }
+        }
+        writer.join();
+
+        HistorySnapshot last = repo.getSnapshot("heartbeat");
+        assertEquals(200_000, last.size());
+        assertEquals(200_000, repo.getVersion("heartbeat"));
+    }
+
+    @Test
+    void testGetHistory_RangeIsInclusive() {
+        MemoryHistoryRepo repo = new MemoryHistoryRepo(10);
+        Instant start = Instant.now();
+        for (int i = 0; i < 50; i++) {
+            repo.append("pbl_height", (double) i, start.plusSeconds(i));
+        }
+
+        List<MemoryHistoryRepo.HistoryEntry> range = repo.getHistory("pbl_height", start.plusSeconds(10),
+                start.plusSeconds(19));
+
+        assertEquals(10, range.size());
+        assertEquals(10.0, range.get(0).value);
+        assertEquals(19.0, range.get(9).value);
+        assertEquals(50, repo.getHistory("pbl_height", Instant.MIN, Instant.MAX).size());
+    }
+
+    @Test
+    void testGetDownsampled_KeepsEndpointsAndPeak() {
+        MemoryHistoryRepo repo = new MemoryHistoryRepo(10);
+        Instant start = Instant.now();
+        for (int i = 0; i < 1000; i++) {
+            repo.append("global_snr", i == 437 ? 100.0 : 1.0, start.plusMillis(i));
+        }
+
+        List<MemoryHistoryRepo.HistoryEntry> points = repo.getDownsampled("global_snr", start,
+                start.plusSeconds(1), 50);
+
+        assertEquals(50, points.size());
+        assertEquals(start, points.get(0).timestamp);
+        assertEquals(start.plusMillis(999), points.get(49).timestamp);
+        assertTrue(points.stream().anyMatch(e -> e.value.equals(100.0)));
+    }
+
+    @Test
+    void testGetStats_FollowsAppendAndPrune() {
+        MemoryHistoryRepo repo = new MemoryHistoryRepo(1);
+        Instant now = Instant.now();
+
+        repo.append("internal_temperatures", 50.0, now.minus(5, ChronoUnit.MINUTES));
+        repo.append("internal_temperatures", 20.0, now.minusSeconds(3));
+        repo.append("internal_temperatures", 24.0, now.minusSeconds(2));
+        repo.append("internal_temperatures", 24.0, now.minusSeconds(1));
+        repo.append("internal_temperatures", 22.0, now);
+        // The 50.0 falls out of the window on the next retention tick
+        RetentionClock.tick(HistorySeries.toEpochNanos(now));
+
+        HistoryStats stats = repo.getStats("internal_temperatures");
+        assertEquals(4, stats.getCount());
+        assertEquals(20.0, stats.getMin());
+        assertEquals(24.0, stats.getMax());
+        assertEquals(22.5, stats.getMean(), 1e-9);
+        assertEquals(Math.sqrt(2.75), stats.getStdDev(), 1e-9);
+        assertEquals(now, stats.getLastChange());
+        assertNull(repo.getStats("unknown"));
+    }
+
+    @Test
+    void testCompressed_RoundTripsAcrossBlocks() {
+        MemoryHistoryRepo repo = new MemoryHistoryRepo(10,
+                attr -> attr.equals("web_port") ? Integer.class : attr.equals("scan_mode") ? String.class
+                        : Double.class,
+                true);
+        Instant start = Instant.now().minusSeconds(60);
+        java.util.Random random = new java.util.Random(7);
+        int n = 3 * CompressedSeries.BLOCK_SAMPLES + 10;
+        double[] values = new double[n];
+        Instant[] times = new Instant[n];
+
+        // Jittered timestamps and arbitrary doubles exercise every encoding branch
+        Instant t = start;
+        for (int i = 0; i < n; i++) {
+            t = t.plusNanos(10_000_000 + random.nextInt(2_000_000));
+            times[i] = t;
+            values[i] = i % 5 == 0 ? random.nextGaussian() : i % 7 == 0 ? values[Math.max(0, i - 1)] : i * 0.25;
+            repo.append("global_snr", values[i], t);
+            repo.append("web_port", 8080, t);
+            repo.append("scan_mode", i < n / 2 ? "stare" : "vad", t);
+        }
+
+        HistorySnapshot snr = repo.getSnapshot("global_snr");
+        assertEquals(n, snr.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(HistorySeries.toEpochNanos(times[i]), snr.getTimeNanos(i));
+            assertEquals(values[i], snr.getDouble(i));
+        }
+        assertEquals(Integer.valueOf(8080), repo.getHistory("web_port").get(n - 1).value);
+        assertEquals("vad", repo.getHistory("scan_mode").get(n - 1).value);
+
+        // A range inside the second block decodes only the samples asked for
+        List<MemoryHistoryRepo.HistoryEntry> range = repo.getHistory("global_snr", times[1500], times[1509]);
+        assertEquals(10, range.size());
+        assertEquals(values[1500], range.get(0).value);
+        assertEquals(n, repo.getStats("global_snr").getCount());
+    }
+
+    @Test
+    void testCompressed_SlowChannelsTakeBitsPerSample() {
+        CompressedSeries port = new CompressedSeries(Integer.class);
+        CompressedSeries temperature = new CompressedSeries(Double.class);
+        long time = HistorySeries.toEpochNanos(Instant.now());
+        int n = 10_000;
+        for (int i = 0; i < n; i++) {
+            time += 1_000_000_000L;
+            port.append(time, 8080);
+            temperature.append(time, 21.5 + (i / 600) * 0.1);
+        }
+
+        // 16 bytes per sample uncompressed
+        assertTrue(port.sizeInBytes() * 10 < 16L * n, "port: " + port.sizeInBytes());
+        assertTrue(temperature.sizeInBytes() * 10 < 16L * n, "temperature: " + temperature.sizeInBytes());
+        assertEquals(n, port.snapshot(Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testCompressed_DistinctStringsAreEvictedWithTheirBlocks() {
+        MemoryHistoryRepo repo = new MemoryHistoryRepo(10, attr -> String.class, true);
+        long budget = 600_000;
+        repo.setBudget(new HistoryBudget(budget));
+        Instant start = Instant.now().minusSeconds(60);
+
+        // Every value distinct, like a timestamp channel
+        int n = 10 * CompressedSeries.BLOCK_SAMPLES;
+        for (int i = 0; i < n; i++) {
+            Instant t = start.plusMillis(i);
+            repo.append("timestamp_utc", t.toString(), t);
+        }
+
+        // Only whole blocks are evicted, so the open one may go over
+        assertTrue(repo.getMemoryUsage("timestamp_utc") <= budget + 200_000,
+                "usage: " + repo.getMemoryUsage("timestamp_utc"));
+        // Old blocks free their strings, so the budget still holds several blocks
+        HistorySnapshot snapshot = repo.getSnapshot("timestamp_utc");
+        assertTrue(snapshot.size() > 2 * CompressedSeries.BLOCK_SAMPLES, "samples: " + snapshot.size());
+        assertEquals(start.plusMillis(n - 1).toString(), snapshot.getValue(snapshot.size() - 1));
+        assertEquals(start.plusMillis(n - snapshot.size()).toString(), snapshot.getValue(0));
+    }
+
+    @Test
+    void testBudget_EvictsOldestPerAttributeShare() {
+        MemoryHistoryRepo repo = new MemoryHistoryRepo(10,
+                attr -> attr.equals("quality_flags") ? String.class : Double.class);
+        // 16 bytes per double sample: 1000 samples for quality_flags' fixed quota,
+        // the remaining 32000 bytes split 3:1
+        repo.setBudget(new HistoryBudget(48_000)
+                .quota("quality_flags", 16_000)
+                .weight("global_snr", 3));
+        Instant start = Instant.now();
+
+        for (int i = 0; i < 5000; i++) {
+            Instant t = start.plusMillis(i);
+            repo.append("global_snr", (double) i, t);
+            repo.append("pbl_height", (double) i, t);
+            repo.append("quality_flags", "flags-" + i, t);
+        }
+
+        Map<String, Long> usage = repo.getMemoryUsage();
+        assertTrue(usage.get("global_snr") <= 24_000);
+        assertTrue(usage.get("pbl_height") <= 8_000);
+        assertTrue(usage.get("quality_flags") <= 16_000);
+        assertTrue(repo.getTotalMemoryUsage() <= 48_000);
+
+        // The newest samples survive
+        HistorySnapshot snr = repo.getSnapshot("global_snr");
+        assertEquals(24_000 / 16, snr.size());
+        assertEquals(4999.0, snr.getDouble(snr.size() - 1));
+        assertEquals(snr.size(), repo.getStats("global_snr").getCount());
+        List<MemoryHistoryRepo.HistoryEntry> flags = repo.getHistory("quality_flags");
+        assertEquals("flags-4999", flags.get(flags.size() - 1).value);
+    }
+
+    @Test
+    void testBudget_RejectsRollups() {
+        MemoryHistoryRepo budgeted = new MemoryHistoryRepo(10);
+        budgeted.setBudget(new HistoryBudget(1_000_000));
+        assertThrows(IllegalStateException.class, () -> budgeted.setRollupTiers(RollupTier.DEFAULTS));
+
+        MemoryHistoryRepo rolledUp = new MemoryHistoryRepo(10);
+        rolledUp.setRollupTiers(RollupTier.DEFAULTS);
+        assertThrows(IllegalStateException.class, () -> rolledUp.setBudget(new HistoryBudget(1_000_000)));
+    }
+
+    @Test
+    void testGetRollup_PicksCoarsestTierForResolution() {
+        MemoryHistoryRepo repo = new MemoryHistoryRepo(10);
+        repo.setRollupTiers(RollupTier.DEFAULTS);
+        Instant start = Instant.ofEpochSecond(Instant.now().getEpochSecond() - 400);
+
+        // Ten samples per second for 5 minutes, value = seconds since start
+        for (int i = 0; i < 3000; i++) {
+            repo.append("pbl_height", i / 10.0, start.plusMillis(i * 100L));
+        }
+        Instant end = start.plusSeconds(300);
+
+        RollupSnapshot minutes = repo.getRollup("pbl_height", start, end, Duration.ofMinutes(5));
+        assertEquals(Duration.ofMinutes(1), minutes.getResolution());
+        // The last minute is still open
+        assertTrue(minutes.size() >= 4 && minutes.size() <= 5);
+        int full = minutes.getBucketStart(0).equals(start) ? 0 : 1;
+        assertEquals(600, minutes.getCount(full));
+
+        RollupSnapshot seconds = repo.getRollup("pbl_height", start, end, Duration.ofSeconds(10));
+        assertEquals(Duration.ofSeconds(1), seconds.getResolution());
+        assertEquals(299, seconds.size());
+        assertEquals(start.plusSeconds(42), seconds.getBucketStart(42));
+        assertEquals(42.0, seconds.getMin(42), 1e-9);
+        assertEquals(42.9, seconds.getMax(42), 1e-9);
+        assertEquals(42.45, seconds.getMean(42), 1e-9);
+        assertEquals(10, seconds.getCount(42));
+
+        // Finer than any tier: aggregated from the raw samples
+        RollupSnapshot raw = repo.getRollup("pbl_height", end.minusSeconds(1), end.minusNanos(1),
+                Duration.ofMillis(500));
+        assertEquals(2, raw.size());
+        assertEquals(5, raw.getCount(0));
+        assertTrue(repo.getRollup("unknown", start, end, Duration.ofSeconds(1)).isEmpty());
+    }
+}
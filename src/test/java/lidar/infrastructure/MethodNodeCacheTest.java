@@ -0,0 +1,36 @@
+package lidar.infrastructure;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MethodNodeCacheTest {
+
+    private static final String URI = "urn:lidar:server";
+
+    @Test
+    void testGet_CountsHitsAndMisses() {
+        MethodNodeCache cache = new MethodNodeCache();
+        MethodNodeCache.MethodTarget target = new MethodNodeCache.MethodTarget(new NodeId(2, 1), new NodeId(2, 2));
+
+        assertNull(cache.get(2, "SI3", "ServFixed", URI));
+
+        cache.put(2, "SI3", "ServFixed", URI, target);
+
+        assertSame(target, cache.get(2, "si3", "servfixed", URI));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRatio());
+    }
+
+    @Test
+    void testGet_NamespaceChangeInvalidatesCache() {
+        MethodNodeCache cache = new MethodNodeCache();
+        cache.put(2, "SI3", "ServFixed", URI, new MethodNodeCache.MethodTarget(new NodeId(2, 1), new NodeId(2, 2)));
+        cache.put(2, "SI3", "update_time", URI, new MethodNodeCache.MethodTarget(new NodeId(2, 1), new NodeId(2, 3)));
+
+        assertNull(cache.get(2, "SI3", "ServFixed", "urn:other:server"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,58 @@
+package lidar.infrastructure;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.structured.RegisterNodesResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class NodeRegistryTest {
+
+    @Test
+    void testParse_ReturnsCachedInstance() {
+        NodeRegistry registry = new NodeRegistry();
+
+        NodeId first = registry.parse("ns=2;s=lidar_get_state");
+        NodeId second = registry.parse("ns=2;s=lidar_get_state");
+
+        assertSame(first, second);
+        assertEquals(NodeId.parse("ns=2;s=lidar_get_state"), first);
+    }
+
+    @Test
+    void testRegister_ResolvesToServerAliases() throws Exception {
+        NodeRegistry registry = new NodeRegistry();
+        OpcUaClient client = mock(OpcUaClient.class);
+        NodeId alias = new NodeId(2, 1001);
+        when(client.registerNodes(anyList())).thenReturn(new RegisterNodesResponse(null, new NodeId[] { alias }));
+
+        registry.markForRegistration(List.of("ns=2;s=lidar_get_state"));
+
+        assertEquals(1, registry.register(client));
+        assertEquals(alias, registry.resolve("ns=2;s=lidar_get_state"));
+
+        registry.clearRegistrations();
+
+        assertEquals(NodeId.parse("ns=2;s=lidar_get_state"), registry.resolve("ns=2;s=lidar_get_state"));
+    }
+
+    @Test
+    void testRegister_FailureFallsBackToParsedIds() throws Exception {
+        NodeRegistry registry = new NodeRegistry();
+        OpcUaClient client = mock(OpcUaClient.class);
+        when(client.registerNodes(anyList())).thenThrow(new UaException(StatusCodes.Bad_ServiceUnsupported));
+
+        registry.markForRegistration(List.of("ns=2;s=lidar_get_state"));
+
+        assertEquals(0, registry.register(client));
+        assertEquals(0, registry.getRegisteredCount());
+        assertEquals(NodeId.parse("ns=2;s=lidar_get_state"), registry.resolve("ns=2;s=lidar_get_state"));
+    }
+}
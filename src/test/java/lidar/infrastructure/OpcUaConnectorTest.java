@@ -1,16 +1,33 @@
 package lidar.infrastructure;
 
+import lidar.client.domain.dto.LIDARSetters;
 import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.OperationLimits;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.WriteResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.WriteValue;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.MockitoAnnotations;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -82,4 +99,83 @@ class OpcUaConnectorTest {
 
         assertSame(mockClientInstance2, connector.getClient());
     }
-}
\ No newline at end of file
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatchSetters_SendSingleWriteAndReportPerNodeStatus() throws Exception {
+        mockedStaticClient.when(() -> OpcUaClient.create(anyString()))
+                .thenReturn(mockClientInstance1);
+        StatusCode bad = new StatusCode(StatusCodes.Bad_TypeMismatch);
+        when(mockClientInstance1.write(anyList()))
+                .thenReturn(new WriteResponse(null, new StatusCode[] { StatusCode.GOOD, bad }, null));
+
+        connector.connect();
+
+        LIDARSetters.BatchResult result = LIDARSetters.batch()
+                .setBinWidth(7.5)
+                .setAccumulationPulses(1000)
+                .apply(connector);
+
+        ArgumentCaptor<List<WriteValue>> captor = ArgumentCaptor.forClass(List.class);
+        verify(mockClientInstance1, times(1)).write(captor.capture());
+        assertEquals(2, captor.getValue().size());
+
+        assertFalse(result.isAllGood());
+        assertEquals(StatusCode.GOOD, result.getStatus(LIDARSetters.SET_LIDAR_BIN_WIDTH));
+        assertEquals(bad, result.getStatus(LIDARSetters.SET_LIDAR_ACCUMULATION_PULSES));
+        assertEquals(1, result.getFailed().size());
+    }
+
+    @Test
+    void testReadNodesAsync_CompletesWithServerResults() throws Exception {
+        mockedStaticClient.when(() -> OpcUaClient.create(anyString()))
+                .thenReturn(mockClientInstance1);
+        DataValue state = new DataValue(new Variant(3));
+        when(mockClientInstance1.readAsync(anyDouble(), any(TimestampsToReturn.class), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(
+                        new ReadResponse(null, new DataValue[] { state }, null)));
+
+        connector.connect();
+
+        List<DataValue> values = connector.readNodesAsync(List.of("ns=2;s=lidar_get_state")).get();
+
+        assertEquals(List.of(state), values);
+        verify(mockClientInstance1, never()).read(anyDouble(), any(TimestampsToReturn.class), anyList());
+    }
+
+    @Test
+    void testAsyncCalls_FailWhenNotConnected() {
+        CompletableFuture<List<DataValue>> future = connector.readNodesAsync(List.of("ns=2;s=lidar_get_state"));
+
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReadNodes_SplitsByServerLimitAndKeepsOrder() throws Exception {
+        mockedStaticClient.when(() -> OpcUaClient.create(anyString()))
+                .thenReturn(mockClientInstance1);
+        when(mockClientInstance1.readOperationLimits()).thenReturn(new OperationLimits(
+                UInteger.valueOf(2), null, null, null, null, null, null, null, null, null, null, null));
+        when(mockClientInstance1.readAsync(anyDouble(), any(TimestampsToReturn.class), anyList()))
+                .thenAnswer(invocation -> {
+                    List<ReadValueId> ids = invocation.getArgument(2);
+                    DataValue[] results = ids.stream()
+                            .map(id -> new DataValue(new Variant(id.getNodeId().getIdentifier().toString())))
+                            .toArray(DataValue[]::new);
+                    return CompletableFuture.completedFuture(new ReadResponse(null, results, null));
+                });
+
+        connector.connect();
+        assertEquals(2, connector.getMaxNodesPerRead());
+
+        List<String> nodeIds = List.of("ns=2;s=a", "ns=2;s=b", "ns=2;s=c", "ns=2;s=d", "ns=2;s=e");
+        List<DataValue> values = connector.readNodes(nodeIds);
+
+        verify(mockClientInstance1, times(3)).readAsync(anyDouble(), any(TimestampsToReturn.class), anyList());
+        assertEquals(5, values.size());
+        for (int i = 0; i < nodeIds.size(); i++) {
+            assertEquals(nodeIds.get(i).substring("ns=2;s=".length()), values.get(i).getValue().getValue());
+        }
+    }
+}
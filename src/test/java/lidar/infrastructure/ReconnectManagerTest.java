@@ -0,0 +1,180 @@
+package lidar.infrastructure;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.OpcUaSession;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReconnectManagerTest {
+
+    @Test
+    void testStart_RetriesWithBackoffUntilConnected() throws Exception {
+        OpcUaConnector connector = mock(OpcUaConnector.class);
+        doThrow(new RuntimeException("Connection refused"))
+                .doThrow(new RuntimeException("Connection refused"))
+                .doNothing()
+                .when(connector).reconnect();
+
+        ReconnectManager manager = new ReconnectManager(connector, 10, 50);
+        AtomicBoolean reactivated = new AtomicBoolean(true);
+        manager.addListener(new ReconnectManager.Listener() {
+            @Override
+            public void onConnected(boolean sessionReactivated) {
+                reactivated.set(sessionReactivated);
+            }
+        });
+        manager.start();
+
+        assertTrue(manager.awaitConnected(5, TimeUnit.SECONDS));
+        assertFalse(reactivated.get());
+        verify(connector, times(3)).reconnect();
+
+        manager.stop();
+    }
+
+    @Test
+    void testSharedScheduler_ReconnectsWithoutShuttingItDown() throws Exception {
+        ScheduledExecutorService shared = Executors.newScheduledThreadPool(4);
+        OpcUaConnector connector = mock(OpcUaConnector.class);
+        CountDownLatch reconnects = new CountDownLatch(3);
+        doAnswer(invocation -> {
+            reconnects.countDown();
+            if (reconnects.getCount() == 2) {
+                throw new RuntimeException("Connection refused");
+            }
+            return null;
+        }).when(connector).reconnect();
+
+        ReconnectManager manager = new ReconnectManager(connector, 10, 50, 0, shared);
+        manager.start();
+        assertTrue(manager.awaitConnected(5, TimeUnit.SECONDS));
+
+        manager.connectionLost();
+        assertTrue(reconnects.await(5, TimeUnit.SECONDS));
+        assertTrue(manager.awaitConnected(5, TimeUnit.SECONDS));
+
+        manager.stop();
+        assertFalse(shared.isShutdown());
+        shared.shutdownNow();
+    }
+
+    @Test
+    void testConnectionLost_WithoutClientReconnects() throws Exception {
+        OpcUaConnector connector = mock(OpcUaConnector.class);
+        CountDownLatch reconnects = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            reconnects.countDown();
+            return null;
+        }).when(connector).reconnect();
+        ReconnectManager manager = new ReconnectManager(connector, 10, 50);
+        manager.start();
+        assertTrue(manager.awaitConnected(5, TimeUnit.SECONDS));
+
+        manager.connectionLost();
+
+        // Counted in the answer rather than with verify(timeout), which can race
+        // the reconnect thread still inside the mocked call
+        assertTrue(reconnects.await(5, TimeUnit.SECONDS));
+        assertTrue(manager.awaitConnected(5, TimeUnit.SECONDS));
+
+        manager.stop();
+    }
+
+    @Test
+    void testConnectionLost_SessionThatDoesNotAnswerIsRebuilt() throws Exception {
+        OpcUaConnector connector = connectorWithCachedSession();
+        CountDownLatch reconnects = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            reconnects.countDown();
+            return null;
+        }).when(connector).reconnect();
+        ReconnectManager manager = new ReconnectManager(connector, 10, 50, 200);
+        // The cached session is still there, but nothing answers on it
+        manager.setSessionCheck(() -> new CompletableFuture<>());
+        manager.start();
+        assertTrue(manager.awaitConnected(5, TimeUnit.SECONDS));
+
+        manager.connectionLost();
+
+        assertTrue(reconnects.await(5, TimeUnit.SECONDS));
+        assertTrue(manager.awaitConnected(5, TimeUnit.SECONDS));
+        verify(connector.getLiveness(), never()).markAlive();
+
+        manager.stop();
+    }
+
+    @Test
+    void testConnectionLost_SessionThatAnswersIsReactivated() throws Exception {
+        OpcUaConnector connector = connectorWithCachedSession();
+        ReconnectManager manager = new ReconnectManager(connector, 10, 50, 1000);
+        manager.setSessionCheck(() -> CompletableFuture.completedFuture(null));
+        CountDownLatch reactivated = new CountDownLatch(1);
+        manager.addListener(new ReconnectManager.Listener() {
+            @Override
+            public void onConnected(boolean sessionReactivated) {
+                if (sessionReactivated) {
+                    reactivated.countDown();
+                }
+            }
+        });
+        manager.start();
+        assertTrue(manager.awaitConnected(5, TimeUnit.SECONDS));
+
+        manager.connectionLost();
+
+        assertTrue(reactivated.await(5, TimeUnit.SECONDS));
+        verify(connector, times(1)).reconnect();
+
+        manager.stop();
+    }
+
+    @Test
+    void testTransferFailed_FailedRestoreReconnects() throws Exception {
+        OpcUaConnector connector = mock(OpcUaConnector.class);
+        CountDownLatch reconnects = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            reconnects.countDown();
+            return null;
+        }).when(connector).reconnect();
+        doThrow(new RuntimeException("Too many subscriptions")).when(connector).restoreSubscriptions();
+        ArgumentCaptor<Runnable> transferFailed = ArgumentCaptor.forClass(Runnable.class);
+        ReconnectManager manager = new ReconnectManager(connector, 10, 50);
+        verify(connector).addTransferFailureListener(transferFailed.capture());
+        manager.start();
+        assertTrue(manager.awaitConnected(5, TimeUnit.SECONDS));
+
+        // Reported on a Milo thread; the restore runs on the manager's
+        transferFailed.getValue().run();
+
+        assertTrue(reconnects.await(5, TimeUnit.SECONDS));
+        verify(connector).restoreSubscriptions();
+        assertTrue(manager.awaitConnected(5, TimeUnit.SECONDS));
+
+        manager.stop();
+    }
+
+    private static OpcUaConnector connectorWithCachedSession() {
+        NodeId sessionId = new NodeId(1, "session");
+        OpcUaSession session = mock(OpcUaSession.class);
+        when(session.getSessionId()).thenReturn(sessionId);
+        OpcUaClient client = mock(OpcUaClient.class);
+        when(client.getSessionAsync()).thenReturn(CompletableFuture.completedFuture(session));
+
+        OpcUaConnector connector = mock(OpcUaConnector.class);
+        when(connector.getClient()).thenReturn(client);
+        when(connector.getSessionId()).thenReturn(sessionId);
+        when(connector.getLiveness()).thenReturn(mock(ConnectionLiveness.class));
+        return connector;
+    }
+}
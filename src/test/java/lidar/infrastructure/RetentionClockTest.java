@@ -0,0 +1,49 @@
+package lidar.infrastructure;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetentionClockTest {
+
+    @AfterEach
+    void resetClock() {
+        RetentionClock.tick(HistorySeries.toEpochNanos(Instant.now()));
+    }
+
+    @Test
+    void testTick_PrunesInBulkIncludingQuietSeries() {
+        MemoryHistoryRepo repo = new MemoryHistoryRepo(10);
+        Instant now = Instant.now();
+        Instant start = now.minus(Duration.ofMinutes(5));
+        // 1000 samples over the last five minutes, 300 ms apart
+        for (int i = 0; i < 1000; i++) {
+            Instant t = start.plusMillis(300L * i);
+            repo.append("global_snr", (double) i, t);
+            repo.append("pbl_height", (double) i, t);
+        }
+        long quietBytes = repo.getMemoryUsage("pbl_height");
+
+        // Eight minutes on, the first three minutes of samples expire; nothing is
+        // appended, the tick alone drops them
+        RetentionClock.tick(HistorySeries.toEpochNanos(now.plus(Duration.ofMinutes(8))));
+        assertEquals(400, repo.getStats("global_snr").getCount());
+        assertEquals(400, repo.getStats("pbl_height").getCount());
+        assertTrue(repo.getMemoryUsage("pbl_height") < quietBytes);
+        assertEquals(600.0, repo.getSnapshot("pbl_height").getDouble(0));
+
+        // Only global_snr keeps being written
+        repo.append("global_snr", 1000.0, now.plus(Duration.ofMinutes(8)));
+        assertEquals(401, repo.getStats("global_snr").getCount());
+
+        // Once everything of pbl_height expired, its memory is released as well
+        RetentionClock.tick(HistorySeries.toEpochNanos(now.plus(Duration.ofMinutes(20))));
+        assertEquals(0, repo.getStats("pbl_height").getCount());
+        assertEquals(0, repo.getMemoryUsage("pbl_height"));
+        assertEquals(0, repo.getStats("global_snr").getCount());
+    }
+}